@@ -0,0 +1,204 @@
+package bench;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Runs benchmarks the way JMH does (warmup iterations, then measured
+ * iterations of a fixed duration) and reports the time and the memory
+ * allocated per operation, along with the garbage collections that happened
+ * while measuring. The allocated memory is measured per thread, so only the
+ * benchmark thread counts.
+ * <p>
+ * Each invocation can have an untimed setup, for operations that change the
+ * state they run on (such as stepping a percolation to completion).
+ */
+public class BenchmarkRunner {
+
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos;
+	private final PrintStream out;
+	private final com.sun.management.ThreadMXBean threadBean;
+
+	private boolean printedHeader;
+
+	public BenchmarkRunner(int warmupIterations, int measurementIterations,
+			long iterationMillis, PrintStream out) {
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationNanos = iterationMillis * 1_000_000L;
+		this.out = out;
+
+		threadBean = (com.sun.management.ThreadMXBean)
+				ManagementFactory.getThreadMXBean();
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * Makes a runner configured by system properties: bench.warmup and
+	 * bench.iterations (number of iterations), bench.time (milliseconds
+	 * per iteration).
+	 */
+	public static BenchmarkRunner fromSystemProperties(PrintStream out) {
+		return new BenchmarkRunner(
+				Integer.getInteger("bench.warmup", 3),
+				Integer.getInteger("bench.iterations", 5),
+				Long.getLong("bench.time", 1000L),
+				out);
+	}
+
+	/**
+	 * Runs and reports one benchmark.
+	 * @param name the name of the benchmark
+	 * @param params a description of the parameters it runs with
+	 * @param setup run before each invocation, not measured (may be null)
+	 * @param op the operation being measured
+	 */
+	public Result run(String name, String params, Runnable setup, Runnable op) {
+		for (int i = 0; i < warmupIterations; i++) {
+			iteration(setup, op);
+		}
+
+		final long gcCount = getGcCount();
+		final long gcMillis = getGcMillis();
+
+		final double[] nanosPerOp = new double[measurementIterations];
+		long ops = 0, nanos = 0, bytes = 0;
+		for (int i = 0; i < measurementIterations; i++) {
+			final long[] it = iteration(setup, op);
+			ops += it[0];
+			nanos += it[1];
+			bytes += it[2];
+			nanosPerOp[i] = (double) it[1] / it[0];
+		}
+
+		Result result = new Result(name, params, ops, nanos, bytes,
+				nanosPerOp, getGcCount() - gcCount, getGcMillis() - gcMillis);
+		report(result);
+		return result;
+	}
+
+	/** @return {operations, measured nanos, allocated bytes} */
+	private long[] iteration(Runnable setup, Runnable op) {
+		final long thread = Thread.currentThread().getId();
+		long ops = 0, nanos = 0, bytes = 0;
+
+		while (nanos < iterationNanos) {
+			if (setup != null) {
+				setup.run();
+			}
+			final long bytesBefore = threadBean.getThreadAllocatedBytes(thread);
+			final long start = System.nanoTime();
+			op.run();
+			nanos += System.nanoTime() - start;
+			bytes += threadBean.getThreadAllocatedBytes(thread) - bytesBefore;
+			ops++;
+		}
+		return new long[] { ops, nanos, bytes };
+	}
+
+	/** The number of garbage collections since the JVM started */
+	static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0L, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/** The time spent in garbage collections since the JVM started */
+	static long getGcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0L, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	private void report(Result r) {
+		if (!printedHeader) {
+			printedHeader = true;
+			out.println("benchmark,params,ops,us/op,error,B/op,MB/s,gc.count,gc.ms");
+		}
+		out.println(String.format(Locale.ROOT,
+				"%s,%s,%d,%.3f,%.3f,%.1f,%.1f,%d,%d",
+				r.name, r.params, r.ops, r.getNanosPerOp() / 1000.0,
+				r.getNanosPerOpError() / 1000.0, r.getBytesPerOp(),
+				r.getAllocationRate(), r.gcCount, r.gcMillis));
+		out.flush();
+	}
+
+	/**
+	 * The measurements of one benchmark.
+	 */
+	public static class Result {
+
+		private final String name, params;
+		private final long ops, nanos, bytes;
+		private final double[] nanosPerOp;
+		private final long gcCount, gcMillis;
+
+		private Result(String name, String params, long ops, long nanos,
+				long bytes, double[] nanosPerOp, long gcCount, long gcMillis) {
+			this.name = name;
+			this.params = params;
+			this.ops = ops;
+			this.nanos = nanos;
+			this.bytes = bytes;
+			this.nanosPerOp = nanosPerOp;
+			this.gcCount = gcCount;
+			this.gcMillis = gcMillis;
+		}
+
+		public double getNanosPerOp() {
+			return (double) nanos / ops;
+		}
+
+		/** The standard deviation of the time per operation across iterations */
+		public double getNanosPerOpError() {
+			if (nanosPerOp.length < 2) {
+				return 0.0;
+			}
+			double mean = 0.0;
+			for (double n : nanosPerOp) {
+				mean += n;
+			}
+			mean /= nanosPerOp.length;
+			double variance = 0.0;
+			for (double n : nanosPerOp) {
+				variance += (n - mean) * (n - mean);
+			}
+			return Math.sqrt(variance / (nanosPerOp.length - 1));
+		}
+
+		public double getBytesPerOp() {
+			return (double) bytes / ops;
+		}
+
+		/** In megabytes per second of measured time */
+		public double getAllocationRate() {
+			return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getParams() {
+			return params;
+		}
+
+		public long getGcCount() {
+			return gcCount;
+		}
+
+		public long getGcMillis() {
+			return gcMillis;
+		}
+
+	}
+
+}
@@ -0,0 +1,292 @@
+package bench;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import percolation.FlowRule;
+import percolation.LatticePercolation;
+import percolation.PercolationBlock;
+import percolation.PercolationBlock.BLOCK_TYPE;
+import percolation.PercolationChunk;
+import percolation.PercolationLattice;
+import percolation.PercolationStorage;
+
+import utils.Dimension3;
+import utils.LongList;
+import utils.Progress;
+import utils.Vec3;
+
+/**
+ * Checks that every {@link FlowRule} floods the neighbours it says it does
+ * ({@link FlowRule#getDirection(int)}), from every site of a chunk that
+ * isn't a cube, so that the offsets and face masks it is compiled into are
+ * right at the corners and edges too:
+ * <ul>
+ * <li>every {@link PercolationLattice}, spreading from each site alone</li>
+ * <li>{@link PercolationChunk} and {@link LatticePercolation}, step by step
+ * against a breadth first search, from the faces the rule's down gives</li>
+ * </ul>
+ * Prints the mismatches and exits with status 1 if there are any. The rules
+ * are named as in bench.rules of {@link SimulationBenchmarks}.
+ */
+public class FlowRuleCheck {
+
+	private static final String[] RULES = {
+			"down", "6", "18", "26", "+x", "-x", "+y", "-y", "+z", "-z" };
+	private static final PercolationStorage[] LATTICES = {
+			PercolationStorage.BYTES, PercolationStorage.BITS,
+			PercolationStorage.SPARSE, PercolationStorage.MORTON };
+	private static final float[] P = { 0.5f, 0.7f, 1f };
+	private static final int SEEDS = 50;
+
+	private final int width, height, depth;
+	private final Dimension3 numBlocks;
+	private int failures;
+
+	public FlowRuleCheck(int width, int height, int depth) {
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		numBlocks = new Dimension3(width, height, depth);
+	}
+
+	public static void main(String[] args) {
+		FlowRuleCheck check = new FlowRuleCheck(4, 3, 5);
+		for (String name : RULES) {
+			final FlowRule rule = SimulationBenchmarks.parseFlowRule(name);
+			for (PercolationStorage storage : LATTICES) {
+				check.checkNeighbours(name, rule, storage);
+			}
+			check.checkPercolation(name, rule);
+		}
+
+		if (check.failures > 0) {
+			System.err.println(check.failures + " mismatches");
+			System.exit(1);
+		}
+		System.out.println("All " + RULES.length + " rules flood the expected sites");
+	}
+
+	/**
+	 * Spreads from each site of an open lattice alone, and compares what it
+	 * floods with the neighbours inside the lattice.
+	 */
+	void checkNeighbours(String name, FlowRule rule, PercolationStorage storage) {
+		final PercolationLattice lattice = storage.newLattice(numBlocks);
+		final LongList next = new LongList();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				for (int z = 0; z < depth; z++) {
+					fill(lattice, BLOCK_TYPE.OPEN);
+					next.clear();
+					final long visited = lattice.spread(rule,
+							new long[] { lattice.getSite(x, y, z) }, 1, next);
+
+					final TreeSet<Integer> expected = new TreeSet<>();
+					for (int k = 0; k < rule.getNumDirections(); k++) {
+						final int[] d = rule.getDirection(k);
+						if (contains(x + d[0], y + d[1], z + d[2])) {
+							expected.add(index(x + d[0], y + d[1], z + d[2]));
+						}
+					}
+					final TreeSet<Integer> flooded = getWater(lattice);
+
+					if (!flooded.equals(expected) || visited != expected.size()
+							|| next.size() != expected.size()) {
+						fail(name + " " + storage + " at (" + x + ", " + y + ", " + z
+								+ "): flooded " + flooded + ", expected " + expected
+								+ ", visited " + visited + ", next " + next.size());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Percolates random chunks step by step, and the same sites as each
+	 * lattice, and compares the water after every step with the sites a
+	 * breadth first search from the top row reaches in as many steps.
+	 */
+	void checkPercolation(String name, FlowRule rule) {
+		final PercolationChunk chunk = new PercolationChunk(Vec3.ZERO, numBlocks,
+				Dimension3.TEN, 1f);
+		chunk.init();
+		chunk.setFlowRule(rule);
+
+		for (float p : P) {
+			chunk.setP(p);
+			for (int seed = 0; seed < SEEDS; seed++) {
+				chunk.randomizeBlockTypes(new Random(seed), Progress.NONE);
+				final BLOCK_TYPE[] types = new BLOCK_TYPE[width * height * depth];
+				for (int i = 0; i < types.length; i++) {
+					types[i] = chunk.getBlocks().get(i).getType();
+				}
+				final int[] steps = search(rule, types);
+				final String where = name + " p=" + p + " seed=" + seed;
+
+				chunk.populateTopRowWithWater();
+				int step = 0;
+				do {
+					compare(where + " chunk", step, steps, getWater(chunk));
+					step++;
+				} while (chunk.stepForward() > 0);
+				checkLastStep(where + " chunk", step - 1, steps);
+				chunk.clearWater();
+
+				for (PercolationStorage storage : LATTICES) {
+					final PercolationLattice lattice = storage.newLattice(numBlocks);
+					for (int i = 0; i < types.length; i++) {
+						lattice.setType(i / (height * depth), i / depth % height,
+								i % depth, types[i]);
+					}
+					final LatticePercolation perc = new LatticePercolation(lattice, p);
+					perc.setFlowRule(rule);
+					perc.populateTopRowWithWater();
+					step = 0;
+					do {
+						compare(where + " " + storage, step, steps, getWater(lattice));
+						step++;
+					} while (perc.stepForward() > 0);
+					checkLastStep(where + " " + storage, step - 1, steps);
+
+					boolean percolates = false;
+					for (int i = 0; i < steps.length; i++) {
+						percolates |= steps[i] >= 0 && isOutflow(rule, i);
+					}
+					if (perc.percolates() != percolates) {
+						fail(where + " " + storage + ": percolates() is "
+								+ perc.percolates() + ", expected " + percolates);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the step each site is flooded at (0 for the top row), or -1
+	 * for the sites water never reaches.
+	 */
+	private int[] search(FlowRule rule, BLOCK_TYPE[] types) {
+		final int[] steps = new int[types.length];
+		Arrays.fill(steps, -1);
+		final ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (int i = 0; i < types.length; i++) {
+			if (isInflow(rule, i) && types[i] == BLOCK_TYPE.OPEN) {
+				steps[i] = 0;
+				queue.add(i);
+			}
+		}
+		while (!queue.isEmpty()) {
+			final int i = queue.poll();
+			final int x = i / (height * depth), y = i / depth % height, z = i % depth;
+			for (int k = 0; k < rule.getNumDirections(); k++) {
+				final int[] d = rule.getDirection(k);
+				if (!contains(x + d[0], y + d[1], z + d[2])) {
+					continue;
+				}
+				final int j = index(x + d[0], y + d[1], z + d[2]);
+				if (types[j] == BLOCK_TYPE.OPEN && steps[j] < 0) {
+					steps[j] = steps[i] + 1;
+					queue.add(j);
+				}
+			}
+		}
+		return steps;
+	}
+
+	private void compare(String where, int step, int[] steps, TreeSet<Integer> water) {
+		final TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < steps.length; i++) {
+			if (steps[i] >= 0 && steps[i] <= step) {
+				expected.add(i);
+			}
+		}
+		if (!water.equals(expected)) {
+			fail(where + " after step " + step + ": water " + water
+					+ ", expected " + expected);
+		}
+	}
+
+	private void checkLastStep(String where, int step, int[] steps) {
+		final int last = Arrays.stream(steps).max().getAsInt();
+		if (step != Math.max(last, 0)) {
+			fail(where + ": stopped after step " + step + ", expected " + last);
+		}
+	}
+
+	/** Whether the site at the given index is on the face water comes in through */
+	private boolean isInflow(FlowRule rule, int index) {
+		return isOnFace(rule, index, -1);
+	}
+
+	/** Whether the site at the given index is on the face water percolates to */
+	private boolean isOutflow(FlowRule rule, int index) {
+		return isOnFace(rule, index, 1);
+	}
+
+	/** Whether the site is at the given end (1 for the one down points to) of down */
+	private boolean isOnFace(FlowRule rule, int index, int end) {
+		final int[] c = { index / (height * depth), index / depth % height, index % depth };
+		final int[] sizes = { width, height, depth };
+		final int[] down = rule.getDown();
+		for (int a = 0; a < 3; a++) {
+			if (down[a] != 0) {
+				return c[a] == (down[a] * end > 0 ? sizes[a] - 1 : 0);
+			}
+		}
+		throw new IllegalStateException("No down: " + rule);
+	}
+
+	private TreeSet<Integer> getWater(PercolationLattice lattice) {
+		final TreeSet<Integer> water = new TreeSet<>();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				for (int z = 0; z < depth; z++) {
+					if (lattice.getType(x, y, z) == BLOCK_TYPE.WATER) {
+						water.add(index(x, y, z));
+					}
+				}
+			}
+		}
+		return water;
+	}
+
+	private static TreeSet<Integer> getWater(PercolationChunk chunk) {
+		final TreeSet<Integer> water = new TreeSet<>();
+		int i = 0;
+		for (PercolationBlock block : chunk.getBlocks()) {
+			if (block.getType() == BLOCK_TYPE.WATER) {
+				water.add(i);
+			}
+			i++;
+		}
+		return water;
+	}
+
+	private void fill(PercolationLattice lattice, BLOCK_TYPE type) {
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				for (int z = 0; z < depth; z++) {
+					lattice.setType(x, y, z, type);
+				}
+			}
+		}
+	}
+
+	private boolean contains(int x, int y, int z) {
+		return x >= 0 && x < width && y >= 0 && y < height && z >= 0 && z < depth;
+	}
+
+	/** The index of the site in {@link PercolationChunk#getBlocks()} */
+	private int index(int x, int y, int z) {
+		return (x * height + y) * depth + z;
+	}
+
+	private void fail(String message) {
+		System.err.println(message);
+		failures++;
+	}
+
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import java.util.Locale;
+
+import percolation.LatticePercolation;
+import percolation.PercolationMonitor;
+import percolation.PercolationStorage;
+
+import utils.Dimension3;
+import utils.Progress;
+
+/**
+ * Compares how the order the sites are stored in affects percolating:
+ * row-major ({@link PercolationStorage#BYTES}, x then y then z, where the
+ * neighbours on x and y are a row or a slab away) against Morton order
+ * ({@link PercolationStorage#MORTON}), on the same lattices (every storage
+ * makes the same lattice from the same seed).
+ * <p>
+ * For each size (n x n x n), p and storage: randomizing, and percolating
+ * from the top row to completion. p = 1 floods every site, the worst case
+ * for locality. Configured with bench.sizes, bench.p and bench.storages
+ * (comma separated), and the properties of
+ * {@link BenchmarkRunner#fromSystemProperties}. The results are printed as
+ * CSV.
+ */
+public class LayoutBenchmarks {
+
+	private static final String DEFAULT_SIZES = "64,128,256,512";
+	private static final String DEFAULT_P = "0.6,1";
+	private static final String DEFAULT_STORAGES = "bytes,morton";
+	private static final long SEED = 42L;
+
+	private final BenchmarkRunner runner;
+
+	public LayoutBenchmarks(BenchmarkRunner runner) {
+		this.runner = runner;
+	}
+
+	public static void main(String[] args) {
+		// Totals of every lattice, over JMX
+		PercolationMonitor.register(null);
+
+		LayoutBenchmarks benchmarks = new LayoutBenchmarks(
+				BenchmarkRunner.fromSystemProperties(System.out));
+
+		for (String size : System.getProperty("bench.sizes", DEFAULT_SIZES).split(",")) {
+			for (String p : System.getProperty("bench.p", DEFAULT_P).split(",")) {
+				for (String storage : System.getProperty("bench.storages",
+						DEFAULT_STORAGES).split(",")) {
+					benchmarks.runAll(
+							PercolationStorage.valueOf(storage.trim().toUpperCase(Locale.ROOT)),
+							Integer.parseInt(size.trim()), Float.parseFloat(p.trim()));
+				}
+			}
+		}
+	}
+
+	public void runAll(PercolationStorage storage, int n, float p) {
+		final String params = String.format(Locale.ROOT, "%s n=%d p=%s",
+				storage.toString().toLowerCase(Locale.ROOT), n, p);
+		final Dimension3 numBlocks = new Dimension3(n);
+		if (!storage.canStore(numBlocks) || storage.estimateFootprint(numBlocks, p)
+				> PercolationStorage.getAvailableHeap() * 0.8) {
+			System.err.println("Skipping " + params + ": not enough memory");
+			return;
+		}
+
+		System.gc();
+		final LatticePercolation perc =
+				new LatticePercolation(storage.newLattice(numBlocks), p);
+
+		runner.run("randomize", params, null, () -> perc.randomize(SEED, Progress.NONE));
+
+		runner.run("percolate", params, perc::clearWater, () -> {
+			perc.populateTopRowWithWater();
+			while (perc.stepForward() > 0);
+		});
+	}
+
+}
@@ -0,0 +1,212 @@
+package bench;
+
+import java.awt.BorderLayout;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.swing.JFrame;
+
+import graphics.Canvas;
+
+import percolation.PercolationChunk;
+import percolation.PercolationLayer;
+
+import processing.opengl.PGraphicsOpenGL;
+
+import utils.Dimension;
+import utils.Dimension3;
+import utils.Progress;
+import utils.Utils;
+import utils.Vec3;
+
+/**
+ * Measures how long it takes to render a {@link PercolationLayer}. For each
+ * chunk size, a chunk is randomized from a fixed seed and percolated to
+ * completion, then the same scripted camera path (a full turn around the
+ * chunk while zooming in and out, and opening and closing the gaps between
+ * the blocks) is played one frame at a time.
+ * <p>
+ * A frame is timed from the start of the layer's rendering to the end of
+ * the GPU's work on it, so the times are the same whether or not vsync is
+ * on. Along with the percentiles of the frame times, the shapes (boxes)
+ * drawn, the brush changes and the vertices submitted per frame are
+ * reported, as CSV.
+ * <p>
+ * Configured with system properties: render.sizes (n for n x n x n chunks),
+ * render.frames and render.warmup (frames per size), render.p and
+ * render.seed.
+ */
+@SuppressWarnings("serial")
+public class RenderBenchmark extends Canvas {
+
+	private static final Dimension3 BLOCK_SIZE = new Dimension3(50f);
+	/** The largest gap between the blocks, as a fraction of the block size */
+	private static final float MAX_GAP = 0.5f;
+	/** The scale a 9 x 9 x 9 chunk is shown at, as in the editor */
+	private static final float BASE_SCALE = 0.7f;
+
+	private final int[] sizes;
+	private final int frames;
+	private final int warmupFrames;
+	private final float p;
+	private final long seed;
+
+	private int sizeIndex = -1;
+	private int frame;
+	private PercolationLayer layer;
+	private PercolationChunk chunk;
+
+	private final long[] frameNanos;
+	private long shapes, brushChanges, vertices;
+
+	private final Vec3.Mutable rotation = new Vec3.Mutable();
+	private final Vec3.Mutable scale = new Vec3.Mutable();
+	private final Dimension3.Mutable spacing = new Dimension3.Mutable();
+
+	public RenderBenchmark(Dimension size, int[] sizes, int frames,
+			int warmupFrames, float p, long seed) {
+		super(size);
+		this.sizes = sizes;
+		this.frames = frames;
+		this.warmupFrames = warmupFrames;
+		this.p = p;
+		this.seed = seed;
+		frameNanos = new long[frames];
+	}
+
+	public static void main(String[] args) {
+		final String[] sizeStrings = System.getProperty("render.sizes", "9,16,32,48").split(",");
+		final int[] sizes = new int[sizeStrings.length];
+		for (int i = 0; i < sizes.length; i++) {
+			sizes[i] = Integer.parseInt(sizeStrings[i].trim());
+		}
+
+		RenderBenchmark benchmark = new RenderBenchmark(
+				new Dimension(600f, 600f), sizes,
+				Integer.getInteger("render.frames", 240),
+				Integer.getInteger("render.warmup", 30),
+				Float.parseFloat(System.getProperty("render.p", "0.4")),
+				Long.getLong("render.seed", 42L));
+
+		JFrame frame = new JFrame("Render Benchmark");
+		frame.setLayout(new BorderLayout());
+		frame.add(benchmark, BorderLayout.CENTER);
+		benchmark.init();
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setSize(620, 640);
+		frame.setResizable(false);
+		frame.setVisible(true);
+	}
+
+	@Override
+	public void setup() {
+		super.setup();
+		frameRate(1000f);
+
+		System.out.println("n,blocks,frames,p50_ms,p95_ms,p99_ms,max_ms,"
+				+ "shapes_per_frame,brush_changes_per_frame,vertices_per_frame");
+		nextSize();
+	}
+
+	private void nextSize() {
+		disposeLayer();
+		sizeIndex++;
+		frame = -warmupFrames;
+		shapes = brushChanges = vertices = 0;
+		if (sizeIndex >= sizes.length) {
+			exit();
+			return;
+		}
+
+		chunk = new PercolationChunk(Vec3.ZERO, new Dimension3(sizes[sizeIndex]),
+				BLOCK_SIZE, p);
+		chunk.init();
+		chunk.randomizeBlockTypes(new Random(seed), Progress.NONE);
+		chunk.populateTopRowWithWater();
+		while (chunk.stepForward() > 0);
+		chunk.publishSnapshot();
+
+		layer = new PercolationLayer(this, chunk);
+		layer.init();
+	}
+
+	/**
+	 * Stops the simulation thread of the layer of the last size and releases
+	 * its offscreen buffer, so that they don't run alongside the next sizes.
+	 */
+	private void disposeLayer() {
+		if (layer == null) {
+			return;
+		}
+		layer.getPercolationSimulation().shutdown();
+		layer.getGraphics().dispose();
+		layer = null;
+	}
+
+	@Override
+	public void draw() {
+		if (layer == null) {
+			return;
+		}
+		playScript((float) Math.max(frame, 0) / frames);
+
+		final long start = System.nanoTime();
+		layer.draw();
+		// Wait for the GPU, so that its work is part of the frame
+		((PGraphicsOpenGL) layer.getGraphics()).pgl.finish();
+		final long nanos = System.nanoTime() - start;
+
+		if (frame >= 0) {
+			frameNanos[frame] = nanos;
+			shapes += layer.getShapeCount();
+			brushChanges += layer.getBrushChangeCount();
+			vertices += layer.getVertexCount();
+		}
+		if (++frame == frames) {
+			report();
+			nextSize();
+		}
+	}
+
+	/**
+	 * Moves the camera and the blocks to where they are at the given
+	 * time (0 to 1) of the script.
+	 */
+	private void playScript(float t) {
+		final float angle = t * Utils.TWO_PI;
+
+		rotation.set(-0.5f + 0.3f * (float) Math.sin(angle), 2f + angle, 0f);
+		layer.setRotation(rotation);
+
+		// Fits the chunk like the editor does, then zooms in and out
+		final float fit = BASE_SCALE * 9f / sizes[sizeIndex];
+		final float zoom = 1f + 0.5f * (float) Math.sin(2f * angle);
+		scale.set(fit * zoom, fit * zoom, fit * zoom);
+		layer.setScale(scale);
+
+		final float gap = MAX_GAP * (0.5f - 0.5f * (float) Math.cos(angle));
+		spacing.set(BLOCK_SIZE.getWidth() * gap, BLOCK_SIZE.getHeight() * gap,
+				BLOCK_SIZE.getDepth() * gap);
+		chunk.setSpacing(spacing);
+	}
+
+	private void report() {
+		final long[] sorted = Arrays.copyOf(frameNanos, frames);
+		Arrays.sort(sorted);
+		System.out.println(String.format(Locale.ROOT,
+				"%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.1f,%.1f,%.1f",
+				sizes[sizeIndex], chunk.getBlocks().size(), frames,
+				percentileMillis(sorted, 50.0), percentileMillis(sorted, 95.0),
+				percentileMillis(sorted, 99.0), sorted[sorted.length - 1] / 1e6,
+				(double) shapes / frames, (double) brushChanges / frames,
+				(double) vertices / frames));
+	}
+
+	/** Nearest-rank percentile of the given sorted frame times */
+	private static double percentileMillis(long[] sorted, double percentile) {
+		final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+		return sorted[Math.max(rank - 1, 0)] / 1e6;
+	}
+
+}
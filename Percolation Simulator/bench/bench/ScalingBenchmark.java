@@ -0,0 +1,312 @@
+package bench;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import percolation.LatticePercolation;
+import percolation.PercolationChunk;
+import percolation.PercolationMetrics;
+import percolation.PercolationMonitor;
+import percolation.PercolationStorage;
+
+import utils.Dimension3;
+import utils.LatencyLog;
+import utils.Progress;
+import utils.Vec3;
+
+/**
+ * Measures how full percolation trials (randomize, then percolate to
+ * completion) scale with the size of the lattice and the number of threads,
+ * for each {@link PercolationStorage} (the engine). A chunk can only be used
+ * by one thread, so every thread runs its own trials on its own chunk or
+ * lattice, and the parallel efficiency is the throughput with T threads
+ * divided by T times the throughput with one thread.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ * <li>scale.engines: the storages to run (default: all of them)</li>
+ * <li>scale.sizes: the values of L (default 16 to 1024)</li>
+ * <li>scale.shapes: cube (L x L x L) and/or slab (L x 3 x L, like the
+ * 20 x 3 x 20 preset)</li>
+ * <li>scale.threads: the highest number of threads (default: the number of
+ * processors). Runs 1, 2, 4... threads, and that number.</li>
+ * <li>scale.trials: trials per thread (default 4), after one warmup trial</li>
+ * <li>scale.p: p (default 0.6)</li>
+ * <li>scale.out: the CSV file to write (default: standard output)</li>
+ * </ul>
+ * Configurations that would not fit in the heap are skipped.
+ * <p>
+ * The peak resident set size is the peak of each configuration, from making
+ * its chunks to the end of its trials (which needs Linux 4.0 or later; it
+ * is -1 where it can't be measured). The JVM keeps the heap it has grown
+ * to resident, so the peak never drops below what earlier configurations
+ * left: the start_rss_mb column is the resident set size each configuration
+ * started from, and the difference is what it added.
+ */
+public class ScalingBenchmark {
+
+	private static final int SLAB_HEIGHT = 3;
+
+	private final int maxThreads;
+	private final int trialsPerThread;
+	private final float p;
+	private final PrintStream out;
+	private final long bytesPerBlock;
+
+	/** Sites per second of each engine/shape/L with one thread */
+	private double singleThreadRate;
+
+	public ScalingBenchmark(int maxThreads, int trialsPerThread, float p,
+			PrintStream out) {
+		this.maxThreads = maxThreads;
+		this.trialsPerThread = trialsPerThread;
+		this.p = p;
+		this.out = out;
+		bytesPerBlock = SimulationBenchmarks.measureBytesPerBlock();
+	}
+
+	public static void main(String[] args) throws IOException {
+		// Totals of every chunk, over JMX
+		PercolationMonitor.register(null);
+		// Step time histograms, if percolation.latency.out is set
+		LatencyLog.startFromSystemProperties(
+				Collections.singletonList(PercolationMetrics.getStepTimes()));
+
+		final String outFile = System.getProperty("scale.out");
+		final PrintStream out = outFile == null ? System.out : newPrintStream(outFile);
+
+		ScalingBenchmark benchmark = new ScalingBenchmark(
+				Integer.getInteger("scale.threads",
+						Runtime.getRuntime().availableProcessors()),
+				Integer.getInteger("scale.trials", 4),
+				Float.parseFloat(System.getProperty("scale.p", "0.6")),
+				out);
+
+		out.println("engine,shape,L,nx,ny,nz,threads,trials,seconds,"
+				+ "sites_per_s,efficiency,start_rss_mb,peak_rss_mb,gc_count,gc_ms");
+		for (String engine : System.getProperty("scale.engines", getEngines()).split(",")) {
+			for (String shape : System.getProperty("scale.shapes", "cube,slab").split(",")) {
+				for (String size : System.getProperty("scale.sizes",
+						"16,32,64,128,256,512,1024").split(",")) {
+					benchmark.run(engine.trim(), shape.trim(), Integer.parseInt(size.trim()));
+				}
+			}
+		}
+		out.close();
+	}
+
+	private static String getEngines() {
+		final StringBuilder engines = new StringBuilder();
+		for (PercolationStorage storage : PercolationStorage.values()) {
+			if (engines.length() > 0) {
+				engines.append(',');
+			}
+			engines.append(storage.toString().toLowerCase(Locale.ROOT));
+		}
+		return engines.toString();
+	}
+
+	private static PrintStream newPrintStream(String file) throws FileNotFoundException {
+		return new PrintStream(file);
+	}
+
+	public void run(String engine, String shape, int size) {
+		final Dimension3 numBlocks;
+		switch (shape) {
+		case "cube": numBlocks = new Dimension3(size); break;
+		case "slab": numBlocks = new Dimension3(size, SLAB_HEIGHT, size); break;
+		default: throw new IllegalArgumentException("Unknown shape: " + shape);
+		}
+
+		final PercolationStorage storage = getStorage(engine);
+		if (!storage.canStore(numBlocks)) {
+			System.err.println(String.format(Locale.ROOT,
+					"Skipping %s %s L=%d: too many sites", engine, shape, size));
+			return;
+		}
+		final long sites = (long) numBlocks.getWidth()
+				* (long) numBlocks.getHeight() * (long) numBlocks.getDepth();
+		// Measured for chunks, which are hard to estimate
+		final long footprint = storage == PercolationStorage.OBJECTS ?
+				sites * bytesPerBlock : storage.estimateFootprint(numBlocks, p);
+
+		singleThreadRate = 0.0;
+		for (int threads : getThreadCounts()) {
+			if (threads * footprint > Runtime.getRuntime().maxMemory() * 0.8) {
+				System.err.println(String.format(Locale.ROOT,
+						"Skipping %s %s L=%d with %d threads: not enough memory",
+						engine, shape, size, threads));
+				return;
+			}
+			if (!runTrials(engine, shape, size, numBlocks, sites, threads)) {
+				System.err.println(String.format(Locale.ROOT,
+						"Skipping %s %s L=%d with %d threads: out of memory",
+						engine, shape, size, threads));
+				return;
+			}
+		}
+	}
+
+	private List<Integer> getThreadCounts() {
+		List<Integer> counts = new ArrayList<>();
+		for (int t = 1; t < maxThreads; t *= 2) {
+			counts.add(t);
+		}
+		counts.add(maxThreads);
+		return counts;
+	}
+
+	/**
+	 * @return false if the chunks didn't fit in the heap after all (a large
+	 * array needs a contiguous space in the old generation)
+	 */
+	private boolean runTrials(String engine, String shape, int size,
+			Dimension3 numBlocks, long sites, int threads) {
+		// Make the chunks before timing, and let the last ones go first
+		final List<Runnable> trials = new ArrayList<>();
+		System.gc();
+		final boolean peakReset = resetPeakRss();
+		final double startRss = getRssMegabytes("VmRSS:");
+		try {
+			for (int i = 0; i < threads; i++) {
+				Runnable trial = newTrial(engine, numBlocks);
+				trial.run(); // Warmup
+				trials.add(trial);
+			}
+		} catch (OutOfMemoryError e) {
+			return false;
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Future<?>> futures = new ArrayList<>();
+		for (Runnable trial : trials) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < trialsPerThread; i++) {
+					trial.run();
+				}
+				return null;
+			}));
+		}
+
+		final long gcCount = BenchmarkRunner.getGcCount();
+		final long gcMillis = BenchmarkRunner.getGcMillis();
+		final long startNanos = System.nanoTime();
+		start.countDown();
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdown();
+		}
+		final double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+		final long numTrials = (long) threads * trialsPerThread;
+		final double rate = numTrials * sites / seconds;
+		if (threads == 1) {
+			singleThreadRate = rate;
+		}
+		final double efficiency = singleThreadRate > 0.0 ?
+				rate / (threads * singleThreadRate) : Double.NaN;
+
+		out.println(String.format(Locale.ROOT,
+				"%s,%s,%d,%d,%d,%d,%d,%d,%.3f,%.0f,%.3f,%.1f,%.1f,%d,%d",
+				engine, shape, size, (int) numBlocks.getWidth(),
+				(int) numBlocks.getHeight(), (int) numBlocks.getDepth(),
+				threads, numTrials, seconds, rate, efficiency,
+				startRss, peakReset ? getRssMegabytes("VmHWM:") : -1.0,
+				BenchmarkRunner.getGcCount() - gcCount,
+				BenchmarkRunner.getGcMillis() - gcMillis));
+		out.flush();
+		return true;
+	}
+
+	private static PercolationStorage getStorage(String engine) {
+		try {
+			return PercolationStorage.valueOf(engine.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown engine: " + engine);
+		}
+	}
+
+	/**
+	 * Makes a chunk or lattice stored the way the engine says, and returns
+	 * a trial on it.
+	 */
+	private Runnable newTrial(String engine, Dimension3 numBlocks) {
+		final PercolationStorage storage = getStorage(engine);
+		if (storage == PercolationStorage.OBJECTS) {
+			final PercolationChunk chunk =
+					new PercolationChunk(Vec3.ZERO, numBlocks, Dimension3.TEN, p);
+			chunk.init();
+			return () -> {
+				chunk.randomizeBlockTypes();
+				chunk.populateTopRowWithWater();
+				while (chunk.stepForward() > 0);
+			};
+		}
+		final LatticePercolation perc =
+				new LatticePercolation(storage.newLattice(numBlocks), p);
+		return () -> {
+			perc.randomize(ThreadLocalRandom.current().nextLong(), Progress.NONE);
+			perc.populateTopRowWithWater();
+			while (perc.stepForward() > 0);
+		};
+	}
+
+	/**
+	 * Resets the peak resident set size of this process to its current
+	 * size, so that its peak (VmHWM) only covers what happens from then on.
+	 * @return false if it can't be reset (it needs Linux 4.0 or later)
+	 */
+	static boolean resetPeakRss() {
+		try {
+			Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes(),
+					StandardOpenOption.WRITE);
+			return true;
+		} catch (IOException | SecurityException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * A resident set size of this process, in megabytes: its current one
+	 * (VmRSS) or its peak since it started or since the last
+	 * {@link #resetPeakRss()} (VmHWM). -1 if it cannot be read (it is only
+	 * available on Linux).
+	 */
+	static double getRssMegabytes(String field) {
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+				if (line.startsWith(field)) {
+					// In kB
+					final String kb = line.substring(field.length())
+							.replace("kB", "").trim();
+					return Long.parseLong(kb) / 1024.0;
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			// Not available
+		}
+		return -1.0;
+	}
+
+}
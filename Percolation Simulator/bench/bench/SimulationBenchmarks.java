@@ -0,0 +1,198 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import percolation.FlowRule;
+import percolation.PercolationChunk;
+import percolation.PercolationChunkInfo;
+import percolation.PercolationMetrics;
+import percolation.PercolationMonitor;
+
+import utils.Dimension3;
+import utils.LatencyLog;
+import utils.Vec3;
+
+/**
+ * Benchmarks the hot paths of the simulation: randomizing the blocks,
+ * percolating to completion and back, clearing the water, computing the
+ * {@link PercolationChunkInfo}, creating the blocks and changing the spacing.
+ * <p>
+ * Every benchmark runs for each chunk size (n x n x n blocks) and each p.
+ * They can be changed with the system properties bench.sizes and bench.p
+ * (comma separated), and bench.only runs only the benchmarks whose names
+ * contain it. Percolating to completion also runs for each
+ * {@link FlowRule} in bench.rules (see {@link #parseFlowRule(String)}); the
+ * other benchmarks use the default rule. See {@link BenchmarkRunner#fromSystemProperties} for the
+ * number and length of the iterations. The results are printed as CSV.
+ */
+public class SimulationBenchmarks {
+
+	private static final String DEFAULT_SIZES = "9,32,64,128,256";
+	/**
+	 * Near the site percolation threshold of a cubic lattice (about 0.3116),
+	 * and well above it
+	 */
+	private static final String DEFAULT_P = "0.3116,0.6";
+	private static final String DEFAULT_RULES = "down,6,18,26,+x";
+
+	private final BenchmarkRunner runner;
+	private final String only;
+	private final List<String> rules;
+	private long bytesPerBlock;
+
+	public SimulationBenchmarks(BenchmarkRunner runner, String only, List<String> rules) {
+		this.runner = runner;
+		this.only = only;
+		this.rules = rules;
+	}
+
+	public static void main(String[] args) {
+		// Totals of every chunk, over JMX
+		PercolationMonitor.register(null);
+		// Step time histograms, if percolation.latency.out is set
+		LatencyLog.startFromSystemProperties(
+				Collections.singletonList(PercolationMetrics.getStepTimes()));
+
+		final List<String> rules = new ArrayList<>();
+		for (String rule : System.getProperty("bench.rules", DEFAULT_RULES).split(",")) {
+			rules.add(rule.trim());
+		}
+
+		SimulationBenchmarks benchmarks = new SimulationBenchmarks(
+				BenchmarkRunner.fromSystemProperties(System.out),
+				System.getProperty("bench.only", ""), rules);
+
+		for (String size : System.getProperty("bench.sizes", DEFAULT_SIZES).split(",")) {
+			for (String p : System.getProperty("bench.p", DEFAULT_P).split(",")) {
+				benchmarks.runAll(Integer.parseInt(size.trim()),
+						Float.parseFloat(p.trim()));
+			}
+		}
+	}
+
+	public void runAll(int n, float p) {
+		final String params = String.format(Locale.ROOT, "n=%d p=%s", n, p);
+		if (!fitsInMemory(n)) {
+			System.err.println("Skipping " + params + ": not enough memory");
+			return;
+		}
+
+		final PercolationChunk chunk = newChunk(n, p);
+		chunk.init();
+		chunk.randomizeBlockTypes();
+
+		run("randomizeBlockTypes", params, null, chunk::randomizeBlockTypes);
+
+		for (String rule : rules) {
+			chunk.setFlowRule(parseFlowRule(rule));
+			run("stepForwardToCompletion", params + " rule=" + rule, () -> {
+				chunk.clearWater();
+				chunk.populateTopRowWithWater();
+			}, () -> {
+				while (chunk.stepForward() > 0);
+			});
+			chunk.clearWater();
+		}
+		chunk.setFlowRule(FlowRule.SIDEWAYS_AND_DOWN);
+
+		run("stepBackToStart", params, () -> percolate(chunk), () -> {
+			while (chunk.stepBack() > 0);
+		});
+
+		run("clearWater", params, () -> percolate(chunk), chunk::clearWater);
+
+		percolate(chunk);
+		final PercolationChunkInfo info = new PercolationChunkInfo();
+		run("PercolationChunkInfo.set", params, null, () -> info.set(chunk));
+
+		final Dimension3 gap0 = new Dimension3(0f);
+		final Dimension3 gap1 = new Dimension3(5f);
+		final boolean[] flip = new boolean[1];
+		run("Chunk.setSpacing", params, null, () -> {
+			flip[0] = !flip[0];
+			chunk.setSpacing(flip[0] ? gap1 : gap0);
+		});
+
+		// Let the chunk being benchmarked go before making new ones
+		chunk.reset();
+		chunk.clearBlockPool();
+		final PercolationChunk[] fresh = new PercolationChunk[1];
+		run("Chunk.init", params, () -> {
+			fresh[0] = null;
+			fresh[0] = newChunk(n, p);
+		}, () -> fresh[0].init());
+	}
+
+	private void run(String name, String params, Runnable setup, Runnable op) {
+		if (name.contains(only)) {
+			runner.run(name, params, setup, op);
+		}
+	}
+
+	/**
+	 * Returns the rule with the given name: down (sideways and down), 6, 18
+	 * or 26 (that many neighbours), or an axis with a sign, such as +x, for
+	 * the rule with gravity along it.
+	 */
+	static FlowRule parseFlowRule(String name) {
+		switch (name) {
+		case "down": return FlowRule.SIDEWAYS_AND_DOWN;
+		case "6": return FlowRule.ISOTROPIC_6;
+		case "18": return FlowRule.NEIGHBOURS_18;
+		case "26": return FlowRule.NEIGHBOURS_26;
+		}
+		if (name.length() == 2 && (name.charAt(0) == '+' || name.charAt(0) == '-')) {
+			final float sign = name.charAt(0) == '+' ? 1f : -1f;
+			switch (name.charAt(1)) {
+			case 'x': return FlowRule.withGravity(sign, 0f, 0f);
+			case 'y': return FlowRule.withGravity(0f, sign, 0f);
+			case 'z': return FlowRule.withGravity(0f, 0f, sign);
+			}
+		}
+		throw new IllegalArgumentException("Unknown flow rule: " + name);
+	}
+
+	private static PercolationChunk newChunk(int n, float p) {
+		return new PercolationChunk(Vec3.ZERO, new Dimension3(n), Dimension3.TEN, p);
+	}
+
+	private static void percolate(PercolationChunk chunk) {
+		chunk.clearWater();
+		chunk.populateTopRowWithWater();
+		while (chunk.stepForward() > 0);
+	}
+
+	/**
+	 * Estimates whether two chunks of the given size fit in the heap (one
+	 * being benchmarked, and one being made by {@link PercolationChunk#init()}), from
+	 * the size of the blocks of a small chunk.
+	 */
+	private boolean fitsInMemory(int n) {
+		if (bytesPerBlock == 0) {
+			bytesPerBlock = measureBytesPerBlock();
+		}
+		final long needed = 2L * n * n * n * bytesPerBlock;
+		return needed < Runtime.getRuntime().maxMemory();
+	}
+
+	/**
+	 * Measures how much heap each block of an initialized chunk takes
+	 */
+	static long measureBytesPerBlock() {
+		final int n = 32;
+		final Runtime rt = Runtime.getRuntime();
+		System.gc();
+		final long before = rt.totalMemory() - rt.freeMemory();
+		PercolationChunk chunk = newChunk(n, 0.5f);
+		chunk.init();
+		System.gc();
+		final long after = rt.totalMemory() - rt.freeMemory();
+		// Keep the chunk reachable until measured
+		final int numBlocks = chunk.getBlocks().size();
+		return Math.max(1L, (after - before) / numBlocks);
+	}
+
+}
@@ -1,7 +1,5 @@
 package graphics;
 
-import processing.core.PApplet;
-
 /**
  * @author David Dinkevich
  */
@@ -9,12 +7,10 @@ public class Brush {
 	public static final int BLACK, WHITE, RED, BLUE, LIGHT_BLUE, GREEN,
 							YELLOW, ORANGE, PURPLE, PINK, BROWN;
 
-	// Specifically for making colors
-	private static final PApplet applet;
+	/** A {@link Brush} with the default settings, shared by everything that uses them */
+	public static final Brush DEFAULT = new Brush();
 	
 	static {
-		applet = new PApplet();
-		
 		BLACK = 0;
 		WHITE = 255;
 		RED = makeColor(255f, 0f, 0f);
@@ -32,12 +28,22 @@ public class Brush {
 	 * Making colors
 	 */
 	
+	/*
+	 * Same as PApplet.color() in the default RGB 0-255 color mode, but
+	 * without needing a PApplet (which cannot be created headless)
+	 */
+	
 	public static int makeColor(float r, float g, float b) {
-		return applet.color(r, g, b);
+		return makeColor(r, g, b, 255f);
 	}
 	
 	public static int makeColor(float r, float g, float b, float a) {
-		return applet.color(r, g, b, a);
+		return (colorComponent(a) << 24) | (colorComponent(r) << 16)
+				| (colorComponent(g) << 8) | colorComponent(b);
+	}
+	
+	private static int colorComponent(float c) {
+		return (int) (c > 255f ? 255f : c < 0f ? 0f : c);
 	}
 	
 	/*
@@ -112,6 +118,14 @@ public class Brush {
 		return result;
 	}
 
+	/**
+	 * Returns false, as a plain {@link Brush} never changes, so it can be
+	 * shared by reference instead of copied. {@link Builder}s return true.
+	 */
+	public boolean isMutable() {
+		return false;
+	}
+
 	public int getFill() {
 		return fill;
 	}
@@ -158,6 +172,11 @@ public class Brush {
 			return new Brush(this);
 		}
 		
+		@Override
+		public boolean isMutable() {
+			return true;
+		}
+		
 		public Builder setFill(int fill) {
 			this.fill = fill;
 			return this;
@@ -19,6 +19,10 @@ public class Canvas extends PApplet {
 	private List<Character> keysDown;
 		
 	private List<Layer> layers;
+	
+	private volatile boolean redrawRequested;
+	/** Number of frames in which the layers were actually drawn */
+	private int drawnFrames;
 		
 	public Canvas(Dimension size) {
 		this.size = Dimension.requireNonNegative(size);
@@ -54,14 +58,59 @@ public class Canvas extends PApplet {
 		for (Layer lay : layers) {
 			lay.init();
 		}
+		
+		requestRedraw();
 	}
 	
 	@Override
 	public void draw() {
-		// Render layers
-		for (Layer lay : layers) {
-			lay.draw();
+		// Indexed loops, so that drawing a frame doesn't allocate
+		
+		// Advance animations
+		for (int i = 0; i < layers.size(); i++) {
+			layers.get(i).update();
+		}
+		
+		// If nothing changed, the last composited image is still on screen
+		boolean redraw = redrawRequested;
+		for (int i = 0; i < layers.size(); i++) {
+			redraw |= layers.get(i).needsRedraw();
+		}
+		if (!redraw) {
+			RenderMetrics.frameSkipped();
+			return;
+		}
+		redrawRequested = false;
+		drawnFrames++;
+		
+		// Render layers. The event is only made while a recording has it on.
+		final RenderEvents.Frame event = RenderEvents.isFrameEnabled()
+				? new RenderEvents.Frame() : null;
+		if (event != null) {
+			event.begin();
+		}
+		final long start = System.nanoTime();
+		for (int i = 0; i < layers.size(); i++) {
+			layers.get(i).draw();
 		}
+		RenderMetrics.frameDrawn(System.nanoTime() - start);
+		if (event != null && event.shouldCommit()) {
+			event.layers = layers.size();
+			for (int i = 0; i < layers.size(); i++) {
+				if (layers.get(i).renderedLastDraw()) {
+					event.layersRendered++;
+				}
+			}
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Forces every {@link Layer} to be drawn again on the next frame,
+	 * even if none of them changed.
+	 */
+	public void requestRedraw() {
+		redrawRequested = true;
 	}
 	
 	@Override
@@ -192,6 +241,14 @@ public class Canvas extends PApplet {
 		return keysDown;
 	}
 	
+	/**
+	 * Returns the number of frames in which the layers were drawn. Frames
+	 * in which nothing changed are skipped, and not counted.
+	 */
+	public int getDrawnFrameCount() {
+		return drawnFrames;
+	}
+	
 	public List<Layer> getLayers() {
 		return layers;
 	}
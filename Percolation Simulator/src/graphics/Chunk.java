@@ -3,21 +3,61 @@ package graphics;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import utils.Dimension3;
+import utils.Progress;
 import utils.Vec3;
 
-public abstract class Chunk<T extends GraphicsCube> extends GraphicsCube {
+public abstract class Chunk<T extends GraphicsCube> extends GraphicsCube 
+implements Versioned {
+	
+	/**
+	 * Number of blocks on each axis of a tile. Tiles are the unit
+	 * in which blocks are culled against the view frustum.
+	 */
+	public static final int TILE_SIZE = 8;
+	
+	/**
+	 * The most blocks kept for reuse, as a fraction of the blocks of the
+	 * chunk, so that shrinking a chunk gives most of its memory back
+	 */
+	private static final int MAX_SPARE_BLOCKS_DIVISOR = 8;
 
 	private Dimension3.Mutable numBlocks;
 	private Dimension3.Mutable blockSize;
 	
 	private Dimension3.Mutable spacing;
 	
+	// Spacing animation, see animateSpacing()
+	private Dimension3.Mutable targetSpacing, animStartSpacing;
+	private long animStartNanos, animDurationNanos;
+	private boolean animatingSpacing;
+	private Dimension3.Mutable sizeTemp, sizeTemp2;
+	
 	private List<List<List<T>>> blocks;
 	private List<T> list1d;
 	
+	/** Blocks that were removed by a reset or resize, reused before new ones */
+	private ArrayList<T> spareBlocks;
+	
+	private DrawBatch batch;
+	private DrawBatch.Shapes blockShapes;
+	
+	// Where the blocks are drawn, see updateLayout(). Every slab of blocks
+	// along an axis has its own translation, so block (x, y, z) is centered
+	// on origin + (slabX[x], slabY[y], slabZ[z]).
+	private float originX, originY, originZ;
+	private float[] slabX, slabY, slabZ;
+	
 	private boolean initialized;
+	
+	/**
+	 * Read by the animation thread, incremented by whoever modifies the chunk:
+	 * the simulation thread steps it, and the animation thread spaces it
+	 */
+	private final AtomicInteger version = new AtomicInteger();
 
 	public Chunk(Vec3 loc, Dimension3 numBlocks, Dimension3 blockSize) {
 		// Size = numBlocks * blockSize
@@ -27,6 +67,17 @@ public abstract class Chunk<T extends GraphicsCube> extends GraphicsCube {
 		this.blockSize = Dimension3.Mutable.requireNonNegative(blockSize);
 		
 		spacing = new Dimension3.Mutable();
+		targetSpacing = new Dimension3.Mutable();
+		animStartSpacing = new Dimension3.Mutable();
+		sizeTemp = new Dimension3.Mutable();
+		sizeTemp2 = new Dimension3.Mutable();
+		slabX = new float[0];
+		slabY = new float[0];
+		slabZ = new float[0];
+		spareBlocks = new ArrayList<>();
+		
+		batch = new DrawBatch();
+		blockShapes = this::drawBlock;
 		
 		getBrush().setRenderFill(false);
 		getBrush().setStroke(255);
@@ -34,22 +85,31 @@ public abstract class Chunk<T extends GraphicsCube> extends GraphicsCube {
 	
 	/**
 	 * Creates all of the blocks as determined by {@link Chunk#getNumBlocks()}.
-	 * After this function is called, the number of blocks on each axis
-	 * cannot be modified (see {@link Chunk#reset()}), and any attempt to
-	 * do so will result in an {@link IllegalStateException}. Also, a {@link Chunk}
-	 * cannot be initialized twice--doing so will also result in an 
+	 * After this function is called, changing the number of blocks on each
+	 * axis resizes the chunk in place (see {@link Chunk#resize(Dimension3)}).
+	 * A {@link Chunk} cannot be initialized twice--doing so will result in an
 	 * {@link IllegalStateException}.
 	 */
 	public void init() {
+		init(Progress.NONE);
+	}
+	
+	/**
+	 * Same as {@link #init()}, but reports its progress to, and can be
+	 * cancelled through, the given {@link Progress}. If cancelled, a
+	 * {@link CancellationException} is thrown and the chunk remains
+	 * uninitialized. The blocks are created without holding the lock of this
+	 * chunk, so the chunk can still be drawn in the meantime.
+	 */
+	public void init(Progress progress) {
 		if (initialized) {
 			throw new IllegalStateException("Cannot initialize a Chunk twice");
 		}
-		initialized = true;
 		
 		// Initialize list of blocks
 		
-		list1d = new ArrayList<>();
-		blocks = new ArrayList<>();
+		List<T> list1d = new ArrayList<>();
+		List<List<List<T>>> blocks = new ArrayList<>();
 		
 		for (int x = 0; x < numBlocks.getWidth(); x++) {
 			List<List<T>> yList = new ArrayList<>();
@@ -63,10 +123,12 @@ public abstract class Chunk<T extends GraphicsCube> extends GraphicsCube {
 		// Create blocks
 				
 		for (int x = 0; x < numBlocks.getWidth(); x++) {
+			progress.set(x / numBlocks.getWidth());
+			progress.checkCancelled();
+			
 			for (int y = 0; y < numBlocks.getHeight(); y++) {
 				for (int z = 0; z < numBlocks.getDepth(); z++) {
-					T block = newBlock();
-					block.setSize(blockSize);
+					T block = takeBlock();
 					
 					blocks.get(x).get(y).add(block);
 					list1d.add(block);
@@ -74,83 +136,364 @@ public abstract class Chunk<T extends GraphicsCube> extends GraphicsCube {
 			}
 		}
 		
-		// Sets the location of all the blocks
-		setSpacing(spacing);
+		synchronized (this) {
+			this.blocks = blocks;
+			this.list1d = list1d;
+			initialized = true;
+			
+			// Sets the size of the chunk
+			applySpacing();
+			
+			markChanged();
+		}
+		progress.set(1f);
 	}
 	
 	/**
-	 * "De-initializes" this {@link Chunk}. Doing so allows the user to
-	 * change the number of blocks on each axis. The {@link Chunk#init()}
-	 * function must be called again after using this method.
+	 * "De-initializes" this {@link Chunk}. The {@link Chunk#init()}
+	 * function must be called again after using this method. The blocks
+	 * are kept to be reused by the next {@link Chunk#init()}, up to an eighth
+	 * of them.
 	 * @see Chunk#init()
 	 * @see Chunk#getNumBlocks()
 	 */
-	public void reset() {
+	public synchronized void reset() {
+		if (initialized) {
+			final int maxSpareBlocks = list1d.size() / MAX_SPARE_BLOCKS_DIVISOR;
+			spareBlocks.addAll(list1d.subList(0, 
+					Math.min(list1d.size(), maxSpareBlocks)));
+			trimBlockPool(maxSpareBlocks);
+		}
 		blocks = null;
 		list1d = null;
+		batch.clear();
 		initialized = false;
+		
+		markChanged();
 	}
 	
+	/**
+	 * Draws the blocks of this chunk. Drawing is synchronized with the methods
+	 * that change the structure of the chunk (the end of {@link #init()},
+	 * {@link #reset()}, {@link #setSpacing(Dimension3)} and
+	 * {@link #setSize(Dimension3)}), so the chunk can be modified on another
+	 * thread.
+	 * <p>
+	 * The blocks are drawn where their coordinates, the block size and the
+	 * spacing put them, not at their own location.
+	 */
 	@Override
-	public void draw(Layer lay) {
+	public synchronized void draw(Layer lay) {
 //		super.display(c);
-		for (T block : list1d) {
-			block.draw(lay);
+		if (!initialized) {
+			return;
+		}
+		updateLayout();
+		if (!(lay instanceof Layer3D)) {
+			for (int i = 0; i < list1d.size(); i++) {
+				batch.add(getBlockBrush(i, list1d.get(i)), i);
+			}
+			batch.flush(lay, blockShapes);
+			return;
 		}
+		
+		Layer3D lay3d = (Layer3D) lay;
+		final int nx = (int) numBlocks.getWidth();
+		final int ny = (int) numBlocks.getHeight();
+		final int nz = (int) numBlocks.getDepth();
+		
+		for (int x = 0; x < nx; x += TILE_SIZE) {
+			final int ex = Math.min(x + TILE_SIZE, nx) - 1;
+			for (int y = 0; y < ny; y += TILE_SIZE) {
+				final int ey = Math.min(y + TILE_SIZE, ny) - 1;
+				for (int z = 0; z < nz; z += TILE_SIZE) {
+					final int ez = Math.min(z + TILE_SIZE, nz) - 1;
+					drawTile(lay3d, x, y, z, ex, ey, ez);
+				}
+			}
+		}
+		
+		// Draw the visible blocks grouped by brush
+		batch.flush(lay, blockShapes);
 	}
 	
-	protected abstract T newBlock();
+	/**
+	 * Computes where the blocks are drawn from the location and size of
+	 * the chunk, the block size and the spacing: one translation per slab of
+	 * blocks on each axis. This is all it takes to move every block, so
+	 * changing the spacing is O(width + height + depth), not O(blocks).
+	 */
+	private void updateLayout() {
+		final Vec3 loc = getLoc();
+		final Dimension3 size = getSize();
+		
+		originX = loc.getX() - size.getWidth() / 2f + blockSize.getWidth() / 2f;
+		originY = loc.getY() - size.getHeight() / 2f + blockSize.getHeight() / 2f;
+		originZ = loc.getZ() - size.getDepth() / 2f + blockSize.getDepth() / 2f;
+		
+		slabX = updateSlabs(slabX, (int) numBlocks.getWidth(),
+				blockSize.getWidth() + spacing.getWidth());
+		slabY = updateSlabs(slabY, (int) numBlocks.getHeight(),
+				blockSize.getHeight() + spacing.getHeight());
+		slabZ = updateSlabs(slabZ, (int) numBlocks.getDepth(),
+				blockSize.getDepth() + spacing.getDepth());
+	}
 	
-	public void setSpacing(Dimension3 spacing) {		
+	private static float[] updateSlabs(float[] slabs, int num, float pitch) {
+		if (slabs.length != num) {
+			slabs = new float[num];
+		}
+		for (int i = 0; i < num; i++) {
+			slabs[i] = i * pitch;
+		}
+		return slabs;
+	}
+	
+	/**
+	 * Queues the blocks in the given (inclusive) range of indices, unless
+	 * the tile's bounding box is outside of the visible region of the
+	 * {@link Layer3D}.
+	 */
+	private void drawTile(Layer3D lay, int x0, int y0, int z0, 
+			int x1, int y1, int z1) {
 		
-		this.spacing.set(Dimension3.requireNonNegative(spacing));
+		final float hw = blockSize.getWidth() / 2f;
+		final float hh = blockSize.getHeight() / 2f;
+		final float hd = blockSize.getDepth() / 2f;
 		
-		// Update total size of cube (blockSize * numBlocks + spacing * numSpaces)
-		// Note: numSpaces = numBlocks - 1
-		Dimension3 sizeNoSpacing = Dimension3.mult(blockSize, numBlocks);
-		Dimension3 totalSpacingSize = Dimension3.mult(spacing, Dimension3.sub(numBlocks, Dimension3.ONE));
-		Dimension3 totalSize = Dimension3.add(sizeNoSpacing, totalSpacingSize);
-		super.setSize(totalSize);
-		
-		final float w = getSize().getWidth();
-		final float h = getSize().getHeight();
-		final float d = getSize().getDepth();
-		final float bw = blockSize.getWidth();
-		final float bh = blockSize.getHeight();
-		final float bd = blockSize.getDepth();
-		final float cx = getLoc().getX();
-		final float cy = getLoc().getY();
-		final float cz = getLoc().getZ();
-
-		final float left = cx - w/2f + bw/2f;
-		final float bottom = cy - h/2f + bh/2f;
-		final float front = cz - d/2f + bd/2f;		
+		// Block locations grow with their indices, so the first and last
+		// blocks of the tile are its corners
+		final int tileVisibility = lay.testBox(
+				originX + slabX[x0] - hw, originY + slabY[y0] - hh,
+				originZ + slabZ[z0] - hd,
+				originX + slabX[x1] + hw, originY + slabY[y1] + hh,
+				originZ + slabZ[z1] + hd
+		);
+		if (tileVisibility == Frustum.OUTSIDE) {
+			return;
+		}
 		
-		for (int x = 0; x < numBlocks.getWidth(); x++) {
-			for (int y = 0; y < numBlocks.getHeight(); y++) {
-				for (int z = 0; z < numBlocks.getDepth(); z++) {
-					Vec3.Mutable loc = new Vec3.Mutable(
-						left + x * bw + x * spacing.getWidth(),
-						bottom + y * bh + y * spacing.getHeight(),
-						front + z * bd + z * spacing.getDepth()
-					);
-					
-					// Take chunk's loc into account
-					loc.add(getLoc());
-					
-					blocks.get(x).get(y).get(z).setLoc(loc);
+		final int ny = (int) numBlocks.getHeight();
+		final int nz = (int) numBlocks.getDepth();
+		
+		for (int x = x0; x <= x1; x++) {
+			final float bx = originX + slabX[x];
+			for (int y = y0; y <= y1; y++) {
+				final float by = originY + slabY[y];
+				// Index of (x, y, 0) in getBlocks()
+				final int rowIndex = (x * ny + y) * nz;
+				for (int z = z0; z <= z1; z++) {
+					// Only tiles that are partially visible need their blocks
+					// tested individually
+					if (tileVisibility == Frustum.INTERSECTS) {
+						final float bz = originZ + slabZ[z];
+						final int visibility = lay.testBox(
+								bx - hw, by - hh, bz - hd,
+								bx + hw, by + hh, bz + hd
+						);
+						if (visibility == Frustum.OUTSIDE) {
+							continue;
+						}
+					}
+					final int index = rowIndex + z;
+					batch.add(getBlockBrush(index, list1d.get(index)), index);
 				}
 			}
 		}
-
 	}
 	
-	public Dimension3 getSpacing() {
-		return spacing;
+	// Called by the DrawBatch, after updateLayout()
+	private void drawBlock(Layer lay, int index) {
+		final int ny = (int) numBlocks.getHeight();
+		final int nz = (int) numBlocks.getDepth();
+		final int z = index % nz;
+		final int xy = index / nz;
+		final int y = xy % ny;
+		final int x = xy / ny;
+		list1d.get(index).drawShapeAt(lay, 
+				originX + slabX[x], originY + slabY[y], originZ + slabZ[z]);
+	}
+	
+	protected abstract T newBlock();
+	
+	/**
+	 * Called on a block that was removed by a reset or resize before it is
+	 * reused somewhere else in the chunk, so that it can be made to look
+	 * like a block returned by {@link #newBlock()}. By default, does nothing.
+	 */
+	protected void recycleBlock(T block) {
+	}
+	
+	private T takeBlock() {
+		T block;
+		if (spareBlocks.isEmpty()) {
+			block = newBlock();
+		} else {
+			block = spareBlocks.remove(spareBlocks.size() - 1);
+			recycleBlock(block);
+		}
+		block.setSize(blockSize);
+		return block;
+	}
+	
+	/**
+	 * Releases the blocks kept for reuse by resets and resizes.
+	 */
+	public synchronized void clearBlockPool() {
+		trimBlockPool(0);
+	}
+	
+	/** Releases the blocks kept for reuse beyond the given number */
+	private void trimBlockPool(int maxSpareBlocks) {
+		if (spareBlocks.size() > maxSpareBlocks) {
+			trim(spareBlocks, maxSpareBlocks);
+			spareBlocks.trimToSize();
+		}
+	}
+	
+	/**
+	 * Returns the {@link Brush} the given block is drawn with. By default,
+	 * this is the block's own (possibly shared) brush.
+	 * @param index the index of the block in {@link #getBlocks()}
+	 * @param block the block
+	 */
+	protected Brush getBlockBrush(int index, T block) {
+		return block.getSharedBrush();
+	}
+	
+	/**
+	 * Must be called whenever the appearance of this {@link Chunk} or
+	 * one of its blocks changes.
+	 * @see #getVersion()
+	 */
+	protected void markChanged() {
+		version.incrementAndGet();
+	}
+	
+	@Override
+	public int getVersion() {
+		return version.get();
+	}
+	
+	/**
+	 * Sets the gap between neighbouring blocks on each axis, stopping any
+	 * animation of the spacing. The blocks don't store their location, so
+	 * this only changes the size of the chunk.
+	 */
+	public synchronized void setSpacing(Dimension3 spacing) {		
+		Dimension3.requireNonNegative(spacing);
+		animatingSpacing = false;
+		targetSpacing.set(spacing);
+		this.spacing.set(spacing);
+		applySpacing();
+	}
+	
+	/**
+	 * Smoothly changes the spacing from its current value to the given one
+	 * over the given duration. The spacing only changes when
+	 * {@link #updateSpacingAnimation()} is called, which should be once per
+	 * frame. Animating to a new spacing while an animation is running starts
+	 * from wherever the running animation is.
+	 */
+	public synchronized void animateSpacing(Dimension3 spacing, long durationMillis) {
+		Dimension3.requireNonNegative(spacing);
+		if (durationMillis <= 0) {
+			setSpacing(spacing);
+			return;
+		}
+		animStartSpacing.set(this.spacing);
+		targetSpacing.set(spacing);
+		animStartNanos = System.nanoTime();
+		animDurationNanos = durationMillis * 1000000L;
+		animatingSpacing = true;
+	}
+	
+	/**
+	 * Moves the spacing along its animation, if it is being animated.
+	 * @return true if the spacing is still being animated
+	 * @see #animateSpacing(Dimension3, long)
+	 */
+	public synchronized boolean updateSpacingAnimation() {
+		if (!animatingSpacing) {
+			return false;
+		}
+		final float t = Math.min(1f,
+				(float) (System.nanoTime() - animStartNanos) / animDurationNanos);
+		// Smoothstep, so the blocks ease in and out of their new places
+		final float e = t * t * (3f - 2f * t);
+		
+		final Dimension3 from = animStartSpacing;
+		final Dimension3 to = targetSpacing;
+		spacing.set(
+			from.getWidth() + (to.getWidth() - from.getWidth()) * e,
+			from.getHeight() + (to.getHeight() - from.getHeight()) * e,
+			from.getDepth() + (to.getDepth() - from.getDepth()) * e
+		);
+		applySpacing();
+		
+		animatingSpacing = t < 1f;
+		return animatingSpacing;
+	}
+	
+	public synchronized boolean isAnimatingSpacing() {
+		return animatingSpacing;
+	}
+	
+	/**
+	 * Updates the size of the chunk to fit the current spacing.
+	 */
+	private void applySpacing() {
+		// Update total size of cube (blockSize * numBlocks + spacing * numSpaces)
+		// Note: numSpaces = numBlocks - 1
+		// Runs every frame while the spacing is animated, so don't allocate
+		Dimension3.sub(numBlocks, Dimension3.ONE, sizeTemp);
+		Dimension3.mult(spacing, sizeTemp, sizeTemp);
+		Dimension3.add(sizeTemp, Dimension3.mult(blockSize, numBlocks, sizeTemp2), sizeTemp);
+		super.setSize(sizeTemp);
+		
+		markChanged();
+	}
+	
+	/**
+	 * Sets out to the location of the center of the block at (x, y, z),
+	 * and returns it.
+	 */
+	public synchronized Vec3.Mutable getBlockLoc(int x, int y, int z, Vec3.Mutable out) {
+		updateLayout();
+		return out.set(originX + slabX[x], originY + slabY[y], originZ + slabZ[z]);
+	}
+	
+	/**
+	 * Returns a copy of the current spacing, which is somewhere between its
+	 * old and new value while it is being animated. The animation changes
+	 * the spacing in place on the animation thread, so it is copied under
+	 * the lock of the chunk.
+	 * @see #getTargetSpacing()
+	 */
+	public synchronized Dimension3 getSpacing() {
+		return new Dimension3(spacing);
+	}
+	
+	/**
+	 * Returns a copy of the spacing that is being animated to, or of the
+	 * current spacing if it isn't being animated.
+	 */
+	public synchronized Dimension3 getTargetSpacing() {
+		return new Dimension3(targetSpacing);
+	}
+	
+	/**
+	 * Copies the size of this chunk into out and returns it. Unlike
+	 * {@link #getSize()}, this is safe while the spacing is being changed
+	 * on another thread, and doesn't allocate.
+	 */
+	public synchronized Dimension3.Mutable getSize(Dimension3.Mutable out) {
+		out.set(getSize());
+		return out;
 	}
 	
 	@Override
-	public void setSize(Dimension3 newSize) {
+	public synchronized void setSize(Dimension3 newSize) {
 		// Make sure there are no negative values
 		Dimension3.requireNonNegative(newSize);
 		
@@ -173,20 +516,95 @@ public abstract class Chunk<T extends GraphicsCube> extends GraphicsCube {
 	}
 	
 	/**
-	 * Change the number of {@link GraphicsCube}s on each axis.
-	 * <i>This function cannot be called while {@link Chunk#isInitialized()}
-	 * is true. Doing so will result in an {@link IllegalStateException}.</i>
+	 * Change the number of {@link GraphicsCube}s on each axis. If the chunk
+	 * is initialized, it is resized in place (see {@link #resize(Dimension3)}).
 	 * @param numBlocks the new number of {@link GraphicsCube}s on each
 	 * axis.
 	 */
-	public void setNumBlocks(Dimension3 numBlocks) {
-		if (initialized)
-			throw new IllegalStateException("Cannot reset the number of blocks "
-					+ "on each axis while the Chunk is initialized.");
+	public synchronized void setNumBlocks(Dimension3 numBlocks) {
+		if (initialized) {
+			resize(numBlocks);
+			return;
+		}
 		// Make sure no negative values
 		this.numBlocks.set(Dimension3.requireNonNegative(numBlocks));
 	}
 	
+	/**
+	 * Changes the number of blocks on each axis of an initialized chunk
+	 * without recreating it. The blocks that are still inside of the chunk
+	 * keep their coordinates and state, the ones that no longer fit are kept
+	 * for reuse (up to an eighth of the new number of blocks), and new blocks
+	 * are only created once those run out.
+	 * If the chunk isn't initialized, this is the same as
+	 * {@link #setNumBlocks(Dimension3)}.
+	 */
+	public synchronized void resize(Dimension3 numBlocks) {
+		Dimension3.requireNonNegative(numBlocks);
+		if (!initialized) {
+			this.numBlocks.set(numBlocks);
+			return;
+		}
+		
+		final int ox = (int) this.numBlocks.getWidth();
+		final int oy = (int) this.numBlocks.getHeight();
+		final int oz = (int) this.numBlocks.getDepth();
+		final int nx = (int) numBlocks.getWidth();
+		final int ny = (int) numBlocks.getHeight();
+		final int nz = (int) numBlocks.getDepth();
+		
+		// Blocks that no longer fit go to the pool
+		for (int x = 0; x < ox; x++) {
+			for (int y = 0; y < oy; y++) {
+				List<T> zList = blocks.get(x).get(y);
+				final int firstOut = (x < nx && y < ny) ? Math.min(nz, oz) : 0;
+				for (int z = firstOut; z < oz; z++) {
+					spareBlocks.add(zList.get(z));
+				}
+			}
+		}
+		
+		// Resize the nested lists, reusing them where possible
+		trim(blocks, nx);
+		while (blocks.size() < nx) {
+			blocks.add(new ArrayList<>(ny));
+		}
+		for (int x = 0; x < nx; x++) {
+			List<List<T>> yList = blocks.get(x);
+			trim(yList, ny);
+			while (yList.size() < ny) {
+				yList.add(new ArrayList<>(nz));
+			}
+			for (int y = 0; y < ny; y++) {
+				List<T> zList = yList.get(y);
+				trim(zList, nz);
+				while (zList.size() < nz) {
+					zList.add(takeBlock());
+				}
+			}
+		}
+		
+		list1d.clear();
+		for (int x = 0; x < nx; x++) {
+			for (int y = 0; y < ny; y++) {
+				list1d.addAll(blocks.get(x).get(y));
+			}
+		}
+		
+		this.numBlocks.set(numBlocks);
+		batch.clear();
+		trimBlockPool(list1d.size() / MAX_SPARE_BLOCKS_DIVISOR);
+		
+		// Sets the size of the chunk
+		applySpacing();
+	}
+	
+	private static void trim(List<?> list, int size) {
+		if (list.size() > size) {
+			list.subList(size, list.size()).clear();
+		}
+	}
+	
 	public Dimension3 getNumBlocks() {
 		return numBlocks;
 	}
@@ -199,6 +617,13 @@ public abstract class Chunk<T extends GraphicsCube> extends GraphicsCube {
 		return list1d;
 	}
 	
+	/**
+	 * Returns the index in {@link #getBlocks()} of the block at (x, y, z).
+	 */
+	public int getBlockIndex(int x, int y, int z) {
+		return (x * (int) numBlocks.getHeight() + y) * (int) numBlocks.getDepth() + z;
+	}
+	
 	public Dimension3 getBlockSize() {
 		return blockSize;
 	}
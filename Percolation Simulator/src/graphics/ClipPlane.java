@@ -0,0 +1,79 @@
+package graphics;
+
+import utils.Vec3;
+
+/**
+ * A user-defined plane that hides everything on its negative side. A point
+ * p is kept if <code>dot(normal, p) + offset >= 0</code>. The plane is
+ * expressed in the model space of the {@link Layer3D} it belongs to.
+ * A plane that moves, e.g. every frame of an animation, can be a
+ * {@link Mutable} one, so that it doesn't have to be made again.
+ */
+public class ClipPlane {
+
+	protected final Vec3.Mutable normal;
+	protected float offset;
+
+	public ClipPlane(Vec3 normal, float offset) {
+		this.normal = new Vec3.Mutable(normal);
+		this.offset = offset;
+	}
+
+	/**
+	 * Makes a {@link ClipPlane} that passes through the given point and
+	 * keeps everything on the side its normal points to.
+	 */
+	public static ClipPlane through(Vec3 point, Vec3 normal) {
+		return new ClipPlane(normal, -Vec3.dot(normal, point));
+	}
+
+	/**
+	 * Tests the given axis-aligned box against this plane.
+	 * @return {@link Frustum#OUTSIDE}, {@link Frustum#INTERSECTS}
+	 * or {@link Frustum#INSIDE}
+	 */
+	public int testBox(float minX, float minY, float minZ,
+			float maxX, float maxY, float maxZ) {
+		return Frustum.testBox(normal.getX(), normal.getY(), normal.getZ(),
+				offset, minX, minY, minZ, maxX, maxY, maxZ);
+	}
+
+	public Vec3 getNormal() {
+		return normal;
+	}
+
+	public float getOffset() {
+		return offset;
+	}
+
+	/**
+	 * A {@link ClipPlane} that can be moved in place.
+	 */
+	public static class Mutable extends ClipPlane {
+
+		public Mutable(Vec3 normal, float offset) {
+			super(normal, offset);
+		}
+
+		/**
+		 * Moves the plane along its normal.
+		 * @return this plane
+		 */
+		public Mutable setOffset(float newOffset) {
+			offset = newOffset;
+			return this;
+		}
+
+		/**
+		 * Moves the plane so that it passes through the given point, keeping
+		 * its normal.
+		 * @return this plane
+		 */
+		public Mutable setThrough(float x, float y, float z) {
+			offset = -(normal.getX() * x + normal.getY() * y + normal.getZ() * z);
+			return this;
+		}
+
+	}
+
+}
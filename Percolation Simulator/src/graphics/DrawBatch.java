@@ -0,0 +1,103 @@
+package graphics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the indices of shapes and draws them grouped by {@link Brush},
+ * so that the brush of a {@link Layer} changes once per group instead of
+ * once per shape. The shapes themselves are drawn by a {@link Shapes},
+ * which can compute them from their index rather than storing them.
+ * The arrays backing each group are kept between frames, so a batch
+ * that is reused does not allocate once it has warmed up.
+ */
+public class DrawBatch {
+	
+	/**
+	 * Draws the shape with a given index.
+	 */
+	public static interface Shapes {
+		
+		/**
+		 * Draws the geometry of the shape with the given index with the
+		 * {@link Brush} that is currently in use by the given {@link Layer}.
+		 */
+		public void drawShape(Layer lay, int index);
+		
+	}
+	
+	private Map<Brush, Bucket> buckets;
+	
+	// Most consecutive submissions share a brush
+	private Brush lastBrush;
+	private Bucket lastBucket;
+	
+	public DrawBatch() {
+		buckets = new LinkedHashMap<>();
+	}
+	
+	/**
+	 * Queues the shape with the given index to be drawn with the given
+	 * {@link Brush} when this batch is flushed.
+	 */
+	public void add(Brush brush, int index) {
+		if (brush != lastBrush) {
+			Bucket bucket = buckets.get(brush);
+			if (bucket == null) {
+				bucket = new Bucket();
+				// Keys must not change while in the map
+				buckets.put(new Brush.Builder(brush).buildBrush(), bucket);
+			}
+			lastBrush = brush;
+			lastBucket = bucket;
+		}
+		lastBucket.add(index);
+	}
+	
+	/**
+	 * Draws every queued shape through the given {@link Shapes}, one group
+	 * of equal {@link Brush}es at a time, and empties the batch.
+	 */
+	public void flush(Layer lay, Shapes shapes) {
+		for (Map.Entry<Brush, Bucket> entry : buckets.entrySet()) {
+			Bucket bucket = entry.getValue();
+			if (bucket.size == 0) {
+				continue;
+			}
+			lay.setBrush(entry.getKey());
+			final int[] indices = bucket.indices;
+			for (int i = 0; i < bucket.size; i++) {
+				shapes.drawShape(lay, indices[i]);
+			}
+			bucket.size = 0;
+		}
+		lastBrush = null;
+		lastBucket = null;
+	}
+	
+	/**
+	 * Removes all queued shapes and forgets all groups.
+	 */
+	public void clear() {
+		buckets.clear();
+		lastBrush = null;
+		lastBucket = null;
+	}
+	
+	private static class Bucket {
+		
+		private int[] indices = new int[64];
+		private int size;
+		
+		private void add(int index) {
+			if (size == indices.length) {
+				int[] temp = new int[indices.length * 2];
+				System.arraycopy(indices, 0, temp, 0, size);
+				indices = temp;
+			}
+			indices[size++] = index;
+		}
+		
+	}
+	
+}
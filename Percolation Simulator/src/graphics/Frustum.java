@@ -0,0 +1,122 @@
+package graphics;
+
+import processing.core.PGraphics;
+import processing.core.PMatrix3D;
+import processing.opengl.PGraphicsOpenGL;
+
+/**
+ * The six planes of a view frustum, expressed in the model space of the
+ * {@link PGraphics} they were extracted from. Used to skip
+ * {@link Drawable}s that lie entirely outside of the viewport.
+ */
+public class Frustum {
+
+	/** Result of a visibility test. */
+	public static final int OUTSIDE = 0, INTERSECTS = 1, INSIDE = 2;
+
+	private static final int NUM_PLANES = 6;
+
+	// Each plane is stored as (a, b, c, d), where a point (x, y, z) is
+	// inside the plane if a*x + b*y + c*z + d >= 0
+	private final float[] planes;
+	private final PMatrix3D matrix;
+	private boolean valid;
+
+	public Frustum() {
+		planes = new float[NUM_PLANES * 4];
+		matrix = new PMatrix3D();
+	}
+
+	/**
+	 * Extracts the frustum planes from the current projection and modelview
+	 * matrices of the given {@link PGraphics}. If the graphics are not
+	 * OpenGL graphics, the frustum will accept everything.
+	 */
+	public void set(PGraphics g) {
+		if (!(g instanceof PGraphicsOpenGL)) {
+			valid = false;
+			return;
+		}
+		PGraphicsOpenGL gl = (PGraphicsOpenGL) g;
+		matrix.set(gl.projection);
+		matrix.apply(gl.modelview);
+		set(matrix);
+	}
+
+	/**
+	 * Extracts the frustum planes from the given combined
+	 * projection * modelview matrix.
+	 */
+	public void set(PMatrix3D m) {
+		// Left, right
+		setPlane(0, m.m30 + m.m00, m.m31 + m.m01, m.m32 + m.m02, m.m33 + m.m03);
+		setPlane(1, m.m30 - m.m00, m.m31 - m.m01, m.m32 - m.m02, m.m33 - m.m03);
+		// Bottom, top
+		setPlane(2, m.m30 + m.m10, m.m31 + m.m11, m.m32 + m.m12, m.m33 + m.m13);
+		setPlane(3, m.m30 - m.m10, m.m31 - m.m11, m.m32 - m.m12, m.m33 - m.m13);
+		// Near, far
+		setPlane(4, m.m30 + m.m20, m.m31 + m.m21, m.m32 + m.m22, m.m33 + m.m23);
+		setPlane(5, m.m30 - m.m20, m.m31 - m.m21, m.m32 - m.m22, m.m33 - m.m23);
+		valid = true;
+	}
+
+	private void setPlane(int i, float a, float b, float c, float d) {
+		final int j = i * 4;
+		planes[j] = a;
+		planes[j + 1] = b;
+		planes[j + 2] = c;
+		planes[j + 3] = d;
+	}
+
+	/**
+	 * Tests the given axis-aligned box against the frustum.
+	 * @return {@link #OUTSIDE}, {@link #INTERSECTS} or {@link #INSIDE}
+	 */
+	public int testBox(float minX, float minY, float minZ,
+			float maxX, float maxY, float maxZ) {
+		if (!valid) {
+			return INSIDE;
+		}
+		int result = INSIDE;
+		for (int j = 0; j < planes.length; j += 4) {
+			final int r = testBox(planes[j], planes[j + 1], planes[j + 2],
+					planes[j + 3], minX, minY, minZ, maxX, maxY, maxZ);
+			if (r == OUTSIDE) {
+				return OUTSIDE;
+			}
+			if (r == INTERSECTS) {
+				result = INTERSECTS;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Tests an axis-aligned box against a single plane (a, b, c, d).
+	 * @return {@link #OUTSIDE}, {@link #INTERSECTS} or {@link #INSIDE}
+	 */
+	static int testBox(float a, float b, float c, float d,
+			float minX, float minY, float minZ,
+			float maxX, float maxY, float maxZ) {
+		// Corner furthest along the plane's normal
+		final float px = a >= 0f ? maxX : minX;
+		final float py = b >= 0f ? maxY : minY;
+		final float pz = c >= 0f ? maxZ : minZ;
+		if (a * px + b * py + c * pz + d < 0f) {
+			return OUTSIDE;
+		}
+		// Corner furthest against the plane's normal
+		final float nx = a >= 0f ? minX : maxX;
+		final float ny = b >= 0f ? minY : maxY;
+		final float nz = c >= 0f ? minZ : maxZ;
+		if (a * nx + b * ny + c * nz + d < 0f) {
+			return INTERSECTS;
+		}
+		return INSIDE;
+	}
+
+	public boolean isValid() {
+		return valid;
+	}
+
+}
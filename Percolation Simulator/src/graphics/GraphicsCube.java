@@ -5,7 +5,7 @@ import processing.core.PGraphics;
 import utils.Dimension3;
 import utils.Vec3;
 
-public class GraphicsCube extends GraphicsObject3D {
+public class GraphicsCube extends GraphicsObject3D implements Shape {
 	
 	private Dimension3.Mutable size;
 	
@@ -15,7 +15,7 @@ public class GraphicsCube extends GraphicsObject3D {
 	}
 
 	public GraphicsCube(Vec3 loc, Dimension3 size) {
-		this(loc, size, new Brush());
+		this(loc, size, Brush.DEFAULT);
 	}
 	
 	public GraphicsCube() {
@@ -25,11 +25,24 @@ public class GraphicsCube extends GraphicsObject3D {
 	@Override
 	public void draw(Layer lay) {
 		super.draw(lay);
-		
+		drawShape(lay);
+	}
+	
+	@Override
+	public void drawShape(Layer lay) {
+		final Vec3 loc = getLoc();
+		drawShapeAt(lay, loc.getX(), loc.getY(), loc.getZ());
+	}
+	
+	/**
+	 * Same as {@link #drawShape(Layer)}, but centered on the given
+	 * location instead of this cube's own.
+	 */
+	public void drawShapeAt(Layer lay, float x, float y, float z) {
 		PGraphics g = lay.getGraphics();
 		
 		g.pushMatrix();
-		lay.translate(getLoc());
+		g.translate(x, y, z);
 		lay.rotate(getRotation());
 		lay.box(size);
 		g.popMatrix();
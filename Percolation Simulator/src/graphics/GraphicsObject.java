@@ -6,18 +6,22 @@ public abstract class GraphicsObject implements Drawable {
 	
 	private Vec2.Mutable loc, veloc, accel;
 	private Vec2.Mutable rotation;
-	private Brush.Builder brush;
+	// Immutable brushes (such as the ones shared by many objects) are
+	// referenced, and only copied into a Builder of this object's own
+	// when it asks for one to modify (see getBrush())
+	private Brush brush;
+	private boolean ownsBrush;
 	
 	public GraphicsObject(Vec2 loc, Brush brush) {
 		this.loc = new Vec2.Mutable(loc);
-		this.brush = new Brush.Builder(brush);
+		setBrush(brush);
 		veloc = new Vec2.Mutable();
 		accel = new Vec2.Mutable();
 		rotation = new Vec2.Mutable();
 	}
 	
 	public GraphicsObject(Vec2 loc) {
-		this(loc, new Brush());
+		this(loc, Brush.DEFAULT);
 	}
 	
 	public GraphicsObject() {
@@ -59,12 +63,41 @@ public abstract class GraphicsObject implements Drawable {
 		this.accel.set(accel);
 	}
 	
+	/**
+	 * Returns this object's brush, to be modified. If the brush was shared,
+	 * this object gets its own copy first.
+	 * @see #getSharedBrush()
+	 */
 	public Brush.Builder getBrush() {
+		if (!ownsBrush) {
+			brush = new Brush.Builder(brush);
+			ownsBrush = true;
+		}
+		return (Brush.Builder) brush;
+	}
+	
+	/**
+	 * Returns the brush this object is drawn with, without copying it.
+	 * It may be shared with other objects, so it must not be modified.
+	 */
+	public Brush getSharedBrush() {
 		return brush;
 	}
 	
+	/**
+	 * Sets the brush of this object. Immutable brushes are shared by
+	 * reference, mutable ones ({@link Brush.Builder}s) are copied.
+	 */
 	public void setBrush(Brush newBrush) {
-		brush.set(newBrush);
+		if (!newBrush.isMutable()) {
+			brush = newBrush;
+			ownsBrush = false;
+		} else if (ownsBrush) {
+			((Brush.Builder) brush).set(newBrush);
+		} else {
+			brush = new Brush.Builder(newBrush);
+			ownsBrush = true;
+		}
 	}
 	
 	public Vec2 getRotation() {
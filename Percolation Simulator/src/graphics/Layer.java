@@ -12,7 +12,7 @@ import utils.Utils;
 import utils.Vec2;
 import utils.Vec3;
 
-public abstract class Layer {
+public abstract class Layer implements Versioned {
 	
 	private Canvas parentCanvas;
 	private Vec2.Mutable loc;
@@ -21,10 +21,32 @@ public abstract class Layer {
 	private int br, bg, bb;
 	private float transparency;
 	
-	private List<Drawable> drawables;
+	private DrawableList drawables;
 	private Brush.Builder brush;
+	/**
+	 * The brush in use: either an immutable brush that was given to
+	 * {@link #setBrush(Brush)}, or {@link #brush} holding a copy of a
+	 * mutable one.
+	 */
+	private Brush appliedBrush;
+	/** Whether {@link #appliedBrush} has been applied to the graphics this frame */
+	private boolean brushApplied;
+	private int brushChanges;
+	/** Shapes and vertices submitted to the graphics during the last frame */
+	private int shapeCount, vertexCount;
 	private boolean initialized;
 	
+	/** Incremented when a property of this layer changes */
+	private volatile int propertiesVersion;
+	/** Version of this layer when it was last rendered */
+	private int renderedVersion;
+	private boolean rendered;
+	/** Whether the last rendered image is reused while nothing changes */
+	private boolean cached;
+	/** How long the last call to draw() took */
+	private long drawNanos;
+	private boolean renderedLastDraw;
+	
 	private Camera cam;
 	
 	public Layer(Canvas parent, Vec2 loc, Dimension size) {
@@ -32,7 +54,8 @@ public abstract class Layer {
 		this.loc = new Vec2.Mutable(loc);
 		this.size = Dimension.requireNonNegative(size);
 		brush = new Brush.Builder();
-		drawables = new ArrayList<>();
+		appliedBrush = brush;
+		drawables = new DrawableList();
 	}
 	
 	public void init() {
@@ -42,10 +65,98 @@ public abstract class Layer {
 		initialized = true;
 	}
 	
+	/**
+	 * Executed by the {@link Canvas} every frame, before it decides whether
+	 * anything needs to be drawn again. Animations should advance here
+	 * rather than in the draw methods, which are skipped when nothing
+	 * changed.
+	 */
+	public void update() {
+	}
+	
+	/**
+	 * Returns true if this layer changed since it was last rendered: either
+	 * one of its properties changed (see {@link #markDirty()}), its list of
+	 * {@link Drawable}s was modified, or one of its {@link Versioned}
+	 * {@link Drawable}s has a new version.
+	 */
+	public boolean needsRedraw() {
+		return !rendered || getVersion() != renderedVersion;
+	}
+	
+	/**
+	 * Marks this layer as changed, so that it will be rendered again
+	 * on the next frame.
+	 */
+	public void markDirty() {
+		propertiesVersion++;
+	}
+	
+	/**
+	 * Returns a number that changes whenever a property of this layer
+	 * or one of its {@link Drawable}s changes.
+	 */
+	@Override
+	public int getVersion() {
+		return 31 * propertiesVersion + getDrawablesVersion();
+	}
+	
+	private int getDrawablesVersion() {
+		int version = drawables.getModCount();
+		for (int i = 0; i < drawables.size(); i++) {
+			Drawable d = drawables.get(i);
+			if (d instanceof Versioned) {
+				version = 31 * version + ((Versioned) d).getVersion();
+			}
+		}
+		return version;
+	}
+	
+	/**
+	 * Renders this layer to its {@link PGraphics} (unless it is cached and
+	 * did not change) and composites it onto the parent {@link Canvas}.
+	 * @see #setCached(boolean)
+	 */
 	public final void draw() {
+		final long start = System.nanoTime();
+		renderedLastDraw = !cached || needsRedraw();
+		if (renderedLastDraw) {
+			render();
+		}
+		parentCanvas.layer(this);
+		drawNanos = System.nanoTime() - start;
+	}
+	
+	/**
+	 * Returns how long the last call to {@link #draw()} took, on the CPU:
+	 * rendering (unless the layer was cached) and compositing. The GPU may
+	 * still be working on it afterwards.
+	 */
+	public long getDrawNanos() {
+		return drawNanos;
+	}
+	
+	/**
+	 * Returns true if the last call to {@link #draw()} rendered this layer,
+	 * false if it reused the cached image.
+	 */
+	public boolean renderedLastDraw() {
+		return renderedLastDraw;
+	}
+	
+	private void render() {
+		
+		// Record before rendering, so changes made while rendering are not lost
+		renderedVersion = getVersion();
+		rendered = true;
 
 		getGraphics().beginDraw();
 		
+		brushApplied = false;
+		brushChanges = 0;
+		shapeCount = 0;
+		vertexCount = 0;
+		
 		// DEFAULT SETTINGS
 		
 		// Center screen
@@ -53,7 +164,10 @@ public abstract class Layer {
 				getGraphics().width / 2f,
 				getGraphics().height / 2f
 		);
-		getGraphics().scale(1f, -1f, -1f);
+		// Y up in 3D, 2D graphics keep screen coordinates
+		if (getGraphics().is3D()) {
+			getGraphics().scale(1f, -1f, -1f);
+		}
 //		------
 		
 		// Background
@@ -63,16 +177,14 @@ public abstract class Layer {
 		
 		// Draw drawables
 		if (!getDrawables().isEmpty()) {
-			for (Drawable d : drawables) {
-				d.draw(this);
+			for (int i = 0; i < drawables.size(); i++) {
+				drawables.get(i).draw(this);
 			}
 		}
 		
 		afterObjectsDrawn();
 		
 		getGraphics().endDraw();
-		
-		parentCanvas.layer(this);
 	}
 	
 	/**
@@ -109,10 +221,11 @@ public abstract class Layer {
 	}
 	
 	public Brush getBrush() {
-		return brush;
+		return appliedBrush;
 	}
 	
 	private void applyBrush(PGraphics g) {
+		final Brush brush = appliedBrush;
 		if (brush.renderFill()) {
 			g.fill(brush.getFill(), brush.getFillAlpha());
 		} else {
@@ -126,9 +239,46 @@ public abstract class Layer {
 		}
 	}
 	
+	/**
+	 * Sets the brush that subsequent shapes are drawn with. If the given
+	 * brush is equal to the one already in use, the graphics state is
+	 * left untouched. Immutable brushes are used by reference, mutable
+	 * ones are copied.
+	 */
 	public void setBrush(Brush brush) {
-		this.brush.set(brush);
+		if (brushApplied && (brush == appliedBrush || appliedBrush.equals(brush))) {
+			return;
+		}
+		appliedBrush = brush.isMutable() ? this.brush.set(brush) : brush;
 		applyBrush(getGraphics());
+		brushApplied = true;
+		brushChanges++;
+	}
+	
+	/**
+	 * Returns the number of times the brush actually changed during the
+	 * last (or current) frame.
+	 */
+	public int getBrushChangeCount() {
+		return brushChanges;
+	}
+	
+	/**
+	 * Returns the number of shapes drawn with the 3D convenience methods
+	 * ({@link #box(Dimension3)}, {@link #sphere(float)} and
+	 * {@link #line(Vec3, Vec3)}) during the last (or current) frame.
+	 */
+	public int getShapeCount() {
+		return shapeCount;
+	}
+	
+	/**
+	 * Returns the number of vertices submitted by the shapes counted by
+	 * {@link #getShapeCount()}: a box is 6 quads if it is filled and 12 lines
+	 * if it is stroked. Spheres count their fill only.
+	 */
+	public int getVertexCount() {
+		return vertexCount;
 	}
 	
 	public abstract PGraphics getGraphics();
@@ -142,14 +292,22 @@ public abstract class Layer {
 //	}
 	
 	public void box(Dimension3 size) {
-		getGraphics().box(size.getWidth(), size.getHeight(), size.getDepth());
+		final PGraphics g = getGraphics();
+		g.box(size.getWidth(), size.getHeight(), size.getDepth());
+		shapeCount++;
+		vertexCount += (g.fill ? 6 * 4 : 0) + (g.stroke ? 12 * 2 : 0);
 	}
 	
 	public void sphere(float diam) {
-		getGraphics().sphere(diam);
+		final PGraphics g = getGraphics();
+		g.sphere(diam);
+		shapeCount++;
+		vertexCount += g.sphereDetailU * g.sphereDetailV;
 	}
 	
 	public void line(Vec3 p1, Vec3 p2) {
+		shapeCount++;
+		vertexCount += 2;
 		getGraphics().line(
 				// Point 1
 				p1.getX(), p1.getY(), p1.getZ(), 
@@ -235,6 +393,7 @@ public abstract class Layer {
 		bg = g;
 		bb = b;
 		transparency = a;
+		markDirty();
 	}
 	
 	public boolean isTransparent() {
@@ -247,10 +406,12 @@ public abstract class Layer {
 
 	public void setTransparent(boolean transparent) {
 		transparency = transparent ? 0f : 255f;
+		markDirty();
 	}
 	
 	public void setTransparency(float trans) {
 		transparency = Utils.constrain(trans, 0f, 255f);
+		markDirty();
 	}
 	
 	public Vec2 getLoc() {
@@ -259,6 +420,7 @@ public abstract class Layer {
 
 	public void setLoc(Vec2 loc) {
 		this.loc.set(loc);
+		markDirty();
 	}
 
 	public Dimension getSize() {
@@ -277,4 +439,29 @@ public abstract class Layer {
 		return initialized;
 	}
 	
+	public boolean isCached() {
+		return cached;
+	}
+	
+	/**
+	 * When cached, this layer keeps its rendered image and only renders
+	 * again when its version changes (see {@link #getVersion()}). This
+	 * suits static overlays that change far less often than the
+	 * {@link Canvas} is redrawn. Layers are not cached by default.
+	 */
+	public void setCached(boolean cached) {
+		this.cached = cached;
+	}
+	
+	/**
+	 * A list of {@link Drawable}s that exposes how many times it
+	 * was structurally modified.
+	 */
+	@SuppressWarnings("serial")
+	private static class DrawableList extends ArrayList<Drawable> {
+		int getModCount() {
+			return modCount;
+		}
+	}
+	
 }
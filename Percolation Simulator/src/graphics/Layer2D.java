@@ -52,6 +52,7 @@ public class Layer2D extends Layer {
 	
 	public void setTranslation(Vec2 translation) {
 		this.translation.set(translation);
+		markDirty();
 	}
 	
 	public Vec2 getScale() {
@@ -60,6 +61,7 @@ public class Layer2D extends Layer {
 	
 	public void setScale(Vec2 scale) {
 		this.scale.set(scale);
+		markDirty();
 	}
 	
 	public float getRotation() {
@@ -68,6 +70,7 @@ public class Layer2D extends Layer {
 	
 	public void setRotation(float rotation) {
 		this.rotation = rotation;
+		markDirty();
 	}
 	
 }
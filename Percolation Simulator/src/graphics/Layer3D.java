@@ -1,5 +1,8 @@
 package graphics;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import processing.core.PConstants;
 import processing.core.PGraphics;
 
@@ -13,6 +16,12 @@ public class Layer3D extends Layer {
 	private Vec3.Mutable translation;
 	private Vec3.Mutable rotation;
 	private Vec3.Mutable scale;
+	
+	private Frustum frustum;
+	private boolean cullingEnabled;
+	private List<ClipPlane> clipPlanes;
+	/** The clip planes as of the start of the frame */
+	private ClipPlane[] frameClipPlanes;
 		
 	public Layer3D(Canvas parent, Vec2 loc, Dimension size) {
 		super(parent, loc, size);
@@ -20,6 +29,12 @@ public class Layer3D extends Layer {
 		translation = new Vec3.Mutable();
 		rotation = new Vec3.Mutable();
 		scale = new Vec3.Mutable(1f, 1f, 1f);
+		
+		frustum = new Frustum();
+		cullingEnabled = true;
+		// Modified from the UI thread, iterated from the animation thread
+		clipPlanes = new CopyOnWriteArrayList<>();
+		frameClipPlanes = new ClipPlane[0];
 	}
 	
 	@Override
@@ -37,12 +52,51 @@ public class Layer3D extends Layer {
 		translate(getTranslation());
 		rotate(getRotation());
 		scale(getScale());
+		
+		// Drawables are drawn in this space, so this is the space
+		// they are culled in
+		frustum.set(getGraphics());
+		
+		// Iterating the list itself would allocate for every box tested.
+		// The array is null terminated if it is longer than the list.
+		frameClipPlanes = clipPlanes.toArray(frameClipPlanes);
 	}
 	
 	@Override
 	public void afterObjectsDrawn() {
 	}
 	
+	/**
+	 * Tests the given axis-aligned box (in the model space of this layer)
+	 * against the view frustum and the {@link ClipPlane}s this layer had
+	 * when the current frame started.
+	 * @return {@link Frustum#OUTSIDE}, {@link Frustum#INTERSECTS}
+	 * or {@link Frustum#INSIDE}
+	 */
+	public int testBox(float minX, float minY, float minZ,
+			float maxX, float maxY, float maxZ) {
+		int result = cullingEnabled 
+				? frustum.testBox(minX, minY, minZ, maxX, maxY, maxZ)
+				: Frustum.INSIDE;
+		if (result == Frustum.OUTSIDE) {
+			return result;
+		}
+		for (int i = 0; i < frameClipPlanes.length; i++) {
+			final ClipPlane plane = frameClipPlanes[i];
+			if (plane == null) {
+				break;
+			}
+			final int r = plane.testBox(minX, minY, minZ, maxX, maxY, maxZ);
+			if (r == Frustum.OUTSIDE) {
+				return r;
+			}
+			if (r == Frustum.INTERSECTS) {
+				result = r;
+			}
+		}
+		return result;
+	}
+	
 	@Override
 	public PGraphics getGraphics() {
 		return graphics;
@@ -53,7 +107,10 @@ public class Layer3D extends Layer {
 	}
 	
 	public void setTranslation(Vec3 trans) {
-		translation.set(trans);
+		if (!translation.equals(trans)) {
+			translation.set(trans);
+			markDirty();
+		}
 	}
 	
 	public Vec3 getRotation() {
@@ -61,7 +118,10 @@ public class Layer3D extends Layer {
 	}
 	
 	public void setRotation(Vec3 rot) {
-		rotation.set(rot);
+		if (!rotation.equals(rot)) {
+			rotation.set(rot);
+			markDirty();
+		}
 	}
 	
 	public Vec3 getScale() {
@@ -69,7 +129,33 @@ public class Layer3D extends Layer {
 	}
 
 	public void setScale(Vec3 scale) {
-		this.scale.set(scale);
+		if (!this.scale.equals(scale)) {
+			this.scale.set(scale);
+			markDirty();
+		}
+	}
+	
+	public Frustum getFrustum() {
+		return frustum;
+	}
+	
+	public boolean isCullingEnabled() {
+		return cullingEnabled;
+	}
+	
+	public void setCullingEnabled(boolean cullingEnabled) {
+		this.cullingEnabled = cullingEnabled;
+		markDirty();
+	}
+	
+	/**
+	 * The {@link ClipPlane}s of this layer. Anything entirely on the
+	 * negative side of one of these planes is not drawn. The list is
+	 * safe to modify from any thread. Call {@link #markDirty()} after
+	 * modifying it.
+	 */
+	public List<ClipPlane> getClipPlanes() {
+		return clipPlanes;
 	}
 	
 }
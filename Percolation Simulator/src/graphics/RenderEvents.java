@@ -0,0 +1,45 @@
+package graphics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Java Flight Recorder events of the renderer. Like the events of the
+ * simulation, they are in the Percolation category and configured by
+ * percolation.jfc.
+ */
+final class RenderEvents {
+	
+	private RenderEvents() { throw new AssertionError(); }
+	
+	private static final EventType FRAME_TYPE = EventType.getEventType(Frame.class);
+	
+	/**
+	 * Whether a recording has {@link Frame} events on, so that drawing a
+	 * frame only makes one when it can be recorded
+	 */
+	static boolean isFrameEnabled() {
+		return FRAME_TYPE.isEnabled();
+	}
+	
+	@Name("percolation.Frame")
+	@Label("Frame Render")
+	@Description("Layers of a Canvas drawn for one frame")
+	@Category("Percolation")
+	@StackTrace(false)
+	@Threshold("20 ms")
+	static final class Frame extends Event {
+		@Label("Layers")
+		int layers;
+		@Label("Layers Rendered")
+		@Description("Layers that were rendered rather than reused from their cache")
+		int layersRendered;
+	}
+	
+}
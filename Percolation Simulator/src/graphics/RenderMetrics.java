@@ -0,0 +1,56 @@
+package graphics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import utils.LatencyHistogram;
+
+/**
+ * Totals of the frames drawn by every {@link Canvas} since the program
+ * started, and a histogram of how long they took to draw. The counters are
+ * lock-free, so they can be read from any thread while frames are drawn.
+ * @see RenderMonitor
+ */
+public final class RenderMetrics {
+	
+	private static final LongAdder skippedFrames = new LongAdder();
+	private static final LatencyHistogram frameTimes = new LatencyHistogram("frame");
+	
+	private RenderMetrics() { throw new AssertionError(); }
+	
+	static void frameDrawn(long nanos) {
+		frameTimes.record(nanos);
+	}
+	
+	static void frameSkipped() {
+		skippedFrames.increment();
+	}
+	
+	/** Frames in which the layers were drawn */
+	public static long getDrawnFrames() {
+		return frameTimes.getCount();
+	}
+	
+	/** Frames that were skipped because nothing changed */
+	public static long getSkippedFrames() {
+		return skippedFrames.sum();
+	}
+	
+	/** The total time spent drawing the layers of the drawn frames */
+	public static long getDrawNanos() {
+		return frameTimes.getSum();
+	}
+	
+	public static double getMeanDrawMillis() {
+		final long frames = getDrawnFrames();
+		return frames == 0 ? 0.0 : getDrawNanos() / 1e6 / frames;
+	}
+	
+	/**
+	 * Returns the histogram of the time spent drawing the layers of the
+	 * drawn frames, in nanoseconds.
+	 */
+	public static LatencyHistogram getFrameTimes() {
+		return frameTimes;
+	}
+	
+}
@@ -0,0 +1,113 @@
+package graphics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+import utils.LatencyHistogram;
+import utils.MBeans;
+
+/**
+ * Exposes {@link RenderMetrics} through JMX, as "percolation:type=Render".
+ * The frame rate and the percentiles of the frame times are measured over
+ * the time since they were last measured, at most once a second.
+ */
+public class RenderMonitor implements RenderMonitorMBean {
+	
+	public static final String TYPE = "Render";
+	
+	private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+	
+	// Guarded by this
+	private long lastSampleNanos;
+	private LatencyHistogram.Snapshot lastFrameTimes;
+	private LatencyHistogram.Snapshot frameTimes;
+	private double drawnFramesPerSecond;
+	
+	public RenderMonitor() {
+		lastSampleNanos = System.nanoTime();
+		lastFrameTimes = RenderMetrics.getFrameTimes().snapshot();
+		frameTimes = lastFrameTimes.since(lastFrameTimes);
+	}
+	
+	/**
+	 * Makes a monitor and registers it, replacing the one that was
+	 * registered before.
+	 */
+	public static RenderMonitor register() {
+		RenderMonitor monitor = new RenderMonitor();
+		MBeans.register(TYPE, monitor);
+		return monitor;
+	}
+	
+	@Override
+	public long getDrawnFrames() {
+		return RenderMetrics.getDrawnFrames();
+	}
+	
+	@Override
+	public long getSkippedFrames() {
+		return RenderMetrics.getSkippedFrames();
+	}
+	
+	@Override
+	public synchronized double getDrawnFramesPerSecond() {
+		sample();
+		return drawnFramesPerSecond;
+	}
+	
+	@Override
+	public double getMeanDrawMillis() {
+		return RenderMetrics.getMeanDrawMillis();
+	}
+	
+	@Override
+	public synchronized double getDrawMillisP50() {
+		sample();
+		return frameTimes.getPercentile(50.0) / 1e6;
+	}
+	
+	@Override
+	public synchronized double getDrawMillisP99() {
+		sample();
+		return frameTimes.getPercentile(99.0) / 1e6;
+	}
+	
+	@Override
+	public synchronized double getDrawMillisP999() {
+		sample();
+		return frameTimes.getPercentile(99.9) / 1e6;
+	}
+	
+	@Override
+	public synchronized double getDrawMillisMax() {
+		sample();
+		return frameTimes.getMax() / 1e6;
+	}
+	
+	@Override
+	public synchronized String getDrawTimeHistogramJson() {
+		sample();
+		final StringBuilder json = new StringBuilder();
+		try {
+			frameTimes.appendJson(json);
+		} catch (IOException e) {
+			// A StringBuilder doesn't throw
+			throw new UncheckedIOException(e);
+		}
+		return json.toString().trim();
+	}
+	
+	private void sample() {
+		final long now = System.nanoTime();
+		if (now - lastSampleNanos < RATE_INTERVAL_NANOS) {
+			return;
+		}
+		final LatencyHistogram.Snapshot snapshot = RenderMetrics.getFrameTimes().snapshot();
+		frameTimes = snapshot.since(lastFrameTimes);
+		drawnFramesPerSecond = frameTimes.getCount() / ((now - lastSampleNanos) / 1e9);
+		lastSampleNanos = now;
+		lastFrameTimes = snapshot;
+	}
+	
+}
@@ -0,0 +1,22 @@
+package graphics;
+
+/**
+ * The attributes of the renderer exposed through JMX.
+ * @see RenderMonitor
+ */
+public interface RenderMonitorMBean {
+	
+	long getDrawnFrames();
+	long getSkippedFrames();
+	double getDrawnFramesPerSecond();
+	double getMeanDrawMillis();
+	
+	// The frames drawn in the last interval
+	
+	double getDrawMillisP50();
+	double getDrawMillisP99();
+	double getDrawMillisP999();
+	double getDrawMillisMax();
+	String getDrawTimeHistogramJson();
+	
+}
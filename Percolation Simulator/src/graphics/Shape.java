@@ -0,0 +1,16 @@
+package graphics;
+
+/**
+ * Defines a {@link Drawable} whose geometry can be drawn separately from
+ * its {@link Brush}. This lets many shapes be drawn with a single
+ * brush change.
+ */
+public interface Shape extends Drawable {
+	
+	/**
+	 * Draws the geometry of this shape with the {@link Brush} that is
+	 * currently in use by the given {@link Layer}.
+	 */
+	public void drawShape(Layer lay);
+	
+}
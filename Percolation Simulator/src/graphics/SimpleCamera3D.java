@@ -8,9 +8,14 @@ import utils.Vec3;
 public class SimpleCamera3D implements Camera {
 	
 	private Layer3D layer;
+	
+	// Reused for every event
+	private Vec3.Mutable rotation, scale;
 
 	public SimpleCamera3D(Layer3D layer) {
 		this.layer = layer;
+		rotation = new Vec3.Mutable();
+		scale = new Vec3.Mutable();
 	}
 
 	@Override
@@ -21,12 +26,12 @@ public class SimpleCamera3D implements Camera {
 		final float angleX = Utils.map(dx, 0f, 800f, 0f, Utils.TWO_PI);
 		final float angleY = Utils.map(dy, 0f, 800f, 0f, Utils.TWO_PI);
 		
-		Vec3 rot = new Vec3(
+		rotation.set(
 				layer.getRotation().getX() + angleY,
 				layer.getRotation().getY() + angleX,
 				layer.getRotation().getZ()
 		);
-		layer.setRotation(rot);		
+		layer.setRotation(rotation);		
 	}
 
 	@Override
@@ -35,7 +40,7 @@ public class SimpleCamera3D implements Camera {
 		final float newScale = scrollDir/100f;	
 		
 		// Change scale
-		layer.setScale(Vec3.add(layer.getScale(), newScale));
+		layer.setScale(Vec3.add(layer.getScale(), newScale, scale));
 	}
 
 	@Override
@@ -0,0 +1,15 @@
+package graphics;
+
+/**
+ * Defines a type whose appearance can change over time. Every change
+ * results in a new version, so a {@link Layer} can tell whether it needs
+ * to be drawn again by comparing versions instead of the objects themselves.
+ */
+public interface Versioned {
+	
+	/**
+	 * Returns a number that changes every time this object changes.
+	 */
+	public int getVersion();
+	
+}
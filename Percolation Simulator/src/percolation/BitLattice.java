@@ -0,0 +1,114 @@
+package percolation;
+
+import percolation.PercolationBlock.BLOCK_TYPE;
+
+import static percolation.PercolationBlock.BLOCK_TYPE.*;
+
+/**
+ * A {@link PercolationLattice} with two bits per site, one set if the site
+ * is open and one set if it is water, in the same order as the blocks of a
+ * {@link PercolationChunk} (x, then y, then z).
+ */
+public class BitLattice implements PercolationLattice {
+	
+	/** The most sites the bit sets can hold */
+	public static final long MAX_SITES = (long) (Integer.MAX_VALUE - 8) * Long.SIZE;
+	
+	private final int width, height, depth;
+	private final long[] open, water;
+	
+	/**
+	 * Makes a lattice of closed sites.
+	 */
+	public BitLattice(int width, int height, int depth) {
+		final long sites = (long) width * height * depth;
+		if (sites > MAX_SITES) {
+			throw new IllegalArgumentException(width + " x " + height + " x "
+					+ depth + " is too many sites for a BitLattice");
+		}
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		open = new long[(int) ((sites + Long.SIZE - 1) / Long.SIZE)];
+		water = new long[open.length];
+	}
+	
+	private long index(int x, int y, int z) {
+		return ((long) x * height + y) * depth + z;
+	}
+	
+	@Override
+	public BLOCK_TYPE getType(int x, int y, int z) {
+		final long i = index(x, y, z);
+		final int word = (int) (i >>> 6);
+		final long bit = 1L << i;
+		if ((water[word] & bit) != 0L) {
+			return WATER;
+		}
+		return (open[word] & bit) != 0L ? OPEN : CLOSED;
+	}
+	
+	@Override
+	public void setType(int x, int y, int z, BLOCK_TYPE type) {
+		final long i = index(x, y, z);
+		final int word = (int) (i >>> 6);
+		final long bit = 1L << i;
+		switch (type) {
+		case OPEN:
+			open[word] |= bit;
+			water[word] &= ~bit;
+			break;
+		case CLOSED:
+			open[word] &= ~bit;
+			water[word] &= ~bit;
+			break;
+		case WATER:
+			open[word] &= ~bit;
+			water[word] |= bit;
+			break;
+		}
+	}
+	
+	@Override
+	public boolean flood(int x, int y, int z) {
+		final long i = index(x, y, z);
+		final int word = (int) (i >>> 6);
+		final long bit = 1L << i;
+		if ((open[word] & bit) == 0L) {
+			return false;
+		}
+		open[word] &= ~bit;
+		water[word] |= bit;
+		return true;
+	}
+	
+	@Override
+	public void clearWater() {
+		// A word at a time
+		for (int i = 0; i < water.length; i++) {
+			open[i] |= water[i];
+			water[i] = 0L;
+		}
+	}
+	
+	@Override
+	public long getFootprint() {
+		return 2L * open.length * Long.BYTES;
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+	
+}
@@ -0,0 +1,143 @@
+package percolation;
+
+import java.util.Arrays;
+
+import percolation.PercolationBlock.BLOCK_TYPE;
+
+import utils.LongList;
+
+import static percolation.PercolationBlock.BLOCK_TYPE.*;
+import static percolation.PercolationLattice.unpackX;
+import static percolation.PercolationLattice.unpackY;
+import static percolation.PercolationLattice.unpackZ;
+
+/**
+ * A {@link PercolationLattice} with a byte per site, in the same order as
+ * the blocks of a {@link PercolationChunk} (x, then y, then z).
+ */
+public class ByteLattice implements PercolationLattice {
+	
+	/** The most sites a byte array can hold */
+	public static final long MAX_SITES = Integer.MAX_VALUE - 8;
+	
+	private static final BLOCK_TYPE[] TYPES = BLOCK_TYPE.values();
+	private static final byte OPEN_BYTE = (byte) OPEN.ordinal();
+	private static final byte WATER_BYTE = (byte) WATER.ordinal();
+	
+	private final int width, height, depth;
+	private final byte[] types;
+	
+	/** The last rule spread with, and its offsets in types */
+	private FlowRule compiledRule;
+	private int[] indexOffsets;
+	
+	/**
+	 * Makes a lattice of closed sites.
+	 */
+	public ByteLattice(int width, int height, int depth) {
+		final long sites = (long) width * height * depth;
+		if (sites > MAX_SITES) {
+			throw new IllegalArgumentException(width + " x " + height + " x "
+					+ depth + " is too many sites for a ByteLattice");
+		}
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		types = new byte[(int) sites];
+		Arrays.fill(types, (byte) CLOSED.ordinal());
+	}
+	
+	private int index(int x, int y, int z) {
+		return (x * height + y) * depth + z;
+	}
+	
+	@Override
+	public BLOCK_TYPE getType(int x, int y, int z) {
+		return TYPES[types[index(x, y, z)]];
+	}
+	
+	@Override
+	public void setType(int x, int y, int z, BLOCK_TYPE type) {
+		types[index(x, y, z)] = (byte) type.ordinal();
+	}
+	
+	@Override
+	public boolean flood(int x, int y, int z) {
+		final int i = index(x, y, z);
+		if (types[i] != OPEN_BYTE) {
+			return false;
+		}
+		types[i] = WATER_BYTE;
+		return true;
+	}
+	
+	/**
+	 * Finds the neighbours from the index of each site, with the rule
+	 * compiled for the size of this lattice (the sites are in the same order
+	 * as the blocks of a chunk).
+	 */
+	@Override
+	public long spread(FlowRule rule, long[] sites, int numSites, LongList next) {
+		if (rule != compiledRule) {
+			indexOffsets = rule.compile(width, height, depth).offsets;
+			compiledRule = rule;
+		}
+		final int[] offsets = indexOffsets;
+		final long[] siteOffsets = rule.packedOffsets;
+		final int[] masks = rule.masks;
+		long visited = 0;
+		for (int n = 0; n < numSites; n++) {
+			final long site = sites[n];
+			final int x = unpackX(site);
+			final int y = unpackY(site);
+			final int z = unpackZ(site);
+			final int i = index(x, y, z);
+			final int faces = FlowRule.getFaces(x, y, z, width, height, depth);
+			for (int k = 0; k < offsets.length; k++) {
+				if ((faces & masks[k]) != 0) {
+					continue;
+				}
+				visited++;
+				floodInto(i + offsets[k], site + siteOffsets[k], next);
+			}
+		}
+		return visited;
+	}
+	
+	private void floodInto(int i, long site, LongList next) {
+		if (types[i] == OPEN_BYTE) {
+			types[i] = WATER_BYTE;
+			next.add(site);
+		}
+	}
+	
+	@Override
+	public void clearWater() {
+		for (int i = 0; i < types.length; i++) {
+			if (types[i] == WATER_BYTE) {
+				types[i] = OPEN_BYTE;
+			}
+		}
+	}
+	
+	@Override
+	public long getFootprint() {
+		return types.length;
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+	
+}
@@ -0,0 +1,279 @@
+package percolation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which neighbours water flows to from a water block of a
+ * {@link PercolationChunk} or a site of a {@link PercolationLattice}: a set
+ * of directions (dx, dy, dz), each -1, 0 or 1 on every axis, and which way
+ * is down. Water comes in through the face of the chunk at the top, and
+ * percolates if it reaches the face at the bottom.
+ * <p>
+ * A rule is compiled for the size of a chunk into an offset to add to the
+ * index of a block in {@link PercolationChunk#getBlocks()} for each
+ * direction, and each direction has a mask of the faces of the chunk it
+ * leaves through, so a step is a loop over ints that doesn't allocate.
+ */
+public final class FlowRule {
+	
+	// The bits of the faces of the chunk a block is on
+	static final int FACE_MIN_X = 1, FACE_MAX_X = 2;
+	static final int FACE_MIN_Y = 4, FACE_MAX_Y = 8;
+	static final int FACE_MIN_Z = 16, FACE_MAX_Z = 32;
+	
+	/** The six face neighbours, but never up (the original rule) */
+	public static final FlowRule SIDEWAYS_AND_DOWN = withGravity(0, -1, 0);
+	/** The six face neighbours */
+	public static final FlowRule ISOTROPIC_6 = new FlowRule("6 neighbours", 1);
+	/** The face and edge neighbours */
+	public static final FlowRule NEIGHBOURS_18 = new FlowRule("18 neighbours", 2);
+	/** The face, edge and corner neighbours */
+	public static final FlowRule NEIGHBOURS_26 = new FlowRule("26 neighbours", 3);
+	
+	/**
+	 * Calls a function with the coordinates of sites.
+	 */
+	public interface SiteVisitor {
+		void visit(int x, int y, int z);
+	}
+	
+	private final String name;
+	final int[] dx, dy, dz;
+	/** The faces each direction leaves the chunk through, as FACE_ bits */
+	final int[] masks;
+	/** What each direction adds to a site packed by PercolationLattice.pack() */
+	final long[] packedOffsets;
+	/** The axis down is along (0 for x, 1 for y, 2 for z), and its sign */
+	private final int downAxis, downSign;
+	
+	private FlowRule(String name, int[][] directions, int downAxis, int downSign) {
+		this.name = name;
+		this.downAxis = downAxis;
+		this.downSign = downSign;
+		dx = new int[directions.length];
+		dy = new int[directions.length];
+		dz = new int[directions.length];
+		masks = new int[directions.length];
+		packedOffsets = new long[directions.length];
+		for (int i = 0; i < directions.length; i++) {
+			dx[i] = directions[i][0];
+			dy[i] = directions[i][1];
+			dz[i] = directions[i][2];
+			masks[i] = (dx[i] < 0 ? FACE_MIN_X : dx[i] > 0 ? FACE_MAX_X : 0)
+					| (dy[i] < 0 ? FACE_MIN_Y : dy[i] > 0 ? FACE_MAX_Y : 0)
+					| (dz[i] < 0 ? FACE_MIN_Z : dz[i] > 0 ? FACE_MAX_Z : 0);
+			// Packing is linear, so moving the coordinates moves the site
+			packedOffsets[i] = dx[i] * PercolationLattice.pack(1, 0, 0)
+					+ dy[i] * PercolationLattice.pack(0, 1, 0) + dz[i];
+		}
+	}
+	
+	/**
+	 * The neighbours that differ from the block on at most the given number
+	 * of axes, with down along -y
+	 */
+	private FlowRule(String name, int maxAxes) {
+		this(name, getDirections(maxAxes), 1, -1);
+	}
+	
+	/**
+	 * Returns the rule in which water flows to the six face neighbours,
+	 * except for the ones against the given gravity (those whose direction
+	 * has a negative dot product with it). Down is along the axis gravity is
+	 * strongest along (y, then x, then z if that is a tie), so water comes in
+	 * through the face gravity points away from, and percolates to the one
+	 * it points to. Gravity along -y is {@link #SIDEWAYS_AND_DOWN}.
+	 */
+	public static FlowRule withGravity(float gx, float gy, float gz) {
+		if (gx == 0f && gy == 0f && gz == 0f) {
+			throw new IllegalArgumentException("Gravity has no direction");
+		}
+		final String name = gx == 0f && gy == -1f && gz == 0f ? "Sideways and down"
+				: "Gravity (" + gx + ", " + gy + ", " + gz + ")";
+		final List<int[]> directions = new ArrayList<>();
+		for (int[] d : getDirections(1)) {
+			if (d[0] * gx + d[1] * gy + d[2] * gz >= 0f) {
+				directions.add(d);
+			}
+		}
+		
+		final float ax = Math.abs(gx), ay = Math.abs(gy), az = Math.abs(gz);
+		final int downAxis;
+		final float down;
+		if (ay >= ax && ay >= az) {
+			downAxis = 1;
+			down = gy;
+		} else if (ax >= az) {
+			downAxis = 0;
+			down = gx;
+		} else {
+			downAxis = 2;
+			down = gz;
+		}
+		return new FlowRule(name, directions.toArray(new int[0][]),
+				downAxis, down < 0f ? -1 : 1);
+	}
+	
+	private static int[][] getDirections(int maxAxes) {
+		final List<int[]> directions = new ArrayList<>();
+		for (int x = -1; x <= 1; x++) {
+			for (int y = -1; y <= 1; y++) {
+				for (int z = -1; z <= 1; z++) {
+					final int axes = Math.abs(x) + Math.abs(y) + Math.abs(z);
+					if (axes > 0 && axes <= maxAxes) {
+						directions.add(new int[] { x, y, z });
+					}
+				}
+			}
+		}
+		return directions.toArray(new int[0][]);
+	}
+	
+	/**
+	 * Returns the offsets of this rule for a chunk with the given number of
+	 * blocks on each axis.
+	 */
+	Compiled compile(int width, int height, int depth) {
+		final int[] offsets = new int[dx.length];
+		for (int i = 0; i < dx.length; i++) {
+			offsets[i] = (dx[i] * height + dy[i]) * depth + dz[i];
+		}
+		return new Compiled(this, width, height, depth, offsets);
+	}
+	
+	/**
+	 * Returns the faces of a chunk of the given size the site at (x, y, z)
+	 * is on, as FACE_ bits: a direction whose mask has one of them leaves
+	 * the chunk.
+	 */
+	static int getFaces(int x, int y, int z, int width, int height, int depth) {
+		return (x == 0 ? FACE_MIN_X : 0) | (x == width - 1 ? FACE_MAX_X : 0)
+				| (y == 0 ? FACE_MIN_Y : 0) | (y == height - 1 ? FACE_MAX_Y : 0)
+				| (z == 0 ? FACE_MIN_Z : 0) | (z == depth - 1 ? FACE_MAX_Z : 0);
+	}
+	
+	/**
+	 * Calls the visitor with each site of the face water comes in through,
+	 * for a chunk of the given size.
+	 */
+	public void forEachInflowSite(int width, int height, int depth, SiteVisitor visitor) {
+		forEachFaceSite(-downSign, width, height, depth, visitor);
+	}
+	
+	/**
+	 * Calls the visitor with each site of the face water percolates to, for
+	 * a chunk of the given size.
+	 */
+	public void forEachOutflowSite(int width, int height, int depth, SiteVisitor visitor) {
+		forEachFaceSite(downSign, width, height, depth, visitor);
+	}
+	
+	/** The number of sites of the face water percolates to */
+	public long getOutflowArea(int width, int height, int depth) {
+		switch (downAxis) {
+		case 0: return (long) height * depth;
+		case 1: return (long) width * depth;
+		default: return (long) width * height;
+		}
+	}
+	
+	/**
+	 * Whether the site at (x, y, z) is on the face water percolates to, for
+	 * a chunk of the given size
+	 */
+	boolean isOutflowSite(int x, int y, int z, int width, int height, int depth) {
+		switch (downAxis) {
+		case 0: return x == (downSign < 0 ? 0 : width - 1);
+		case 1: return y == (downSign < 0 ? 0 : height - 1);
+		default: return z == (downSign < 0 ? 0 : depth - 1);
+		}
+	}
+	
+	/** The face at the given end (-1 for the min side) of the down axis */
+	private void forEachFaceSite(int side, int width, int height, int depth,
+			SiteVisitor visitor) {
+		final int[] sizes = { width, height, depth };
+		final int plane = side < 0 ? 0 : sizes[downAxis] - 1;
+		final int[] c = new int[3];
+		c[downAxis] = plane;
+		final int u = downAxis == 0 ? 1 : 0;
+		final int v = downAxis == 2 ? 1 : 2;
+		for (c[u] = 0; c[u] < sizes[u]; c[u]++) {
+			for (c[v] = 0; c[v] < sizes[v]; c[v]++) {
+				visitor.visit(c[0], c[1], c[2]);
+			}
+		}
+	}
+	
+	/** The number of neighbours water can flow to */
+	public int getNumDirections() {
+		return dx.length;
+	}
+	
+	/**
+	 * Returns the direction water flows to, numbered from 0 to
+	 * {@link #getNumDirections()}, as {dx, dy, dz}.
+	 */
+	public int[] getDirection(int i) {
+		return new int[] { dx[i], dy[i], dz[i] };
+	}
+	
+	/** Returns down, as a unit vector along an axis: {dx, dy, dz} */
+	public int[] getDown() {
+		final int[] down = new int[3];
+		down[downAxis] = downSign;
+		return down;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+	
+	/**
+	 * A {@link FlowRule} for one size of chunk. The neighbour of the block at
+	 * index i in direction k is at i + offsets[k], unless the block is on one
+	 * of the faces in masks[k] (see {@link #getFaces(int)}).
+	 */
+	static final class Compiled {
+		
+		final FlowRule rule;
+		final int width, height, depth;
+		final int[] offsets;
+		final int[] masks;
+		
+		private Compiled(FlowRule rule, int width, int height, int depth,
+				int[] offsets) {
+			this.rule = rule;
+			this.width = width;
+			this.height = height;
+			this.depth = depth;
+			this.offsets = offsets;
+			this.masks = rule.masks;
+		}
+		
+		boolean isFor(FlowRule rule, int width, int height, int depth) {
+			return this.rule == rule && this.width == width
+					&& this.height == height && this.depth == depth;
+		}
+		
+		/**
+		 * Returns the faces of the chunk the block at the given index is on,
+		 * as FACE_ bits.
+		 */
+		int getFaces(int index) {
+			final int z = index % depth;
+			final int xy = index / depth;
+			final int y = xy % height;
+			final int x = xy / height;
+			return FlowRule.getFaces(x, y, z, width, height, depth);
+		}
+	
+	}
+	
+}
@@ -0,0 +1,192 @@
+package percolation;
+
+import utils.LongList;
+import utils.Progress;
+
+import static percolation.PercolationBlock.BLOCK_TYPE.WATER;
+
+/**
+ * Percolates a {@link PercolationLattice} the same way a
+ * {@link PercolationChunk} percolates (water flows to the neighbours its
+ * {@link FlowRule} allows, one step at a time, from the open sites of the
+ * top row), without the blocks,
+ * snapshots and change events the editor needs. Only the sites that became
+ * water in the last step are kept, so a percolation can't be stepped back.
+ * <p>
+ * Stepping doesn't allocate once the frontier has grown to its largest.
+ * Like a chunk, it must only be used by one thread.
+ */
+public class LatticePercolation {
+	
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private final PercolationLattice lattice;
+	private float p;
+	private FlowRule flowRule = FlowRule.SIDEWAYS_AND_DOWN;
+	
+	// The sites that became water in the last step, and in the next one
+	private LongList frontier, next;
+	
+	private int currentStep;
+	private boolean finishedPercolation;
+	private long waterSites;
+	
+	public LatticePercolation(PercolationLattice lattice, float p) {
+		this.lattice = lattice;
+		this.p = p;
+		frontier = new LongList(INITIAL_CAPACITY);
+		next = new LongList(INITIAL_CAPACITY);
+		currentStep = -1;
+	}
+	
+	/**
+	 * Opens every site with probability p, from the given seed, and removes
+	 * the water.
+	 */
+	public void randomize(long seed, Progress progress) {
+		lattice.randomize(p, seed, progress);
+		frontier.clear();
+		waterSites = 0;
+		currentStep = -1;
+		finishedPercolation = false;
+		PercolationMetrics.randomized(lattice.getSiteCount());
+	}
+	
+	/**
+	 * Floods the open sites of the top row: the face of the lattice water
+	 * comes in through under its {@link FlowRule}.
+	 */
+	public void populateTopRowWithWater() {
+		next.clear();
+		flowRule.forEachInflowSite(lattice.getWidth(), lattice.getHeight(),
+				lattice.getDepth(), (x, y, z) -> {
+			if (lattice.flood(x, y, z)) {
+				next.add(lattice.getSite(x, y, z));
+			}
+		});
+		waterSites += next.size();
+		swapFrontier();
+		currentStep = 0;
+		finishedPercolation = false;
+	}
+	
+	/**
+	 * Takes one step forward in the percolation process.
+	 * @return the number of new water sites
+	 */
+	public int stepForward() {
+		if (finishedPercolation || currentStep < 0) {
+			return 0;
+		}
+		final long start = System.nanoTime();
+		
+		next.clear();
+		final long visited = lattice.spread(flowRule, frontier.array(),
+				frontier.size(), next);
+		
+		final int added = next.size();
+		waterSites += added;
+		swapFrontier();
+		if (added > 0) {
+			currentStep++;
+		} else {
+			finishedPercolation = true;
+		}
+		PercolationMetrics.stepTaken(visited, added, System.nanoTime() - start);
+		if (finishedPercolation) {
+			PercolationMetrics.runCompleted(lattice.getSiteCount());
+		}
+		return added;
+	}
+	
+	private void swapFrontier() {
+		final LongList temp = frontier;
+		frontier = next;
+		next = temp;
+	}
+	
+	/**
+	 * Removes the water, so that the percolation can start over.
+	 */
+	public void clearWater() {
+		lattice.clearWater();
+		frontier.clear();
+		waterSites = 0;
+		currentStep = -1;
+		finishedPercolation = false;
+	}
+	
+	/**
+	 * Returns true if water reached the bottom row (the face water percolates
+	 * to under the {@link FlowRule}). Only meaningful once the percolation is
+	 * finished.
+	 */
+	public boolean percolates() {
+		return getPercolatedSites() > 0;
+	}
+	
+	/** The number of water sites of the bottom row */
+	public long getPercolatedSites() {
+		final long[] count = new long[1];
+		flowRule.forEachOutflowSite(lattice.getWidth(), lattice.getHeight(),
+				lattice.getDepth(), (x, y, z) -> {
+			if (lattice.getType(x, y, z) == WATER) {
+				count[0]++;
+			}
+		});
+		return count[0];
+	}
+	
+	/**
+	 * Sets which neighbours water flows to from the next step on, and which
+	 * faces water comes in through and percolates to from the next
+	 * {@link #populateTopRowWithWater()} on.
+	 */
+	public void setFlowRule(FlowRule flowRule) {
+		if (flowRule == null) {
+			throw new IllegalArgumentException("flowRule is null");
+		}
+		this.flowRule = flowRule;
+	}
+	
+	public FlowRule getFlowRule() {
+		return flowRule;
+	}
+	
+	/**
+	 * The heap taken by the lattice and the frontier, in bytes
+	 */
+	public long getFootprint() {
+		return lattice.getFootprint()
+				+ (long) (frontier.capacity() + next.capacity()) * Long.BYTES;
+	}
+	
+	public PercolationLattice getLattice() {
+		return lattice;
+	}
+	
+	public int getCurrentStep() {
+		return currentStep;
+	}
+	
+	public int getFrontierSize() {
+		return frontier.size();
+	}
+	
+	public long getWaterSites() {
+		return waterSites;
+	}
+	
+	public boolean finishedPercolation() {
+		return finishedPercolation;
+	}
+	
+	public float getP() {
+		return p;
+	}
+	
+	public void setP(float newP) {
+		p = newP;
+	}
+	
+}
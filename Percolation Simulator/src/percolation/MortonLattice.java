@@ -0,0 +1,225 @@
+package percolation;
+
+import java.util.Arrays;
+
+import percolation.PercolationBlock.BLOCK_TYPE;
+
+import utils.LongList;
+
+import static percolation.PercolationBlock.BLOCK_TYPE.*;
+
+/**
+ * A {@link PercolationLattice} with a byte per site, in Morton (Z-curve)
+ * order: the index of a site interleaves the bits of its coordinates, so
+ * the sites of every aligned 2 x 2 x 2, 4 x 4 x 4... block are next to each
+ * other in memory, and most neighbours on any axis are a cache line or a
+ * page away rather than a whole row or slab, as they are in
+ * {@link ByteLattice}.
+ * <p>
+ * Each axis is padded to a power of two, and an axis with fewer bits than
+ * the others stops being interleaved once its bits run out, so flat
+ * lattices don't take much more memory than cubes. Neighbours are found
+ * without decoding the coordinates, with dilated integer arithmetic on the
+ * bits of one axis: filling the other bits with ones lets a carry pass
+ * through them.
+ */
+public class MortonLattice implements PercolationLattice {
+	
+	private static final BLOCK_TYPE[] TYPES = BLOCK_TYPE.values();
+	private static final byte OPEN_BYTE = (byte) OPEN.ordinal();
+	private static final byte WATER_BYTE = (byte) WATER.ordinal();
+	
+	private final int width, height, depth;
+	/** The bits of the index that belong to each axis */
+	private final long maskX, maskY, maskZ;
+	/** The dilated value of each coordinate of each axis */
+	private final long[] dilatedX, dilatedY, dilatedZ;
+	private final byte[] types;
+	
+	/**
+	 * Makes a lattice of closed sites.
+	 */
+	public MortonLattice(int width, int height, int depth) {
+		final long sites = getPaddedSiteCount(width, height, depth);
+		if (sites > ByteLattice.MAX_SITES) {
+			throw new IllegalArgumentException(width + " x " + height + " x "
+					+ depth + " is too many sites for a MortonLattice");
+		}
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		
+		// Interleave z, y, x from the lowest bit, while each axis has bits
+		final int bitsX = getBits(width), bitsY = getBits(height), bitsZ = getBits(depth);
+		long mx = 0L, my = 0L, mz = 0L;
+		int bit = 0;
+		for (int level = 0; level < Math.max(bitsX, Math.max(bitsY, bitsZ)); level++) {
+			if (level < bitsZ) mz |= 1L << bit++;
+			if (level < bitsY) my |= 1L << bit++;
+			if (level < bitsX) mx |= 1L << bit++;
+		}
+		maskX = mx;
+		maskY = my;
+		maskZ = mz;
+		dilatedX = dilateAll(width, maskX);
+		dilatedY = dilateAll(height, maskY);
+		dilatedZ = dilateAll(depth, maskZ);
+		
+		types = new byte[(int) sites];
+		Arrays.fill(types, (byte) CLOSED.ordinal());
+	}
+	
+	/** The number of bits it takes to count to the given number of sites */
+	private static int getBits(int sites) {
+		return sites <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(sites - 1);
+	}
+	
+	/**
+	 * The number of sites a Morton lattice of the given size stores: the
+	 * size padded to a power of two on each axis (Long.MAX_VALUE if that
+	 * doesn't fit in a long)
+	 */
+	public static long getPaddedSiteCount(int width, int height, int depth) {
+		final int bits = getBits(width) + getBits(height) + getBits(depth);
+		return bits >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << bits;
+	}
+	
+	private static long[] dilateAll(int sites, long mask) {
+		final long[] dilated = new long[sites];
+		for (int i = 0; i < sites; i++) {
+			dilated[i] = dilate(i, mask);
+		}
+		return dilated;
+	}
+	
+	/** Spreads the bits of value over the set bits of mask, lowest first */
+	private static long dilate(int value, long mask) {
+		long result = 0L;
+		for (long m = mask; m != 0L && value != 0; m &= m - 1L, value >>>= 1) {
+			if ((value & 1) != 0) {
+				result |= Long.lowestOneBit(m);
+			}
+		}
+		return result;
+	}
+	
+	@Override
+	public long getSite(int x, int y, int z) {
+		return dilatedX[x] | dilatedY[y] | dilatedZ[z];
+	}
+	
+	@Override
+	public BLOCK_TYPE getType(int x, int y, int z) {
+		return TYPES[types[(int) getSite(x, y, z)]];
+	}
+	
+	@Override
+	public void setType(int x, int y, int z, BLOCK_TYPE type) {
+		types[(int) getSite(x, y, z)] = (byte) type.ordinal();
+	}
+	
+	@Override
+	public boolean flood(int x, int y, int z) {
+		final int i = (int) getSite(x, y, z);
+		if (types[i] != OPEN_BYTE) {
+			return false;
+		}
+		types[i] = WATER_BYTE;
+		return true;
+	}
+	
+	/**
+	 * Moves each site along every axis its direction moves on, one axis at
+	 * a time, with dilated arithmetic.
+	 */
+	@Override
+	public long spread(FlowRule rule, long[] sites, int numSites, LongList next) {
+		final long lastX = dilatedX[width - 1];
+		final long lastY = dilatedY[height - 1];
+		final long lastZ = dilatedZ[depth - 1];
+		final int[] dx = rule.dx, dy = rule.dy, dz = rule.dz;
+		final int[] masks = rule.masks;
+		long visited = 0;
+		for (int n = 0; n < numSites; n++) {
+			final long site = sites[n];
+			final long x = site & maskX;
+			final long y = site & maskY;
+			final long z = site & maskZ;
+			final int faces = (x == 0L ? FlowRule.FACE_MIN_X : 0)
+					| (x == lastX ? FlowRule.FACE_MAX_X : 0)
+					| (y == 0L ? FlowRule.FACE_MIN_Y : 0)
+					| (y == lastY ? FlowRule.FACE_MAX_Y : 0)
+					| (z == 0L ? FlowRule.FACE_MIN_Z : 0)
+					| (z == lastZ ? FlowRule.FACE_MAX_Z : 0);
+			for (int k = 0; k < masks.length; k++) {
+				if ((faces & masks[k]) != 0) {
+					continue;
+				}
+				visited++;
+				long neighbour = move(site, dx[k], maskX);
+				neighbour = move(neighbour, dy[k], maskY);
+				neighbour = move(neighbour, dz[k], maskZ);
+				floodInto(neighbour, next);
+			}
+		}
+		return visited;
+	}
+	
+	/**
+	 * Adds delta (-1, 0 or 1) to the coordinate in the bits of the given
+	 * mask, keeping the others: filling the other bits with ones lets the
+	 * carry of + 1 pass through them, and - 1 borrows across them.
+	 */
+	private static long move(long site, int delta, long mask) {
+		if (delta > 0) {
+			return (((site | ~mask) + 1L) & mask) | (site & ~mask);
+		}
+		if (delta < 0) {
+			return (((site & mask) - 1L) & mask) | (site & ~mask);
+		}
+		return site;
+	}
+	
+	private void floodInto(long site, LongList next) {
+		final int i = (int) site;
+		if (types[i] == OPEN_BYTE) {
+			types[i] = WATER_BYTE;
+			next.add(site);
+		}
+	}
+	
+	/**
+	 * Walks the sites in the order they are stored rather than by their
+	 * coordinates (the padding is closed, so it is never water).
+	 */
+	@Override
+	public void clearWater() {
+		for (int i = 0; i < types.length; i++) {
+			if (types[i] == WATER_BYTE) {
+				types[i] = OPEN_BYTE;
+			}
+		}
+	}
+	
+	@Override
+	public long getFootprint() {
+		return types.length + (long) (dilatedX.length + dilatedY.length
+				+ dilatedZ.length) * Long.BYTES;
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+	
+}
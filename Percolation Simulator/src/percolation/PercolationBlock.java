@@ -54,6 +54,10 @@ public class PercolationBlock extends GraphicsCube {
 		return type;
 	}
 	
+	/**
+	 * Sets the type of this block. The block then refers to the shared
+	 * brush of its type, nothing is copied.
+	 */
 	public void setType(BLOCK_TYPE type) {
 		this.type = type;
 		setBrush(type.getBrush());
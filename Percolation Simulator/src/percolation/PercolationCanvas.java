@@ -1,12 +1,19 @@
 package percolation;
 
+import java.util.Arrays;
+
 import graphics.Canvas;
+import graphics.RenderMetrics;
+import graphics.RenderMonitor;
 
 import main.MainWindow;
 
 import ui.AxisLayer3D;
+import ui.PerformanceOverlay;
 
 import utils.Dimension;
+import utils.LatencyLog;
+import utils.Vec2;
 
 
 @SuppressWarnings("serial")
@@ -16,6 +23,7 @@ public class PercolationCanvas extends Canvas {
 	
 	private PercolationLayer percLay;
 	private AxisLayer3D axisLayer;
+	private PerformanceOverlay performanceOverlay;
 	
 	public PercolationCanvas(MainWindow mainWindow, Dimension size) {
 		super(size);
@@ -35,6 +43,48 @@ public class PercolationCanvas extends Canvas {
 		axisLayer = new AxisLayer3D(this, percLay);
 		getLayers().add(axisLayer);
 		axisLayer.init();
+		
+		// JMX
+		RenderMonitor.register();
+		PercolationMonitor.register(percLay.getPercolationChunk());
+		
+		// Frame and step time histograms, if percolation.latency.out is set
+		LatencyLog.startFromSystemProperties(Arrays.asList(
+				RenderMetrics.getFrameTimes(), PercolationMetrics.getStepTimes()));
+		
+		// Performance overlay, shown with the P key
+		performanceOverlay = new PerformanceOverlay(this, percLay, new Vec2(
+				width - PerformanceOverlay.SIZE.getWidth() - 15f, 15f));
+		performanceOverlay.init();
+	}
+	
+	@Override
+	public void keyPressed() {
+		super.keyPressed();
+		
+		if (key == 'p' || key == 'P') {
+			setPerformanceOverlayVisible(!isPerformanceOverlayVisible());
+		}
+	}
+	
+	public boolean isPerformanceOverlayVisible() {
+		return getLayers().contains(performanceOverlay);
+	}
+	
+	/**
+	 * Shows or hides the {@link PerformanceOverlay}, on top of the other
+	 * layers. Must be called on the animation thread.
+	 */
+	public void setPerformanceOverlayVisible(boolean visible) {
+		if (visible == isPerformanceOverlayVisible()) {
+			return;
+		}
+		if (visible) {
+			getLayers().add(performanceOverlay);
+		} else {
+			getLayers().remove(performanceOverlay);
+		}
+		requestRedraw();
 	}
 
 }
@@ -0,0 +1,189 @@
+package percolation;
+
+import percolation.PercolationBlock.BLOCK_TYPE;
+
+/**
+ * Describes one operation on a {@link PercolationChunk}, such as a step
+ * forward. Blocks are identified by their index in
+ * {@link PercolationChunk#getBlocks()}.
+ * <p>
+ * Steps change many blocks from one type to the same other type, so they
+ * list the indices of the blocks that changed, along with the old and new
+ * type. Operations that change blocks to different types, such as
+ * randomizing, are bulk events: they only give the range of indices that
+ * may have changed, and listeners should read those blocks again.
+ * <p>
+ * Events are reused, so they are only valid while they are being delivered.
+ */
+public final class PercolationChangeEvent {
+	
+	public static enum KIND {
+		/** The chunk was initialized or resized */
+		INITIALIZED,
+		/** The blocks were randomized */
+		RANDOMIZED,
+		/** A saved state was restored */
+		RESTORED,
+		/** Water was added to the top row, or by a step forward */
+		WATER_ADDED,
+		/** Water was removed by a step back, or cleared */
+		WATER_REMOVED,
+		/**
+		 * More changes were made than a {@link PercolationChangeQueue} holds,
+		 * so it replaced them with one bulk event
+		 */
+		OVERFLOWED
+	}
+	
+	private KIND kind;
+	private int step;
+	private BLOCK_TYPE oldType, newType;
+	private int[] indices;
+	private int numIndices;
+	private int rangeStart, rangeEnd;
+	private boolean bulk;
+	
+	PercolationChangeEvent() {
+		indices = new int[64];
+	}
+	
+	/**
+	 * Starts a new event listing the blocks that changed
+	 * from oldType to newType.
+	 */
+	void begin(KIND kind, int step, BLOCK_TYPE oldType, BLOCK_TYPE newType) {
+		this.kind = kind;
+		this.step = step;
+		this.oldType = oldType;
+		this.newType = newType;
+		numIndices = 0;
+		rangeStart = Integer.MAX_VALUE;
+		rangeEnd = 0;
+		bulk = false;
+	}
+	
+	/**
+	 * Starts a new bulk event covering the indices
+	 * in [rangeStart, rangeEnd).
+	 */
+	void beginBulk(KIND kind, int step, int rangeStart, int rangeEnd) {
+		this.kind = kind;
+		this.step = step;
+		oldType = null;
+		newType = null;
+		numIndices = 0;
+		this.rangeStart = rangeStart;
+		this.rangeEnd = rangeEnd;
+		bulk = true;
+	}
+	
+	void add(int index) {
+		if (numIndices == indices.length) {
+			int[] temp = new int[indices.length * 2];
+			System.arraycopy(indices, 0, temp, 0, numIndices);
+			indices = temp;
+		}
+		indices[numIndices++] = index;
+		rangeStart = Math.min(rangeStart, index);
+		rangeEnd = Math.max(rangeEnd, index + 1);
+	}
+	
+	/**
+	 * Makes this bulk event cover the indices the given event may have
+	 * changed too.
+	 */
+	void merge(PercolationChangeEvent e) {
+		step = e.step;
+		if (e.getRangeStart() < e.rangeEnd) {
+			rangeStart = Math.min(rangeStart, e.getRangeStart());
+			rangeEnd = Math.max(rangeEnd, e.rangeEnd);
+		}
+	}
+	
+	/**
+	 * Copies the given event into this one.
+	 */
+	void set(PercolationChangeEvent e) {
+		if (e.bulk) {
+			beginBulk(e.kind, e.step, e.rangeStart, e.rangeEnd);
+		} else {
+			begin(e.kind, e.step, e.oldType, e.newType);
+			for (int i = 0; i < e.numIndices; i++) {
+				add(e.indices[i]);
+			}
+		}
+	}
+	
+	public KIND getKind() {
+		return kind;
+	}
+	
+	/**
+	 * The step of the percolation the chunk is at after the change.
+	 */
+	public int getStep() {
+		return step;
+	}
+	
+	/**
+	 * True if this event only gives a range of indices, and not
+	 * the individual blocks that changed.
+	 */
+	public boolean isBulk() {
+		return bulk;
+	}
+	
+	/**
+	 * The type all of the listed blocks had before the change,
+	 * or null for bulk events.
+	 */
+	public BLOCK_TYPE getOldType() {
+		return oldType;
+	}
+	
+	/**
+	 * The type all of the listed blocks have after the change,
+	 * or null for bulk events.
+	 */
+	public BLOCK_TYPE getNewType() {
+		return newType;
+	}
+	
+	/**
+	 * The number of blocks listed by {@link #getIndex(int)}.
+	 * Always 0 for bulk events.
+	 */
+	public int getNumChanged() {
+		return numIndices;
+	}
+	
+	public int getIndex(int i) {
+		if (i < 0 || i >= numIndices) {
+			throw new IndexOutOfBoundsException(i);
+		}
+		return indices[i];
+	}
+	
+	/**
+	 * Copies the listed indices into the given array, starting at offset.
+	 */
+	public void getIndices(int[] dest, int offset) {
+		System.arraycopy(indices, 0, dest, offset, numIndices);
+	}
+	
+	/**
+	 * The first index that may have changed. Empty events
+	 * have an empty range.
+	 */
+	public int getRangeStart() {
+		return Math.min(rangeStart, rangeEnd);
+	}
+	
+	/**
+	 * One past the last index that may have changed.
+	 */
+	public int getRangeEnd() {
+		return rangeEnd;
+	}
+	
+}
@@ -0,0 +1,17 @@
+package percolation;
+
+/**
+ * Listens to the changes made to the blocks of a {@link PercolationChunk}.
+ * @see PercolationChunk#addChangeListener(PercolationChangeListener)
+ * @see PercolationChangeQueue
+ */
+public interface PercolationChangeListener {
+	
+	/**
+	 * Called once per operation on the chunk, on the thread that made the
+	 * change. The event is reused by the chunk, so it must not be held on to
+	 * after this method returns.
+	 */
+	public void chunkChanged(PercolationChangeEvent event);
+	
+}
@@ -0,0 +1,131 @@
+package percolation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import percolation.PercolationChangeEvent.KIND;
+
+/**
+ * Queues the changes made to a {@link PercolationChunk} so that they can be
+ * delivered later on another thread, e.g. once per frame by the renderer.
+ * Events are copied into recycled buffers, so once the queue has grown to fit
+ * the usual amount of changes between two calls to
+ * {@link #drain(PercolationChangeListener)}, it stops allocating.
+ * <p>
+ * The queue holds a limited number of events and changed blocks. If it
+ * would hold more, e.g. because nobody drains it while the percolation runs,
+ * its events are replaced with one {@link KIND#OVERFLOWED} bulk event
+ * covering all of the blocks they changed, until it is drained.
+ * <pre>
+ * PercolationChangeQueue queue = new PercolationChangeQueue();
+ * chunk.addChangeListener(queue);
+ * ...
+ * // On the consumer's thread
+ * queue.drain(listener);
+ * </pre>
+ */
+public class PercolationChangeQueue implements PercolationChangeListener {
+	
+	private static final int DEFAULT_MAX_EVENTS = 1024;
+	private static final int DEFAULT_MAX_INDICES = 1 << 20;
+	
+	private final int maxEvents, maxIndices;
+	
+	// Filled by the chunk's thread, emptied by drain(), then swapped
+	private List<PercolationChangeEvent> pending, draining;
+	private int numPending;
+	/** The number of blocks listed by the pending events */
+	private long numPendingIndices;
+	/** True if the pending events were replaced with one bulk event */
+	private boolean overflowed;
+	
+	public PercolationChangeQueue() {
+		this(DEFAULT_MAX_EVENTS, DEFAULT_MAX_INDICES);
+	}
+	
+	/**
+	 * Makes a queue that holds at most the given number of events, which
+	 * list at most the given number of blocks in all.
+	 */
+	public PercolationChangeQueue(int maxEvents, int maxIndices) {
+		if (maxEvents < 1 || maxIndices < 0) {
+			throw new IllegalArgumentException("maxEvents must be at least 1,"
+					+ " and maxIndices at least 0");
+		}
+		this.maxEvents = maxEvents;
+		this.maxIndices = maxIndices;
+		pending = new ArrayList<>();
+		draining = new ArrayList<>();
+	}
+	
+	@Override
+	public synchronized void chunkChanged(PercolationChangeEvent event) {
+		if (!overflowed && (numPending == maxEvents
+				|| numPendingIndices + event.getNumChanged() > maxIndices)) {
+			overflow();
+		}
+		if (overflowed) {
+			pending.get(0).merge(event);
+			return;
+		}
+		if (numPending == pending.size()) {
+			pending.add(new PercolationChangeEvent());
+		}
+		pending.get(numPending++).set(event);
+		numPendingIndices += event.getNumChanged();
+	}
+	
+	/**
+	 * Replaces the pending events with one bulk event covering them.
+	 */
+	private void overflow() {
+		int start = Integer.MAX_VALUE, end = 0, step = 0;
+		for (int i = 0; i < numPending; i++) {
+			final PercolationChangeEvent e = pending.get(i);
+			if (e.getRangeStart() < e.getRangeEnd()) {
+				start = Math.min(start, e.getRangeStart());
+				end = Math.max(end, e.getRangeEnd());
+			}
+			step = e.getStep();
+		}
+		if (pending.isEmpty()) {
+			pending.add(new PercolationChangeEvent());
+		}
+		pending.get(0).beginBulk(KIND.OVERFLOWED, step, start, end);
+		numPending = 1;
+		numPendingIndices = 0;
+		overflowed = true;
+	}
+	
+	/**
+	 * Delivers all of the queued events, in order, to the given listener on
+	 * the calling thread. Only one thread should drain a queue.
+	 * @return the number of events delivered
+	 */
+	public int drain(PercolationChangeListener listener) {
+		final int num;
+		synchronized (this) {
+			List<PercolationChangeEvent> temp = draining;
+			draining = pending;
+			pending = temp;
+			num = numPending;
+			numPending = 0;
+			numPendingIndices = 0;
+			overflowed = false;
+		}
+		for (int i = 0; i < num; i++) {
+			listener.chunkChanged(draining.get(i));
+		}
+		return num;
+	}
+	
+	/**
+	 * Discards all of the queued events.
+	 */
+	public synchronized void clear() {
+		numPending = 0;
+		numPendingIndices = 0;
+		overflowed = false;
+	}
+	
+}
@@ -1,25 +1,79 @@
 package percolation;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 
+import graphics.Brush;
 import graphics.Chunk;
+import graphics.Layer;
+
+import percolation.PercolationBlock.BLOCK_TYPE;
+import percolation.PercolationChangeEvent.KIND;
 
 import utils.Dimension3;
+import utils.IntList;
+import utils.Progress;
 import utils.Vec3;
 
 import static percolation.PercolationBlock.BLOCK_TYPE.*;
 
 public class PercolationChunk extends Chunk<PercolationBlock> {
 	
-	private List<List<Vec3>> waterBlocks;
+	/**
+	 * Approximate heap taken by each block (the block, its location, rotation
+	 * and size, and its entries in the lists of the chunk), with compressed
+	 * references
+	 */
+	public static final long BYTES_PER_BLOCK = 160L;
+	
+	// The indices of the water blocks in the order they were flooded, and
+	// where in it each step starts
+	private final IntList water;
+	private final IntList stepStarts;
 	private boolean finishedPercolation;
-	private float p;
+	private volatile float p;
+	
+	private volatile FlowRule flowRule = FlowRule.SIDEWAYS_AND_DOWN;
+	/** flowRule for the current size, compiled by the first step after a change */
+	private FlowRule.Compiled compiledRule;
+	
+	// Triple buffered snapshots: the simulation writes into writeSnapshot and
+	// swaps it with readySnapshot, the renderer swaps readySnapshot with
+	// readSnapshot. Neither ever touches the snapshot the other one owns.
+	private final Object snapshotLock = new Object();
+	private PercolationSnapshot writeSnapshot, readySnapshot, readSnapshot;
+	private boolean newSnapshotReady;
+	/** The snapshot being drawn this frame, null if it is out of date */
+	private PercolationSnapshot frameSnapshot;
+	
+	private final List<PercolationChangeListener> changeListeners;
+	// Reused for every change, only filled in if there are listeners
+	private final PercolationChangeEvent changeEvent;
+	private boolean recordingChange;
+	
+	// Totals for monitoring, only written by the thread that modifies the chunk
+	private volatile long stepCount, visitedSiteCount;
+	private volatile int frontierSize;
+	/** The percolation in progress, from populateTopRowWithWater() until it finishes */
+	private PercolationEvents.Run runEvent;
+	/** See setLookingAhead() */
+	private boolean lookingAhead;
 
 	public PercolationChunk(Vec3 loc, Dimension3 numBlocks, Dimension3 blockSize, 
 			float p) {
 		super(loc, numBlocks, blockSize);
 		this.p = p;
+		
+		writeSnapshot = new PercolationSnapshot();
+		readySnapshot = new PercolationSnapshot();
+		readSnapshot = new PercolationSnapshot();
+		
+		changeListeners = new CopyOnWriteArrayList<>();
+		changeEvent = new PercolationChangeEvent();
+		water = new IntList();
+		stepStarts = new IntList();
 	}
 
 	@Override
@@ -27,6 +81,11 @@ public class PercolationChunk extends Chunk<PercolationBlock> {
 		return new PercolationBlock(CLOSED);
 	}
 	
+	@Override
+	protected void recycleBlock(PercolationBlock block) {
+		block.setType(CLOSED);
+	}
+	
 	private void checkIfInitialized() {
 		if (!isInitialized()) {
 			throw new IllegalStateException("PercolationChunk not initialized.");
@@ -34,28 +93,109 @@ public class PercolationChunk extends Chunk<PercolationBlock> {
 	}
 	
 	@Override
-	public void init() {
-		super.init();
-		waterBlocks = new ArrayList<>();
+	public void init(Progress progress) {
+		final PercolationEvents.ChunkInit event = new PercolationEvents.ChunkInit();
+		event.begin();
+		
+		super.init(progress);
+		clearWaterHistory();
+		
+		if (event.shouldCommit()) {
+			event.width = (int) getNumBlocks().getWidth();
+			event.height = (int) getNumBlocks().getHeight();
+			event.depth = (int) getNumBlocks().getDepth();
+			event.commit();
+		}
+		fireBulkChange(KIND.INITIALIZED);
+	}
+	
+	/**
+	 * Resizes this chunk in place. The blocks that are still inside of the
+	 * chunk keep their types, except for water, which is removed since the
+	 * percolation starts over.
+	 */
+	@Override
+	public synchronized void resize(Dimension3 numBlocks) {
+		final PercolationEvents.ChunkResize event = new PercolationEvents.ChunkResize();
+		event.begin();
+		final long oldSites = isInitialized() ? getBlocks().size() : 0L;
+		
+		super.resize(numBlocks);
+		if (!isInitialized()) {
+			return;
+		}
+		
+		clearWaterHistory();
+		finishedPercolation = false;
+		frontierSize = 0;
+		runEvent = null;
+		for (PercolationBlock block : getBlocks()) {
+			if (block.getType() == WATER) {
+				block.setType(OPEN);
+			}
+		}
+		
+		if (event.shouldCommit()) {
+			event.oldSites = oldSites;
+			event.width = (int) numBlocks.getWidth();
+			event.height = (int) numBlocks.getHeight();
+			event.depth = (int) numBlocks.getDepth();
+			event.commit();
+		}
+		markChanged();
+		fireBulkChange(KIND.INITIALIZED);
 	}
 	
 	@Override
 	public void reset() {
 		super.reset();
 		
-		waterBlocks.clear();
+		clearWaterHistory();
 		finishedPercolation = false;
+		frontierSize = 0;
+		runEvent = null;
 	}
 	
 	public void randomizeBlockTypes() {
+		randomizeBlockTypes(Progress.NONE);
+	}
+	
+	/**
+	 * Same as {@link #randomizeBlockTypes()}, but reports its progress to,
+	 * and can be cancelled through, the given {@link Progress}. If cancelled,
+	 * a {@link java.util.concurrent.CancellationException} is thrown and only
+	 * some of the blocks will have been randomized (see {@link #saveState()}).
+	 */
+	public void randomizeBlockTypes(Progress progress) {
+		randomizeBlockTypes(ThreadLocalRandom.current(), progress);
+	}
+	
+	/**
+	 * Same as {@link #randomizeBlockTypes(Progress)}, but draws from the
+	 * given {@link Random}, so that a seeded one always makes the same chunk.
+	 */
+	public void randomizeBlockTypes(Random random, Progress progress) {
 		checkIfInitialized();
+		final PercolationEvents.Randomize event = new PercolationEvents.Randomize();
+		event.begin();
 
 		finishedPercolation = false;
-		waterBlocks.clear();
-
-		for (PercolationBlock block : getBlocks()) {
+		clearWaterHistory();
+		runEvent = null;
+		markChanged();
+		
+		final List<PercolationBlock> blocks = getBlocks();
+		
+		for (int i = 0; i < blocks.size(); i++) {
+			// Check every once in a while
+			if ((i & 0xFFFF) == 0) {
+				progress.set((float) i / blocks.size());
+				progress.checkCancelled();
+			}
+			
+			PercolationBlock block = blocks.get(i);
 
-			final float rand = (float) Math.random();
+			final float rand = random.nextFloat();
 
 			if (rand < p) {
 				block.setType(OPEN);
@@ -63,38 +203,78 @@ public class PercolationChunk extends Chunk<PercolationBlock> {
 				block.setType(CLOSED);
 			}
 		}
+		
+		markChanged();
+		frontierSize = 0;
+		PercolationMetrics.randomized(blocks.size());
+		if (event.shouldCommit()) {
+			event.sites = blocks.size();
+			event.p = p;
+			event.commit();
+		}
+		fireBulkChange(KIND.RANDOMIZED);
 	}
 
+	/**
+	 * Floods the open blocks of the top row: the face of the chunk water
+	 * comes in through under its {@link FlowRule}.
+	 */
 	public void populateTopRowWithWater() {
 		checkIfInitialized();
+		
+		final boolean fire = beginChange(KIND.WATER_ADDED, 0, OPEN, WATER);
+		runEvent = new PercolationEvents.Run();
+		runEvent.begin();
+		
+		final List<PercolationBlock> blocks = getBlocks();
+		final int waterBefore = water.size();
+		flowRule.forEachInflowSite((int) getNumBlocks().getWidth(),
+				(int) getNumBlocks().getHeight(), (int) getNumBlocks().getDepth(),
+				(x, y, z) -> {
+			final int index = getBlockIndex(x, y, z);
+			if (blocks.get(index).getType() == OPEN) {
+				// Start the first step if necessary
+				if (stepStarts.isEmpty())
+					stepStarts.add(water.size());
 				
-		final int topRow = (int) getNumBlocks().getHeight() - 1;
-		
-		for (int x = 0; x < getNumBlocks().getWidth(); x++) {
-			for (int z = 0; z < getNumBlocks().getDepth(); z++) {	
-				PercolationBlock block = getBlocksList3D().get(x).get(topRow).get(z);
-				if (block.getType() == OPEN) {
-					// Create new step array if necessary
-					if (waterBlocks.isEmpty())
-						waterBlocks.add(new ArrayList<>());
-					
-					setWater(0, new Vec3(x, topRow, z));
-				}
+				setWater(index);
 			}
-		}		
+		});
+		
+		recordingChange = false;
+		if (water.size() > waterBefore) {
+			markChanged();
+		}
+		updateFrontierSize();
+		if (fire && changeEvent.getNumChanged() > 0) {
+			fireChange();
+		}
 	}
 	
 	public void clearWater() {
 		checkIfInitialized();
 
-		waterBlocks.clear();
+		clearWaterHistory();
 		finishedPercolation = false;
+		runEvent = null;
+		final boolean fire = beginChange(KIND.WATER_REMOVED, -1, WATER, OPEN);
 		
-		for (PercolationBlock block : getBlocks()) {
+		final List<PercolationBlock> blocks = getBlocks();
+		for (int i = 0; i < blocks.size(); i++) {
+			PercolationBlock block = blocks.get(i);
 			if (block.getType() == WATER) {
 				block.setType(OPEN);
+				if (fire) {
+					changeEvent.add(i);
+				}
 			}
-		}		
+		}
+		
+		markChanged();
+		frontierSize = 0;
+		if (fire) {
+			fireChange();
+		}
 	}
 	
 	/**
@@ -105,39 +285,87 @@ public class PercolationChunk extends Chunk<PercolationBlock> {
 		
 		checkIfInitialized();
 		
-		// No need to percolate if we're already done
-		if (finishedPercolation) {
+		// No need to percolate if we're already done, or never started
+		if (finishedPercolation || getCurrentStep() < 0) {
 			return 0;
 		}
 		
-		final int lastStepIndex = waterBlocks.size() - 1;
-		List<Vec3> lastBlocksAdded = waterBlocks.get(lastStepIndex);
+		final PercolationEvents.Step event = new PercolationEvents.Step();
+		event.begin();
+		final long start = System.nanoTime();
+		
+		final int lastStepIndex = getCurrentStep();
+		final int lastStepStart = stepStarts.get(lastStepIndex);
+		final int lastStepEnd = water.size();
 		boolean blockWasAdded = false;
+		final boolean fire = beginChange(KIND.WATER_ADDED, lastStepIndex + 1,
+				OPEN, WATER);
+		
+		final FlowRule.Compiled rule = getCompiledRule();
+		final int[] offsets = rule.offsets;
+		final int[] masks = rule.masks;
+		final List<PercolationBlock> blocks = getBlocks();
 
-		for (Vec3 waterBlockLoc : lastBlocksAdded) {
-			List<Vec3> surroundingBlocks = getSurroundingBlocks(waterBlockLoc);
+		long visited = 0;
+		for (int i = lastStepStart; i < lastStepEnd; i++) {
+			final int index = water.get(i);
+			// Directions that leave the chunk have a face of the block in
+			// their mask
+			final int faces = rule.getFaces(index);
 			
-			for (Vec3 sblockLoc : surroundingBlocks) {
-				PercolationBlock sblock = getBlockAt(sblockLoc);
-				// We only want to check blocks that are on the same
-				// level or below the block AND blocks that are open
-				if (sblockLoc.getY() > waterBlockLoc.getY() 
-						|| sblock.getType() != OPEN) 
+			for (int k = 0; k < offsets.length; k++) {
+				if ((faces & masks[k]) != 0) {
+					continue;
+				}
+				visited++;
+				
+				final int neighbour = index + offsets[k];
+				if (blocks.get(neighbour).getType() != OPEN) 
 					continue;
 				
-				// Create a new list for the new step if necessary
+				// Start the new step if necessary
 				if (!blockWasAdded) {
 					blockWasAdded = true;
-					waterBlocks.add(new ArrayList<>());
+					stepStarts.add(lastStepEnd);
 				}
 				
-				setWater(lastStepIndex + 1, sblockLoc);
+				setWater(neighbour);
 			}
 		}
 		
 		finishedPercolation = !blockWasAdded;
-		final int numBlocksAdded = finishedPercolation ? 0 : 
-			waterBlocks.get(lastStepIndex + 1).size();
+		if (blockWasAdded) {
+			// Once for the whole step
+			markChanged();
+		}
+		recordingChange = false;
+		if (fire && blockWasAdded) {
+			fireChange();
+		}
+		final int numBlocksAdded = water.size() - lastStepEnd;
+		
+		frontierSize = numBlocksAdded;
+		if (!lookingAhead) {
+			stepCount++;
+			visitedSiteCount += visited;
+			PercolationMetrics.stepTaken(visited, numBlocksAdded,
+					System.nanoTime() - start);
+		}
+		if (!lookingAhead && event.shouldCommit()) {
+			event.step = lastStepIndex + 1;
+			event.frontierSize = lastStepEnd - lastStepStart;
+			event.sitesVisited = visited;
+			event.sitesAdded = numBlocksAdded;
+			event.commit();
+		}
+		if (finishedPercolation) {
+			// The run being looked ahead of finishes when it is stepped
+			// to the end for real
+			if (!lookingAhead) {
+				PercolationMetrics.runCompleted(getBlocks().size());
+				commitRunEvent();
+			}
+		}
 		return numBlocksAdded;
 		
 	}
@@ -159,72 +387,296 @@ public class PercolationChunk extends Chunk<PercolationBlock> {
 		finishedPercolation = false;
 		
 		// Remove all water blocks in most recent step
-		for (Vec3 waterBlock : waterBlocks.get(getCurrentStep())) {
-			PercolationBlock block = getBlockAt(waterBlock);
-			block.setType(OPEN);
+		final boolean fire = beginChange(KIND.WATER_REMOVED,
+				getCurrentStep() - 1, WATER, OPEN);
+		final List<PercolationBlock> blocks = getBlocks();
+		final int stepStart = stepStarts.last();
+		for (int i = stepStart; i < water.size(); i++) {
+			final int index = water.get(i);
+			blocks.get(index).setType(OPEN);
+			if (fire) {
+				changeEvent.add(index);
+			}
 		}
+		markChanged();
 		
-		final int numBlocksRemoved = waterBlocks.get(getCurrentStep()).size();
+		final int numBlocksRemoved = water.size() - stepStart;
 		
 		// Delete blocks
-		waterBlocks.remove(getCurrentStep());
+		water.truncate(stepStart);
+		stepStarts.truncate(stepStarts.size() - 1);
+		updateFrontierSize();
+		
+		if (fire) {
+			fireChange();
+		}
 				
 		return numBlocksRemoved;
 		
 	}
 	
-	public int getCurrentStep() {
-		return waterBlocks.size() - 1;
-	}
-	
-	// Maximum of 6 surrounding blocks (no diagonals)
-	private List<Vec3> getSurroundingBlocks(Vec3 loc) {
-		List<Vec3> list = new ArrayList<>();
-		
-		// Top
-		list.add(new Vec3(loc.getX() + 0f, loc.getY() + 1f, loc.getZ() + 0f));
-		// Right
-		list.add(new Vec3(loc.getX() + 1f, loc.getY() + 0f, loc.getZ() + 0f));
-		// Bottom
-		list.add(new Vec3(loc.getX() + 0f, loc.getY() - 1f, loc.getZ() + 0f));
-		// Left
-		list.add(new Vec3(loc.getX() - 1f, loc.getY() + 0f, loc.getZ() + 0f));
-		// Behind ( > z )
-		list.add(new Vec3(loc.getX() + 0f, loc.getY() + 0f, loc.getZ() + 1f));
-		// In front ( < z )
-		list.add(new Vec3(loc.getX() + 0f, loc.getY() + 0f, loc.getZ() - 1f));
-		
-		// Remove invalid locations
-		for (int i = list.size()-1; i >= 0; i--) {
-			if (!isExistingLoc(list.get(i))) {
-				list.remove(i);
+	/**
+	 * Copies the current state of this chunk into a {@link PercolationSnapshot}
+	 * and makes it available to {@link #acquireSnapshot()}. This must be called
+	 * on the thread that modifies the chunk.
+	 */
+	public void publishSnapshot() {
+		checkIfInitialized();
+		
+		writeSnapshot.set(this);
+		synchronized (snapshotLock) {
+			PercolationSnapshot temp = readySnapshot;
+			readySnapshot = writeSnapshot;
+			writeSnapshot = temp;
+			newSnapshotReady = true;
+		}
+		
+		// Let layers know there is something new to draw
+		markChanged();
+	}
+	
+	/**
+	 * Returns the most recently published {@link PercolationSnapshot}.
+	 * The returned snapshot will not be modified until the next call to this
+	 * method, so this should be called once per frame by the renderer.
+	 * @see #publishSnapshot()
+	 */
+	public PercolationSnapshot acquireSnapshot() {
+		synchronized (snapshotLock) {
+			if (newSnapshotReady) {
+				PercolationSnapshot temp = readSnapshot;
+				readSnapshot = readySnapshot;
+				readySnapshot = temp;
+				newSnapshotReady = false;
 			}
+			return readSnapshot;
+		}
+	}
+	
+	@Override
+	public void draw(Layer lay) {
+		synchronized (this) {
+			// After a resize, the snapshot is out of date until the next one
+			// is published
+			PercolationSnapshot snapshot = acquireSnapshot();
+			frameSnapshot = snapshot.hasNumBlocks(getNumBlocks()) ? snapshot : null;
+			super.draw(lay);
+		}
+	}
+	
+	@Override
+	protected Brush getBlockBrush(int index, PercolationBlock block) {
+		if (frameSnapshot != null) {
+			return frameSnapshot.getType(index).getBrush();
+		}
+		return block.getType().getBrush();
+	}
+	
+	/**
+	 * Records the type of every block and the progress of the percolation,
+	 * so that they can be restored with {@link #restoreState(State)}.
+	 */
+	public State saveState() {
+		checkIfInitialized();
+		return new State(this);
+	}
+	
+	/**
+	 * Restores the blocks and the progress of the percolation to what they
+	 * were when the given {@link State} was saved. The chunk must have
+	 * the same number of blocks on each axis as it had then.
+	 */
+	public void restoreState(State state) {
+		checkIfInitialized();
+		if (!state.numBlocks.equals(getNumBlocks())) {
+			throw new IllegalArgumentException("The State was saved from a "
+					+ "PercolationChunk of a different size");
+		}
+		
+		final List<PercolationBlock> blocks = getBlocks();
+		for (int i = 0; i < blocks.size(); i++) {
+			blocks.get(i).setType(State.TYPES[state.types[i]]);
 		}
+		clearWaterHistory();
+		water.addAll(state.water);
+		stepStarts.addAll(state.stepStarts);
+		finishedPercolation = state.finishedPercolation;
+		runEvent = null;
+		updateFrontierSize();
 		
-		return list;
+		markChanged();
+		fireBulkChange(KIND.RESTORED);
+	}
+	
+	/**
+	 * Adds a listener that is told about every change made to the blocks of
+	 * this chunk, synchronously, on the thread that made the change. To
+	 * receive the changes on another thread, add a
+	 * {@link PercolationChangeQueue}.
+	 */
+	public void addChangeListener(PercolationChangeListener listener) {
+		changeListeners.add(listener);
 	}
 	
-	private boolean isExistingLoc(Vec3 loc) {
-		return     loc.getX() >= 0 && loc.getX() < getNumBlocks().getWidth()
-				&& loc.getY() >= 0 && loc.getY() < getNumBlocks().getHeight()
-				&& loc.getZ() >= 0 && loc.getZ() < getNumBlocks().getDepth();
+	public void removeChangeListener(PercolationChangeListener listener) {
+		changeListeners.remove(listener);
 	}
 	
-	private PercolationBlock getBlockAt(Vec3 blockLoc) {
-		final int x = (int) blockLoc.getX();
-		final int y = (int) blockLoc.getY();
-		final int z = (int) blockLoc.getZ();
-
-		return getBlocksList3D().get(x).get(y).get(z);
+	/**
+	 * Starts filling in {@link #changeEvent} if anyone is listening.
+	 * @return true if the change should be fired
+	 */
+	private boolean beginChange(KIND kind, int step,
+			BLOCK_TYPE oldType, BLOCK_TYPE newType) {
+		recordingChange = !lookingAhead && !changeListeners.isEmpty();
+		if (recordingChange) {
+			changeEvent.begin(kind, step, oldType, newType);
+		}
+		return recordingChange;
+	}
+	
+	private void fireChange() {
+		recordingChange = false;
+		for (PercolationChangeListener listener : changeListeners) {
+			listener.chunkChanged(changeEvent);
+		}
+	}
+	
+	private void fireBulkChange(KIND kind) {
+		if (changeListeners.isEmpty()) {
+			return;
+		}
+		changeEvent.beginBulk(kind, getCurrentStep(), 0, getBlocks().size());
+		fireChange();
+	}
+	
+	public int getCurrentStep() {
+		return stepStarts.size() - 1;
+	}
+	
+	/**
+	 * Sets which neighbours water flows to from the next step on, and which
+	 * faces of the chunk water comes in through and percolates to from the
+	 * next {@link #populateTopRowWithWater()} on (so the water should be
+	 * cleared first, to start over).
+	 */
+	public void setFlowRule(FlowRule flowRule) {
+		if (flowRule == null) {
+			throw new IllegalArgumentException("flowRule is null");
+		}
+		this.flowRule = flowRule;
+	}
+	
+	public FlowRule getFlowRule() {
+		return flowRule;
+	}
+	
+	private FlowRule.Compiled getCompiledRule() {
+		final FlowRule rule = flowRule;
+		final int width = (int) getNumBlocks().getWidth();
+		final int height = (int) getNumBlocks().getHeight();
+		final int depth = (int) getNumBlocks().getDepth();
+		if (compiledRule == null || !compiledRule.isFor(rule, width, height, depth)) {
+			compiledRule = rule.compile(width, height, depth);
+		}
+		return compiledRule;
+	}
+	
+	/** The caller marks the chunk changed, once for all of the blocks */
+	private void setWater(int index) {
+		getBlocks().get(index).setType(WATER);
+		if (recordingChange) {
+			changeEvent.add(index);
+		}
+		water.add(index);
 	}
 	
-	private void setWater(int step, Vec3 blockLoc) {
-		PercolationBlock block = getBlockAt(blockLoc);
-		block.setType(WATER);
-//		waterBlocks.add(blockLoc);
-		waterBlocks.get(step).add(blockLoc);
+	private void clearWaterHistory() {
+		water.clear();
+		stepStarts.clear();
 	}
 		
+	/**
+	 * Returns the number of water blocks added by the last step, which are
+	 * the ones the next step spreads from, or 0 if the percolation is
+	 * finished. Safe to read from any thread.
+	 */
+	public int getFrontierSize() {
+		return frontierSize;
+	}
+	
+	private void commitRunEvent() {
+		if (runEvent == null) {
+			return;
+		}
+		runEvent.end();
+		if (runEvent.shouldCommit()) {
+			runEvent.sites = getBlocks().size();
+			runEvent.steps = getCurrentStep();
+			runEvent.percolatedSites = 
+					PercolationChunkUtils.getPercolatedWaterBlocks(this).size();
+			runEvent.commit();
+		}
+		runEvent = null;
+	}
+	
+	private void updateFrontierSize() {
+		frontierSize = finishedPercolation || stepStarts.isEmpty() ? 0
+				: water.size() - stepStarts.last();
+	}
+	
+	/**
+	 * Estimates the heap taken by the blocks of this chunk, or 0 if it
+	 * is not initialized.
+	 * @see #estimateFootprint(Dimension3)
+	 */
+	public long getEstimatedFootprint() {
+		return isInitialized() ? estimateFootprint(getNumBlocks()) : 0L;
+	}
+	
+	/**
+	 * Estimates the heap taken by the blocks of a chunk with the given
+	 * number of blocks on each axis.
+	 */
+	public static long estimateFootprint(Dimension3 numBlocks) {
+		return (long) numBlocks.getWidth() * (long) numBlocks.getHeight()
+				* (long) numBlocks.getDepth() * BYTES_PER_BLOCK;
+	}
+	
+	/**
+	 * Returns the number of times {@link #stepForward()} ran a step since
+	 * this chunk was made. Safe to read from any thread.
+	 */
+	public long getStepCount() {
+		return stepCount;
+	}
+	
+	/**
+	 * Returns the number of sites {@link #stepForward()} looked at (the
+	 * neighbours of the water blocks the {@link FlowRule} lets water flow
+	 * to) since this chunk was made. Safe to read from any thread.
+	 * @see PercolationMetrics#getVisitedSites()
+	 */
+	public long getVisitedSiteCount() {
+		return visitedSiteCount;
+	}
+	
+	/**
+	 * Sets whether the steps taken from now on only look ahead to where the
+	 * percolation ends, and will be stepped back: then they aren't counted
+	 * in {@link PercolationMetrics} or {@link #getStepCount()}, don't
+	 * commit Step or Run events, and aren't told to the change listeners
+	 * (the chunk ends up where it started). Must be called on the thread
+	 * that modifies the chunk.
+	 */
+	public void setLookingAhead(boolean lookingAhead) {
+		this.lookingAhead = lookingAhead;
+	}
+	
+	public boolean isLookingAhead() {
+		return lookingAhead;
+	}
+	
 	public boolean finishedPercolation() {
 		return finishedPercolation;
 	}
@@ -237,4 +689,37 @@ public class PercolationChunk extends Chunk<PercolationBlock> {
 		p = newP;
 	}
 
+	/**
+	 * The saved state of a {@link PercolationChunk}.
+	 * @see PercolationChunk#saveState()
+	 */
+	public static final class State {
+		
+		private static final BLOCK_TYPE[] TYPES = BLOCK_TYPE.values();
+		
+		private final Dimension3 numBlocks;
+		private final byte[] types;
+		private final int[] water;
+		private final int[] stepStarts;
+		private final boolean finishedPercolation;
+		
+		private State(PercolationChunk chunk) {
+			numBlocks = new Dimension3(chunk.getNumBlocks());
+			
+			final List<PercolationBlock> blocks = chunk.getBlocks();
+			types = new byte[blocks.size()];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = (byte) blocks.get(i).getType().ordinal();
+			}
+			water = chunk.water.toArray();
+			stepStarts = chunk.stepStarts.toArray();
+			finishedPercolation = chunk.finishedPercolation;
+		}
+		
+		public Dimension3 getNumBlocks() {
+			return numBlocks;
+		}
+		
+	}
+
 }
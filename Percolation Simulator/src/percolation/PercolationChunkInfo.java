@@ -3,8 +3,7 @@ package percolation;
 import static percolation.PercolationChunkUtils.getNumBlocks;
 import static percolation.PercolationChunkUtils.getPercolatedWaterBlocks;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import percolation.PercolationBlock.BLOCK_TYPE;
 
@@ -16,47 +15,157 @@ public class PercolationChunkInfo {
 		PERCOLATED_BLOCKS, CURRENT_STEP
 	}
 	
-	private Map<PROPERTY, Float> properties;
+	// Indexed by PROPERTY ordinal, so that setting them doesn't box
+	private final float[] properties;
 	
 	public PercolationChunkInfo(PercolationChunk chunk) {
-		properties = new HashMap<>();
+		properties = new float[PROPERTY.values().length];
 		
 		set(chunk);
 	}
 	
 	public PercolationChunkInfo() {
-		properties = new HashMap<>();
+		properties = new float[PROPERTY.values().length];
 	}
 	
 	public void set(PercolationChunk pchunk) {
 		if (!pchunk.isInitialized()) {
 			throw new IllegalStateException("PercolationChunk not initialized");
 		}
+		final PercolationEvents.Stats event = new PercolationEvents.Stats();
+		event.begin();
+		
+		// P
+		put(PROPERTY.P, pchunk.getP());
 		
 		// Current step
-		properties.put(PROPERTY.CURRENT_STEP, (float) pchunk.getCurrentStep());
+		put(PROPERTY.CURRENT_STEP, (float) pchunk.getCurrentStep());
 		
 		// Total num blocks
 		final float numBlocks = pchunk.getBlocks().size();
 		
-		properties.put(PROPERTY.TOTAL_BLOCKS, numBlocks);
+		put(PROPERTY.TOTAL_BLOCKS, numBlocks);
 		
 		// Closed, open, and water blocks
 		final float numClosed = getNumBlocks(pchunk, BLOCK_TYPE.CLOSED).size();
 		final float numOpen = getNumBlocks(pchunk, BLOCK_TYPE.OPEN).size();
 		final float numWater = numBlocks - numClosed - numOpen; // Faster
 		
-		properties.put(PROPERTY.CLOSED_BLOCKS, numClosed);
-		properties.put(PROPERTY.OPEN_BLOCKS, numOpen);
-		properties.put(PROPERTY.WATER_BLOCKS, numWater);
+		put(PROPERTY.CLOSED_BLOCKS, numClosed);
+		put(PROPERTY.OPEN_BLOCKS, numOpen);
+		put(PROPERTY.WATER_BLOCKS, numWater);
 		
 		// Determine percolation
 		final float numPercedBlocks = getPercolatedWaterBlocks(pchunk).size();
-		properties.put(PROPERTY.PERCOLATED_BLOCKS, numPercedBlocks);
+		put(PROPERTY.PERCOLATED_BLOCKS, numPercedBlocks);
+		
+		if (event.shouldCommit()) {
+			event.sites = pchunk.getBlocks().size();
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Copies all of the properties of the given info into this one.
+	 */
+	public void set(PercolationChunkInfo info) {
+		System.arraycopy(info.properties, 0, properties, 0, properties.length);
+	}
+	
+	private void put(PROPERTY prop, float value) {
+		properties[prop.ordinal()] = value;
 	}
 	
 	public float getProperty(PROPERTY prop) {
-		return properties.get(prop);
+		return properties[prop.ordinal()];
+	}
+	
+	/**
+	 * Returns true if all of the properties of the given info
+	 * are the same as this one's.
+	 */
+	public boolean hasSameProperties(PercolationChunkInfo info) {
+		return Arrays.equals(properties, info.properties);
+	}
+	
+	/**
+	 * Keeps the info of a {@link PercolationChunk} up to date from the
+	 * changes it makes to its water, so that getting the info doesn't count
+	 * all of the blocks again. Bulk changes and a new {@link FlowRule} make
+	 * it count them once more. Add it to the chunk with
+	 * {@link PercolationChunk#addChangeListener(PercolationChangeListener)},
+	 * and only use it on the thread that modifies the chunk.
+	 */
+	public static final class Tracker implements PercolationChangeListener {
+		
+		private final PercolationChunk chunk;
+		private final PercolationChunkInfo counts;
+		private FlowRule countedRule;
+		private boolean stale;
+		
+		public Tracker(PercolationChunk chunk) {
+			this.chunk = chunk;
+			counts = new PercolationChunkInfo();
+			stale = true;
+		}
+		
+		@Override
+		public void chunkChanged(PercolationChangeEvent event) {
+			if (stale) {
+				return;
+			}
+			// Steps, the top row and clearing move blocks between open and
+			// water, anything else is counted again
+			final boolean added = event.getOldType() == BLOCK_TYPE.OPEN
+					&& event.getNewType() == BLOCK_TYPE.WATER;
+			final boolean removed = event.getOldType() == BLOCK_TYPE.WATER
+					&& event.getNewType() == BLOCK_TYPE.OPEN;
+			final FlowRule rule = chunk.getFlowRule();
+			if (event.isBulk() || !(added || removed) || rule != countedRule) {
+				stale = true;
+				return;
+			}
+			
+			final int w = (int) chunk.getNumBlocks().getWidth();
+			final int h = (int) chunk.getNumBlocks().getHeight();
+			final int d = (int) chunk.getNumBlocks().getDepth();
+			int percolated = 0;
+			for (int i = 0; i < event.getNumChanged(); i++) {
+				// See Chunk.getBlockIndex()
+				final int index = event.getIndex(i);
+				if (rule.isOutflowSite(index / (h * d), index / d % h, index % d, w, h, d)) {
+					percolated++;
+				}
+			}
+			
+			final float sign = added ? 1f : -1f;
+			add(PROPERTY.WATER_BLOCKS, sign * event.getNumChanged());
+			add(PROPERTY.OPEN_BLOCKS, -sign * event.getNumChanged());
+			add(PROPERTY.PERCOLATED_BLOCKS, sign * percolated);
+		}
+		
+		private void add(PROPERTY prop, float delta) {
+			counts.put(prop, counts.getProperty(prop) + delta);
+		}
+		
+		/**
+		 * Sets the given info to the current info of the chunk.
+		 */
+		public void get(PercolationChunkInfo info) {
+			if (stale || countedRule != chunk.getFlowRule()) {
+				counts.set(chunk);
+				countedRule = chunk.getFlowRule();
+				stale = false;
+			}
+			counts.put(PROPERTY.P, chunk.getP());
+			counts.put(PROPERTY.CURRENT_STEP, (float) chunk.getCurrentStep());
+			info.set(counts);
+		}
+		
+		public PercolationChunk getChunk() {
+			return chunk;
+		}
+		
 	}
 	
 }
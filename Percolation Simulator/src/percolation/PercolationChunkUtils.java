@@ -36,33 +36,37 @@ public final class PercolationChunkUtils {
 	public static List<PercolationBlock> getPercolatedWaterBlocks(
 			PercolationChunk pchunk) {
 		
-		List<PercolationBlock> groundWaterBlocks = Collections.emptyList();
-		List<List<List<PercolationBlock>>> list3d = pchunk.getBlocksList3D();
-		Dimension3 size = pchunk.getNumBlocks();
+		final List<PercolationBlock> groundWaterBlocks = new ArrayList<>();
+		final List<List<List<PercolationBlock>>> list3d = pchunk.getBlocksList3D();
+		final Dimension3 size = pchunk.getNumBlocks();
 		
-		for (int x = 0; x < size.getWidth(); x++) {
-			for (int z = 0; z < size.getDepth(); z++) {
-				// Get the block
-				PercolationBlock block = list3d.get(x).get(0).get(z);
-				// Check if it's water
-				if (block.getType() == BLOCK_TYPE.WATER) {
-					// Create list if necessary
-					if (groundWaterBlocks.isEmpty())
-						groundWaterBlocks = new ArrayList<>();
-					
-					groundWaterBlocks.add(block);
-				}
+		// The bottom row, where the flow rule puts it
+		pchunk.getFlowRule().forEachOutflowSite((int) size.getWidth(),
+				(int) size.getHeight(), (int) size.getDepth(), (x, y, z) -> {
+			PercolationBlock block = list3d.get(x).get(y).get(z);
+			// Check if it's water
+			if (block.getType() == BLOCK_TYPE.WATER) {
+				groundWaterBlocks.add(block);
 			}
-		}
+		});
 		
 		return groundWaterBlocks;
 	}
 	
+	/**
+	 * The number of blocks of the bottom row of the chunk (the face water
+	 * percolates to under its {@link FlowRule})
+	 */
+	public static long getOutflowArea(PercolationChunk pchunk) {
+		final Dimension3 size = pchunk.getNumBlocks();
+		return pchunk.getFlowRule().getOutflowArea((int) size.getWidth(),
+				(int) size.getHeight(), (int) size.getDepth());
+	}
+	
 	public static float getPercentPercolatedWaterBlocks(
 			PercolationChunk pchunk, int numDecimals) {
 		
-		Dimension3 totalBlocks = pchunk.getNumBlocks();
-		final int faceArea = (int) (totalBlocks.getWidth() * totalBlocks.getDepth());
+		final int faceArea = (int) getOutflowArea(pchunk);
 		final float numPercedBlocks = getPercolatedWaterBlocks(pchunk).size();
 		final float percentPerced = numPercedBlocks / faceArea * 100f;
 		final float roundedPercent =  Utils.round(percentPerced, 1);
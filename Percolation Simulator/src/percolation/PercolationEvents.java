@@ -0,0 +1,108 @@
+package percolation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Java Flight Recorder events of the simulation. Each one is only
+ * committed if it is enabled and lasted longer than its threshold, both of
+ * which are set by the recording's settings (see percolation.jfc). When an
+ * event is disabled, making it and calling begin() and shouldCommit() costs
+ * next to nothing.
+ */
+final class PercolationEvents {
+	
+	static final String CATEGORY = "Percolation";
+	
+	private PercolationEvents() { throw new AssertionError(); }
+	
+	@Name("percolation.Randomize")
+	@Label("Randomize Lattice")
+	@Description("Block types of a chunk randomized from p")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class Randomize extends Event {
+		@Label("Sites")
+		long sites;
+		@Label("p")
+		float p;
+	}
+	
+	@Name("percolation.Step")
+	@Label("Percolation Step")
+	@Description("One step forward of the water")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Threshold("1 ms")
+	static final class Step extends Event {
+		@Label("Step")
+		int step;
+		@Label("Frontier Size")
+		@Description("Water blocks the step spread from")
+		int frontierSize;
+		@Label("Sites Visited")
+		@Description("Neighbours of the frontier the flow rule lets water flow to")
+		long sitesVisited;
+		@Label("Sites Added")
+		int sitesAdded;
+	}
+	
+	@Name("percolation.Run")
+	@Label("Percolation Run")
+	@Description("From water added to the top row until it stopped spreading")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class Run extends Event {
+		@Label("Sites")
+		long sites;
+		@Label("Steps")
+		int steps;
+		@Label("Percolated Sites")
+		@Description("Water blocks on the bottom row")
+		int percolatedSites;
+	}
+	
+	@Name("percolation.Stats")
+	@Label("Compute Statistics")
+	@Description("PercolationChunkInfo computed from a chunk")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class Stats extends Event {
+		@Label("Sites")
+		long sites;
+	}
+	
+	@Name("percolation.ChunkInit")
+	@Label("Chunk Init")
+	@Description("Blocks of a chunk created")
+	@Category(CATEGORY)
+	static final class ChunkInit extends Event {
+		@Label("Width")
+		int width;
+		@Label("Height")
+		int height;
+		@Label("Depth")
+		int depth;
+	}
+	
+	@Name("percolation.ChunkResize")
+	@Label("Chunk Resize")
+	@Description("Chunk resized in place")
+	@Category(CATEGORY)
+	static final class ChunkResize extends Event {
+		@Label("Old Sites")
+		long oldSites;
+		@Label("Width")
+		int width;
+		@Label("Height")
+		int height;
+		@Label("Depth")
+		int depth;
+	}
+	
+}
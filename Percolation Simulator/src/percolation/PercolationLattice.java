@@ -0,0 +1,147 @@
+package percolation;
+
+import percolation.PercolationBlock.BLOCK_TYPE;
+
+import utils.LongList;
+import utils.Progress;
+
+import static percolation.PercolationBlock.BLOCK_TYPE.*;
+
+/**
+ * The sites of a percolation without anything to draw them with: just the
+ * type of each site, stored as compactly as the implementation can. Used by
+ * {@link LatticePercolation} for lattices too large to be a
+ * {@link PercolationChunk}.
+ * @see PercolationStorage
+ */
+public interface PercolationLattice {
+	
+	/** The largest number of sites on an axis, so a site fits in a long */
+	int MAX_AXIS_LENGTH = 1 << 21;
+	
+	int getWidth();
+	int getHeight();
+	int getDepth();
+	
+	BLOCK_TYPE getType(int x, int y, int z);
+	void setType(int x, int y, int z, BLOCK_TYPE type);
+	
+	/**
+	 * Turns the site at (x, y, z) into water if it is open.
+	 * @return true if it was open
+	 */
+	boolean flood(int x, int y, int z);
+	
+	/** The heap taken by the sites, in bytes */
+	long getFootprint();
+	
+	/**
+	 * Returns the number {@link #spread(FlowRule, long[], int, LongList)} knows the site
+	 * at (x, y, z) by. By default, its coordinates packed into a long (see
+	 * {@link #pack(int, int, int)}).
+	 */
+	default long getSite(int x, int y, int z) {
+		return pack(x, y, z);
+	}
+	
+	/**
+	 * Floods the open neighbours of the given sites that water flows to
+	 * under the given rule, and adds them to next.
+	 * @param sites the sites, as returned by {@link #getSite(int, int, int)}
+	 * @param numSites the number of sites in the array
+	 * @return the number of neighbours looked at (those inside of the
+	 * lattice that the rule lets water flow to)
+	 */
+	default long spread(FlowRule rule, long[] sites, int numSites, LongList next) {
+		final int w = getWidth(), h = getHeight(), d = getDepth();
+		final long[] offsets = rule.packedOffsets;
+		final int[] masks = rule.masks;
+		long visited = 0;
+		for (int i = 0; i < numSites; i++) {
+			final long site = sites[i];
+			final int faces = FlowRule.getFaces(unpackX(site), unpackY(site),
+					unpackZ(site), w, h, d);
+			for (int k = 0; k < offsets.length; k++) {
+				if ((faces & masks[k]) != 0) {
+					continue;
+				}
+				visited++;
+				final long neighbour = site + offsets[k];
+				if (flood(unpackX(neighbour), unpackY(neighbour), unpackZ(neighbour))) {
+					next.add(neighbour);
+				}
+			}
+		}
+		return visited;
+	}
+	
+	default long getSiteCount() {
+		return (long) getWidth() * getHeight() * getDepth();
+	}
+	
+	/**
+	 * Opens every site with probability p and closes the others. The same
+	 * seed and p make the same lattice, whatever the implementation (see
+	 * {@link #isOpen(long, float, int, int, int)}).
+	 */
+	default void randomize(float p, long seed, Progress progress) {
+		final int w = getWidth(), h = getHeight(), d = getDepth();
+		for (int x = 0; x < w; x++) {
+			progress.set((float) x / w);
+			progress.checkCancelled();
+			for (int y = 0; y < h; y++) {
+				for (int z = 0; z < d; z++) {
+					setType(x, y, z, isOpen(seed, p, x, y, z) ? OPEN : CLOSED);
+				}
+			}
+		}
+		progress.set(1f);
+	}
+	
+	/** Turns the water back into open sites */
+	default void clearWater() {
+		final int w = getWidth(), h = getHeight(), d = getDepth();
+		for (int x = 0; x < w; x++) {
+			for (int y = 0; y < h; y++) {
+				for (int z = 0; z < d; z++) {
+					if (getType(x, y, z) == WATER) {
+						setType(x, y, z, OPEN);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether the site at (x, y, z) of a lattice randomized with the
+	 * given seed and p is open. Hashes the seed and the coordinates, so any
+	 * site can be computed on its own, in any order.
+	 */
+	static boolean isOpen(long seed, float p, int x, int y, int z) {
+		// SplitMix64 of the seed and the packed coordinates
+		long h = seed + pack(x, y, z) * 0x9E3779B97F4A7C15L;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h ^= h >>> 31;
+		// 24 random bits, like Random.nextFloat()
+		return (h >>> 40) < (long) (p * (1 << 24));
+	}
+	
+	/** Packs the coordinates of a site into one long */
+	static long pack(int x, int y, int z) {
+		return (long) x << 42 | (long) y << 21 | z;
+	}
+	
+	static int unpackX(long site) {
+		return (int) (site >>> 42);
+	}
+	
+	static int unpackY(long site) {
+		return (int) (site >>> 21) & (MAX_AXIS_LENGTH - 1);
+	}
+	
+	static int unpackZ(long site) {
+		return (int) site & (MAX_AXIS_LENGTH - 1);
+	}
+	
+}
@@ -1,5 +1,7 @@
 package percolation;
 
+import graphics.Canvas;
+import graphics.ClipPlane;
 import graphics.Layer3D;
 import graphics.SimpleCamera3D;
 
@@ -16,17 +18,54 @@ public class PercolationLayer extends Layer3D {
 	private MainWindow mainWindow;
 
 	private PercolationChunk chunk;
+	private PercolationSimulation simulation;
 		
 	private Vec3 defaultRotation;
 	private boolean returnToDefRot;
+	/** Used by returnToDefRotAnim(), so that it doesn't allocate every frame */
+	private Vec3.Mutable rotation;
+	
+	/**
+	 * Fraction of the chunk kept on each axis, measured from its min side.
+	 * Set on the UI thread and copied on the animation thread, under clipLock.
+	 */
+	private final Vec3.Mutable clipFractions;
+	private final Object clipLock = new Object();
+	private volatile boolean clipChanged;
+	// Only used on the animation thread: what the clip planes were made for
+	private final Vec3.Mutable clippedFractions;
+	private final Dimension3.Mutable clippedChunkSize, chunkSize;
+	// Moved in place as the chunk or the fractions change, and only added to
+	// or removed from the clip planes when they start or stop clipping
+	private final ClipPlane.Mutable clipPlaneX, clipPlaneY, clipPlaneZ;
 
 	public PercolationLayer(MainWindow window) {
+		this(window.getCanvas(), null);
+		mainWindow = window;
+	}
+	
+	/**
+	 * Makes a layer that shows the given chunk, without the editor panels of
+	 * a {@link MainWindow} (used for benchmarking, for example). The chunk
+	 * must be initialized. If it is null, {@link #init()} makes the default
+	 * chunk.
+	 */
+	public PercolationLayer(Canvas canvas, PercolationChunk chunk) {
 		super(
-				window.getCanvas(), 
+				canvas, 
 				Vec2.ZERO, 
-				new Dimension(window.getCanvas().width, window.getCanvas().width)
+				new Dimension(canvas.width, canvas.width)
 		);
-		mainWindow = window;
+		this.chunk = chunk;
+		
+		clipFractions = new Vec3.Mutable(1f, 1f, 1f);
+		clippedFractions = new Vec3.Mutable(1f, 1f, 1f);
+		clippedChunkSize = new Dimension3.Mutable();
+		chunkSize = new Dimension3.Mutable();
+		rotation = new Vec3.Mutable();
+		clipPlaneX = new ClipPlane.Mutable(new Vec3(-1f, 0f, 0f), 0f);
+		clipPlaneY = new ClipPlane.Mutable(new Vec3(0f, -1f, 0f), 0f);
+		clipPlaneZ = new ClipPlane.Mutable(new Vec3(0f, 0f, -1f), 0f);
 	}
 	
 	public void init() {
@@ -40,13 +79,18 @@ public class PercolationLayer extends Layer3D {
 		setScale(new Vec3(0.7f, 0.7f, 0.7f));
 		
 		// CHUNK
-		chunk = new PercolationChunk(Vec3.ZERO, new Dimension3(9f), 
-				new Dimension3(50), 0.4f);
-		chunk.init();
-		chunk.randomizeBlockTypes();
-		chunk.populateTopRowWithWater();
+		if (chunk == null) {
+			chunk = new PercolationChunk(Vec3.ZERO, new Dimension3(9f), 
+					new Dimension3(50), 0.4f);
+			chunk.init();
+			chunk.randomizeBlockTypes();
+			chunk.populateTopRowWithWater();
+		}
 		
 		getDrawables().add(chunk);
+		
+		// From now on, the chunk is only modified on the simulation thread
+		simulation = new PercolationSimulation(chunk);
 				
 		setRotation(Vec3.mult(defaultRotation, 2f));
 		returnToDefRot = true; // Initial animation
@@ -55,20 +99,31 @@ public class PercolationLayer extends Layer3D {
 		setBackground(50, 150, 255, 255f);
 		
 		// Updates UI panels
-		mainWindow.getPercolationEditorPanel().setPercolationChunk(chunk);
+		if (mainWindow != null) {
+			mainWindow.getPercolationEditorPanel().setPercolationLayer(this);
+			mainWindow.getPercolationEditorPanel().setPercolationSimulation(simulation);
+		}
 	}
 	
 	@Override
 	public void beforeObjectsDrawn() {
 		makeLights();
 		
+		// Before the layer takes the clip planes for this frame
+		updateClipPlanes();
+		
 		super.beforeObjectsDrawn();
-				
-		getGraphics().pushMatrix();
-				
+	}
+	
+	@Override
+	public void update() {
 		returnToDefRotAnim(); // Animate back to default rotation
+		chunk.updateSpacingAnimation();
 		
-		getGraphics().popMatrix();
+		// Frame playback is paced by the frames
+		if (simulation != null) {
+			simulation.frameStarted();
+		}
 	}
 	
 	@Override
@@ -100,17 +155,82 @@ public class PercolationLayer extends Layer3D {
 	
 	private void returnToDefRotAnim() {
 		if (returnToDefRot) {	
-			setRotation(Vec3.lerp(getRotation(), defaultRotation, 0.27f));
+			setRotation(Vec3.lerp(getRotation(), defaultRotation, 0.27f, rotation));
 			
-			// Check if we're done
-			Vec3 diff = Vec3.sub(getRotation(), defaultRotation);
-			
-			returnToDefRot = diff.getMag() >= 0.003f;
+			// Check if we're done (0.003 away), without a square root
+			returnToDefRot = Vec3.distSq(getRotation(), defaultRotation) 
+					>= 0.003f * 0.003f;
 		}
 	}
 	
+	/**
+	 * Moves the axis-aligned clip planes if the clip fractions or the size
+	 * of the chunk changed. This runs every frame while the spacing is
+	 * animated, so it doesn't allocate unless a plane starts or stops
+	 * clipping.
+	 */
+	private void updateClipPlanes() {
+		// The spacing may be changing the size on another thread
+		final Dimension3 size = chunk.getSize(chunkSize);
+		if (!clipChanged && clippedChunkSize.equals(size)) {
+			return;
+		}
+		synchronized (clipLock) {
+			clipChanged = false;
+			clippedFractions.set(clipFractions);
+		}
+		clippedChunkSize.set(size);
+		final Vec3 fractions = clippedFractions;
+		
+		final Vec3 loc = chunk.getLoc();
+		final float minX = loc.getX() - size.getWidth() / 2f;
+		final float minY = loc.getY() - size.getHeight() / 2f;
+		final float minZ = loc.getZ() - size.getDepth() / 2f;
+		
+		clipPlaneX.setThrough(minX + size.getWidth() * fractions.getX(), 0f, 0f);
+		clipPlaneY.setThrough(0f, minY + size.getHeight() * fractions.getY(), 0f);
+		clipPlaneZ.setThrough(0f, 0f, minZ + size.getDepth() * fractions.getZ());
+		
+		showClipPlane(clipPlaneX, fractions.getX() < 1f);
+		showClipPlane(clipPlaneY, fractions.getY() < 1f);
+		showClipPlane(clipPlaneZ, fractions.getZ() < 1f);
+	}
+	
+	private void showClipPlane(ClipPlane plane, boolean show) {
+		final boolean shown = getClipPlanes().contains(plane);
+		if (show && !shown) {
+			getClipPlanes().add(plane);
+		} else if (!show && shown) {
+			getClipPlanes().remove(plane);
+		}
+	}
+	
+	public Vec3 getClipFractions() {
+		synchronized (clipLock) {
+			return new Vec3(clipFractions);
+		}
+	}
+	
+	/**
+	 * Hides part of the chunk. Each component is the fraction (0 to 1)
+	 * of the chunk that is kept on that axis, measured from the left,
+	 * bottom, and front of the chunk respectively. Can be called from any
+	 * thread: the clip planes are moved on the next frame.
+	 */
+	public void setClipFractions(Vec3 fractions) {
+		synchronized (clipLock) {
+			clipFractions.set(fractions);
+			clipChanged = true;
+		}
+		markDirty();
+	}
+	
 	public PercolationChunk getPercolationChunk() {
 		return chunk;
 	}
 	
+	public PercolationSimulation getPercolationSimulation() {
+		return simulation;
+	}
+	
 }
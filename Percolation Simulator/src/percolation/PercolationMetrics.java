@@ -0,0 +1,91 @@
+package percolation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import utils.LatencyHistogram;
+
+/**
+ * Totals of the work done by every {@link PercolationChunk} since the
+ * program started. The counters are lock-free, so that chunks stepping on
+ * any number of threads can update them without contending.
+ * @see PercolationMonitor
+ */
+public final class PercolationMetrics {
+	
+	private static final LongAdder steps = new LongAdder();
+	private static final LongAdder visitedSites = new LongAdder();
+	private static final LongAdder waterSitesAdded = new LongAdder();
+	private static final LongAdder randomizations = new LongAdder();
+	private static final LongAdder randomizedSites = new LongAdder();
+	private static final LongAdder completedRuns = new LongAdder();
+	private static final LongAdder completedRunSites = new LongAdder();
+	private static final LatencyHistogram stepTimes = new LatencyHistogram("step");
+	
+	private PercolationMetrics() { throw new AssertionError(); }
+	
+	static void stepTaken(long visited, int added, long nanos) {
+		steps.increment();
+		stepTimes.record(nanos);
+		visitedSites.add(visited);
+		waterSitesAdded.add(added);
+	}
+	
+	static void randomized(long sites) {
+		randomizations.increment();
+		randomizedSites.add(sites);
+	}
+	
+	static void runCompleted(long sites) {
+		completedRuns.increment();
+		completedRunSites.add(sites);
+	}
+	
+	/** Steps taken by {@link PercolationChunk#stepForward()} */
+	public static long getSteps() {
+		return steps.sum();
+	}
+	
+	/**
+	 * Returns the histogram of how long {@link PercolationChunk#stepForward()}
+	 * took, in nanoseconds.
+	 */
+	public static LatencyHistogram getStepTimes() {
+		return stepTimes;
+	}
+	
+	/**
+	 * Sites looked at by {@link PercolationChunk#stepForward()} and
+	 * {@link LatticePercolation#stepForward()}: the neighbours of the water
+	 * blocks inside of the chunk that water can flow to (those of the
+	 * chunk's {@link FlowRule}, or sideways and down for a lattice), open
+	 * or not. Neighbours water can't flow to, such as the one above under
+	 * the default rule, are not counted.
+	 */
+	public static long getVisitedSites() {
+		return visitedSites.sum();
+	}
+	
+	public static long getWaterSitesAdded() {
+		return waterSitesAdded.sum();
+	}
+	
+	/** Calls to {@link PercolationChunk#randomizeBlockTypes()} that finished */
+	public static long getRandomizations() {
+		return randomizations.sum();
+	}
+	
+	public static long getRandomizedSites() {
+		return randomizedSites.sum();
+	}
+	
+	/** Percolations that were stepped forward until they finished */
+	public static long getCompletedRuns() {
+		return completedRuns.sum();
+	}
+	
+	/** The total number of sites of the chunks of {@link #getCompletedRuns()} */
+	public static long getCompletedRunSites() {
+		return completedRunSites.sum();
+	}
+	
+}
@@ -0,0 +1,212 @@
+package percolation;
+
+import java.util.concurrent.TimeUnit;
+
+import utils.LatencyHistogram;
+import utils.MBeans;
+
+/**
+ * Exposes the simulation through JMX, as "percolation:type=Simulation":
+ * the totals of {@link PercolationMetrics}, the rates at which they grow,
+ * and the state of one monitored {@link PercolationChunk}, if any (headless
+ * runs with many chunks only have the totals).
+ * <p>
+ * The rates and the percentiles of the step times are measured over the
+ * time since they were last measured, at most once a second, so that every
+ * client sees the same values. The
+ * completed run rates are averaged since the monitor was made.
+ */
+public class PercolationMonitor implements PercolationMonitorMBean {
+	
+	public static final String TYPE = "Simulation";
+	
+	private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+	
+	private volatile PercolationChunk chunk;
+	
+	private final long startNanos;
+	private final long startCompletedRuns, startCompletedRunSites;
+	
+	// Guarded by this
+	private long lastSampleNanos;
+	private long lastSteps, lastVisitedSites;
+	private double stepsPerSecond, sitesPerSecond;
+	private LatencyHistogram.Snapshot lastStepTimes;
+	private LatencyHistogram.Snapshot stepTimes;
+	
+	public PercolationMonitor(PercolationChunk chunk) {
+		this.chunk = chunk;
+		startNanos = lastSampleNanos = System.nanoTime();
+		startCompletedRuns = PercolationMetrics.getCompletedRuns();
+		startCompletedRunSites = PercolationMetrics.getCompletedRunSites();
+		lastSteps = PercolationMetrics.getSteps();
+		lastVisitedSites = PercolationMetrics.getVisitedSites();
+		lastStepTimes = PercolationMetrics.getStepTimes().snapshot();
+		stepTimes = lastStepTimes.since(lastStepTimes);
+	}
+	
+	/**
+	 * Makes a monitor of the given chunk (which may be null) and registers it,
+	 * replacing the one that was registered before.
+	 */
+	public static PercolationMonitor register(PercolationChunk chunk) {
+		PercolationMonitor monitor = new PercolationMonitor(chunk);
+		MBeans.register(TYPE, monitor);
+		return monitor;
+	}
+	
+	public PercolationChunk getChunk() {
+		return chunk;
+	}
+	
+	public void setChunk(PercolationChunk chunk) {
+		this.chunk = chunk;
+	}
+	
+	@Override
+	public int getChunkWidth() {
+		final PercolationChunk c = chunk;
+		return c == null ? -1 : (int) c.getNumBlocks().getWidth();
+	}
+	
+	@Override
+	public int getChunkHeight() {
+		final PercolationChunk c = chunk;
+		return c == null ? -1 : (int) c.getNumBlocks().getHeight();
+	}
+	
+	@Override
+	public int getChunkDepth() {
+		final PercolationChunk c = chunk;
+		return c == null ? -1 : (int) c.getNumBlocks().getDepth();
+	}
+	
+	@Override
+	public long getNumBlocks() {
+		final PercolationChunk c = chunk;
+		return c == null ? 0L : (long) c.getNumBlocks().getWidth()
+				* (long) c.getNumBlocks().getHeight()
+				* (long) c.getNumBlocks().getDepth();
+	}
+	
+	@Override
+	public int getCurrentStep() {
+		final PercolationChunk c = chunk;
+		return c == null || !c.isInitialized() ? -1 : c.getCurrentStep();
+	}
+	
+	@Override
+	public int getFrontierSize() {
+		final PercolationChunk c = chunk;
+		return c == null ? 0 : c.getFrontierSize();
+	}
+	
+	@Override
+	public boolean isFinishedPercolation() {
+		final PercolationChunk c = chunk;
+		return c != null && c.finishedPercolation();
+	}
+	
+	@Override
+	public long getEstimatedFootprintBytes() {
+		final PercolationChunk c = chunk;
+		return c == null ? 0L : c.getEstimatedFootprint();
+	}
+	
+	@Override
+	public long getSteps() {
+		return PercolationMetrics.getSteps();
+	}
+	
+	@Override
+	public long getVisitedSites() {
+		return PercolationMetrics.getVisitedSites();
+	}
+	
+	@Override
+	public long getWaterSitesAdded() {
+		return PercolationMetrics.getWaterSitesAdded();
+	}
+	
+	@Override
+	public long getRandomizations() {
+		return PercolationMetrics.getRandomizations();
+	}
+	
+	@Override
+	public long getCompletedRuns() {
+		return PercolationMetrics.getCompletedRuns();
+	}
+	
+	@Override
+	public synchronized double getStepsPerSecond() {
+		sampleRates();
+		return stepsPerSecond;
+	}
+	
+	@Override
+	public synchronized double getSitesPerSecond() {
+		sampleRates();
+		return sitesPerSecond;
+	}
+	
+	@Override
+	public double getCompletedRunsPerSecond() {
+		return (PercolationMetrics.getCompletedRuns() - startCompletedRuns)
+				/ getSecondsSinceStart();
+	}
+	
+	@Override
+	public double getCompletedRunSitesPerSecond() {
+		return (PercolationMetrics.getCompletedRunSites() - startCompletedRunSites)
+				/ getSecondsSinceStart();
+	}
+	
+	@Override
+	public synchronized double getStepMillisP50() {
+		sampleRates();
+		return stepTimes.getPercentile(50.0) / 1e6;
+	}
+	
+	@Override
+	public synchronized double getStepMillisP99() {
+		sampleRates();
+		return stepTimes.getPercentile(99.0) / 1e6;
+	}
+	
+	@Override
+	public synchronized double getStepMillisP999() {
+		sampleRates();
+		return stepTimes.getPercentile(99.9) / 1e6;
+	}
+	
+	@Override
+	public synchronized double getStepMillisMax() {
+		sampleRates();
+		return stepTimes.getMax() / 1e6;
+	}
+	
+	private double getSecondsSinceStart() {
+		return Math.max(System.nanoTime() - startNanos, 1L) / 1e9;
+	}
+	
+	private void sampleRates() {
+		final long now = System.nanoTime();
+		if (now - lastSampleNanos < RATE_INTERVAL_NANOS) {
+			return;
+		}
+		final double seconds = (now - lastSampleNanos) / 1e9;
+		final long steps = PercolationMetrics.getSteps();
+		final long visitedSites = PercolationMetrics.getVisitedSites();
+		stepsPerSecond = (steps - lastSteps) / seconds;
+		sitesPerSecond = (visitedSites - lastVisitedSites) / seconds;
+		lastSampleNanos = now;
+		lastSteps = steps;
+		lastVisitedSites = visitedSites;
+		
+		final LatencyHistogram.Snapshot snapshot = PercolationMetrics.getStepTimes().snapshot();
+		stepTimes = snapshot.since(lastStepTimes);
+		lastStepTimes = snapshot;
+	}
+	
+}
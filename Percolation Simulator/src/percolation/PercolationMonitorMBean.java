@@ -0,0 +1,39 @@
+package percolation;
+
+/**
+ * The attributes of the simulation exposed through JMX.
+ * @see PercolationMonitor
+ */
+public interface PercolationMonitorMBean {
+	
+	// The monitored chunk, if there is one (-1 or 0 otherwise)
+	
+	int getChunkWidth();
+	int getChunkHeight();
+	int getChunkDepth();
+	long getNumBlocks();
+	int getCurrentStep();
+	int getFrontierSize();
+	boolean isFinishedPercolation();
+	long getEstimatedFootprintBytes();
+	
+	// Every chunk
+	
+	long getSteps();
+	long getVisitedSites();
+	long getWaterSitesAdded();
+	long getRandomizations();
+	long getCompletedRuns();
+	double getStepsPerSecond();
+	double getSitesPerSecond();
+	double getCompletedRunsPerSecond();
+	double getCompletedRunSitesPerSecond();
+	
+	// The steps taken in the last interval, by every chunk
+	
+	double getStepMillisP50();
+	double getStepMillisP99();
+	double getStepMillisP999();
+	double getStepMillisMax();
+	
+}
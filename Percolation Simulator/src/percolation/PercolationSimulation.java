@@ -0,0 +1,232 @@
+package percolation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs everything that modifies a {@link PercolationChunk} on a single
+ * dedicated thread, so the simulation is independent of both the UI thread
+ * and the frame rate of the renderer. After every task, the state of the
+ * chunk is published as a {@link PercolationSnapshot} (at most once every
+ * {@link #PUBLISH_INTERVAL_MILLIS} milliseconds) for the renderer to pick up.
+ */
+public class PercolationSimulation {
+	
+	/** Minimum time between two published snapshots */
+	public static final long PUBLISH_INTERVAL_MILLIS = 15;
+	
+	/** Default time spent stepping per frame in frame playback */
+	public static final long DEFAULT_FRAME_BUDGET_MILLIS = 8;
+	
+	private final PercolationChunk chunk;
+	private final ScheduledExecutorService executor;
+	private volatile Thread thread;
+	
+	// Only accessed on the simulation thread
+	private long lastPublishNanos;
+	private int publishedVersion;
+	private boolean publishScheduled;
+	
+	private ScheduledFuture<?> playback;
+	
+	// Frame playback
+	private volatile BooleanSupplier frameStep;
+	private volatile long frameBudgetNanos;
+	private final AtomicBoolean frameBatchPending;
+
+	public PercolationSimulation(PercolationChunk chunk) {
+		this.chunk = chunk;
+		
+		frameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FRAME_BUDGET_MILLIS);
+		frameBatchPending = new AtomicBoolean();
+		
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "Percolation Simulation");
+			t.setDaemon(true);
+			thread = t;
+			return t;
+		});
+		
+		// Initial snapshot
+		executor.execute(this::publish);
+	}
+	
+	/**
+	 * Runs the given task on the simulation thread, after all of the
+	 * tasks that were submitted before it.
+	 */
+	public Future<?> execute(Runnable task) {
+		return executor.submit(() -> {
+			try {
+				task.run();
+			} finally {
+				afterTask();
+			}
+		});
+	}
+	
+	/**
+	 * Runs the given task on the simulation thread, after all of the
+	 * tasks that were submitted before it.
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		return executor.submit(() -> {
+			try {
+				return task.call();
+			} finally {
+				afterTask();
+			}
+		});
+	}
+	
+	/**
+	 * Repeatedly runs the given step on the simulation thread, waiting the
+	 * given delay between the end of one step and the start of the next,
+	 * until {@link #stopPlayback()} is called. Any playback that was already
+	 * running is stopped.
+	 */
+	public synchronized void startPlayback(Runnable step, long delayMillis) {
+		stopPlayback();
+		playback = executor.scheduleWithFixedDelay(() -> {
+			try {
+				step.run();
+			} finally {
+				afterTask();
+			}
+		}, 0L, Math.max(TimeUnit.MILLISECONDS.toNanos(delayMillis), 1L), 
+				TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Starts playback that is paced by the renderer instead of a delay: every
+	 * frame (see {@link #frameStarted()}), the given step is run on the
+	 * simulation thread as many times as fits in the frame budget, and the
+	 * result is published right away. Playback stops when the step returns
+	 * false, or when {@link #stopPlayback()} is called. Any playback that was
+	 * already running is stopped.
+	 * @see #setFrameBudgetMillis(long)
+	 */
+	public synchronized void startFramePlayback(BooleanSupplier step) {
+		stopPlayback();
+		frameStep = step;
+	}
+	
+	public synchronized void stopPlayback() {
+		if (playback != null) {
+			playback.cancel(false);
+			playback = null;
+		}
+		frameStep = null;
+	}
+	
+	public synchronized boolean isPlaying() {
+		return playback != null || frameStep != null;
+	}
+	
+	/**
+	 * Must be called by the renderer once per frame. Runs the next batch of
+	 * steps of frame playback, if it is running and the previous batch
+	 * is done.
+	 * @see #startFramePlayback(BooleanSupplier)
+	 */
+	public void frameStarted() {
+		final BooleanSupplier step = frameStep;
+		if (step == null || !frameBatchPending.compareAndSet(false, true)) {
+			return;
+		}
+		executor.execute(() -> {
+			try {
+				runFrameBatch(step);
+			} finally {
+				frameBatchPending.set(false);
+			}
+		});
+	}
+	
+	private void runFrameBatch(BooleanSupplier step) {
+		final long deadline = System.nanoTime() + frameBudgetNanos;
+		do {
+			if (!step.getAsBoolean()) {
+				synchronized (this) {
+					if (frameStep == step) {
+						frameStep = null;
+					}
+				}
+				break;
+			}
+		} while (System.nanoTime() < deadline && frameStep == step);
+		
+		// The renderer wants this batch for the next frame
+		if (chunk.getVersion() != publishedVersion) {
+			publish();
+		}
+	}
+	
+	/**
+	 * Sets the maximum time spent stepping per frame in frame playback.
+	 * At least one step is run per frame, however long it takes.
+	 */
+	public void setFrameBudgetMillis(long budgetMillis) {
+		if (budgetMillis <= 0) {
+			throw new IllegalArgumentException("budgetMillis must be positive");
+		}
+		frameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+	}
+	
+	public long getFrameBudgetMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(frameBudgetNanos);
+	}
+	
+	/**
+	 * Returns true if the current thread is the simulation thread.
+	 */
+	public boolean isSimulationThread() {
+		return Thread.currentThread() == thread;
+	}
+	
+	/**
+	 * Stops the simulation thread. Tasks that have not started yet
+	 * will not run.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	private void afterTask() {
+		if (chunk.getVersion() == publishedVersion || publishScheduled) {
+			return;
+		}
+		final long sinceLast = System.nanoTime() - lastPublishNanos;
+		final long interval = TimeUnit.MILLISECONDS.toNanos(PUBLISH_INTERVAL_MILLIS);
+		if (sinceLast >= interval) {
+			publish();
+		} else {
+			// Publish once the interval is over, so the last change of a burst
+			// of quick tasks is not lost
+			publishScheduled = true;
+			executor.schedule(() -> {
+				publishScheduled = false;
+				publish();
+			}, interval - sinceLast, TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	private void publish() {
+		if (chunk.isInitialized()) {
+			chunk.publishSnapshot();
+		}
+		publishedVersion = chunk.getVersion();
+		lastPublishNanos = System.nanoTime();
+	}
+	
+	public PercolationChunk getPercolationChunk() {
+		return chunk;
+	}
+	
+}
@@ -0,0 +1,85 @@
+package percolation;
+
+import percolation.PercolationBlock.BLOCK_TYPE;
+
+import utils.Dimension3;
+
+/**
+ * A copy of the lattice of a {@link PercolationChunk} at one point in time.
+ * Snapshots are published by the thread that runs the simulation and read by
+ * the renderer, which never sees the chunk in the middle of a step.
+ * Snapshots are recycled by their chunk, so they are read-only outside of
+ * this package, and should not be held on to after the frame they were
+ * acquired for.
+ * @see PercolationChunk#publishSnapshot()
+ * @see PercolationChunk#acquireSnapshot()
+ */
+public final class PercolationSnapshot {
+	
+	private static final BLOCK_TYPE[] TYPES = BLOCK_TYPE.values();
+	
+	private byte[] types;
+	private int size;
+	private int width, height, depth;
+	private int currentStep;
+	private boolean finishedPercolation;
+	
+	PercolationSnapshot() {
+		types = new byte[0];
+	}
+	
+	/**
+	 * Copies the current state of the given chunk into this snapshot.
+	 */
+	void set(PercolationChunk chunk) {
+		size = chunk.getBlocks().size();
+		width = (int) chunk.getNumBlocks().getWidth();
+		height = (int) chunk.getNumBlocks().getHeight();
+		depth = (int) chunk.getNumBlocks().getDepth();
+		if (types.length < size) {
+			types = new byte[size];
+		}
+		for (int i = 0; i < size; i++) {
+			types[i] = (byte) chunk.getBlocks().get(i).getType().ordinal();
+		}
+		currentStep = chunk.getCurrentStep();
+		finishedPercolation = chunk.finishedPercolation();
+	}
+	
+	/**
+	 * Returns the type of the block at the given index
+	 * of {@link PercolationChunk#getBlocks()}.
+	 */
+	public BLOCK_TYPE getType(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException(index + " >= " + size);
+		}
+		return TYPES[types[index]];
+	}
+	
+	/**
+	 * Returns the number of blocks in this snapshot.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns true if this snapshot was taken of a chunk with the given
+	 * number of blocks on each axis.
+	 */
+	public boolean hasNumBlocks(Dimension3 numBlocks) {
+		return width == (int) numBlocks.getWidth()
+				&& height == (int) numBlocks.getHeight()
+				&& depth == (int) numBlocks.getDepth();
+	}
+	
+	public int getCurrentStep() {
+		return currentStep;
+	}
+	
+	public boolean finishedPercolation() {
+		return finishedPercolation;
+	}
+	
+}
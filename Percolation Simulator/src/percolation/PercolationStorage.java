@@ -0,0 +1,205 @@
+package percolation;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import utils.Dimension3;
+
+/**
+ * The ways the sites of a percolation can be stored, with estimates of the
+ * heap each one takes for a given size, so that a lattice can be checked
+ * before it is made instead of running out of memory while it is.
+ */
+public enum PercolationStorage {
+	
+	/** A {@link PercolationChunk}: a block object per site */
+	OBJECTS(EnumSet.allOf(Feature.class)),
+	/** A {@link ByteLattice} */
+	BYTES(EnumSet.noneOf(Feature.class)),
+	/** A {@link BitLattice} */
+	BITS(EnumSet.noneOf(Feature.class)),
+	/** A {@link SparseLattice} */
+	SPARSE(EnumSet.noneOf(Feature.class)),
+	/** A {@link MortonLattice} */
+	MORTON(EnumSet.noneOf(Feature.class));
+	
+	/** What a storage can be used for, besides percolating */
+	public static enum Feature {
+		/** Drawing the sites, which takes a block per site */
+		RENDERING,
+		/** Stepping back, which takes the water sites of every step */
+		STEP_BACK
+	}
+	
+	/**
+	 * Heap taken by each water site of a {@link PercolationChunk}, in its
+	 * history of the steps (an int index, with room for the list to grow)
+	 */
+	private static final long BYTES_PER_WATER_BLOCK = 8L;
+	/**
+	 * Heap taken per site of a {@link PercolationChunk} besides its block: the
+	 * three snapshots and the state saved while resizing, a byte each
+	 */
+	private static final long BYTES_PER_SITE_COPIES = 4L;
+	/**
+	 * Heap taken per site of the frontier of a {@link LatticePercolation}: a
+	 * long in the current and the next frontier
+	 */
+	private static final long BYTES_PER_FRONTIER_SITE = 2L * Long.BYTES;
+	/**
+	 * The site percolation threshold of a cubic lattice. Below it, water
+	 * seldom gets far from the top row.
+	 */
+	private static final float PERCOLATION_THRESHOLD = 0.3116f;
+	
+	private final Set<Feature> features;
+	
+	private PercolationStorage(Set<Feature> features) {
+		this.features = features;
+	}
+	
+	public boolean supports(Set<Feature> features) {
+		return this.features.containsAll(features);
+	}
+	
+	/**
+	 * Returns true if a lattice with the given number of sites on each axis
+	 * can be stored this way at all.
+	 */
+	public boolean canStore(Dimension3 numBlocks) {
+		final long sites = getSiteCount(numBlocks);
+		switch (this) {
+		case OBJECTS: return sites <= Integer.MAX_VALUE;
+		case BYTES: return sites <= ByteLattice.MAX_SITES && fitsAxes(numBlocks);
+		case BITS: return sites <= BitLattice.MAX_SITES && fitsAxes(numBlocks);
+		case SPARSE: return getBrickCount(numBlocks) <= SparseLattice.MAX_BRICKS
+				&& fitsAxes(numBlocks);
+		case MORTON: return fitsAxes(numBlocks)
+				&& getPaddedSiteCount(numBlocks) <= ByteLattice.MAX_SITES;
+		}
+		return false;
+	}
+	
+	/**
+	 * Estimates the heap taken by a percolation with the given number of
+	 * sites on each axis and the given p, stored this way, including what it
+	 * takes to run it. Assumes the worst: every open site of a chunk becomes
+	 * water, the frontier of a lattice is as large as its largest cross
+	 * section, and water reaches every brick of a sparse lattice unless p is
+	 * below the percolation threshold (then it reaches the top two layers of
+	 * bricks).
+	 */
+	public long estimateFootprint(Dimension3 numBlocks, float p) {
+		final long sites = getSiteCount(numBlocks);
+		switch (this) {
+		case OBJECTS:
+			return PercolationChunk.estimateFootprint(numBlocks)
+					+ sites * BYTES_PER_SITE_COPIES
+					+ (long) (sites * (double) p) * BYTES_PER_WATER_BLOCK;
+		case BYTES:
+			return sites + estimateFrontierFootprint(numBlocks);
+		case BITS:
+			return (sites + Long.SIZE - 1) / Long.SIZE * 2L * Long.BYTES
+					+ estimateFrontierFootprint(numBlocks);
+		case SPARSE:
+			final long bricks = getBrickCount(numBlocks);
+			final long ownBricks;
+			if (p <= 0f) {
+				ownBricks = 0L;
+			} else if (p < PERCOLATION_THRESHOLD) {
+				final long layers = Math.min(2L,
+						SparseLattice.getBrickCount((int) numBlocks.getHeight()));
+				ownBricks = layers
+						* SparseLattice.getBrickCount((int) numBlocks.getWidth())
+						* SparseLattice.getBrickCount((int) numBlocks.getDepth());
+			} else {
+				ownBricks = bricks;
+			}
+			return SparseLattice.estimateFootprint(bricks, ownBricks)
+					+ estimateFrontierFootprint(numBlocks);
+		case MORTON:
+			return getPaddedSiteCount(numBlocks) + estimateFrontierFootprint(numBlocks);
+		}
+		throw new AssertionError(this);
+	}
+	
+	/**
+	 * Makes an empty lattice stored this way.
+	 * @throws UnsupportedOperationException for {@link #OBJECTS}, which is a
+	 * {@link PercolationChunk}
+	 */
+	public PercolationLattice newLattice(Dimension3 numBlocks) {
+		final int w = (int) numBlocks.getWidth();
+		final int h = (int) numBlocks.getHeight();
+		final int d = (int) numBlocks.getDepth();
+		switch (this) {
+		case BYTES: return new ByteLattice(w, h, d);
+		case BITS: return new BitLattice(w, h, d);
+		case SPARSE: return new SparseLattice(w, h, d);
+		case MORTON: return new MortonLattice(w, h, d);
+		default: throw new UnsupportedOperationException(
+				this + " is stored in a PercolationChunk, not a lattice");
+		}
+	}
+	
+	/**
+	 * Returns the storage that takes the least heap for the given size and
+	 * p, of those that support the given features and can store that many
+	 * sites, or null if none can.
+	 */
+	public static PercolationStorage cheapest(Dimension3 numBlocks, float p,
+			Set<Feature> features) {
+		PercolationStorage cheapest = null;
+		long cheapestFootprint = Long.MAX_VALUE;
+		for (PercolationStorage storage : values()) {
+			if (!storage.supports(features) || !storage.canStore(numBlocks)) {
+				continue;
+			}
+			final long footprint = storage.estimateFootprint(numBlocks, p);
+			if (footprint < cheapestFootprint) {
+				cheapest = storage;
+				cheapestFootprint = footprint;
+			}
+		}
+		return cheapest;
+	}
+	
+	/**
+	 * Returns how much more heap can be used before running out: what is free
+	 * now, and what the heap can still grow by.
+	 */
+	public static long getAvailableHeap() {
+		final Runtime rt = Runtime.getRuntime();
+		return rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+	}
+	
+	private static long getSiteCount(Dimension3 numBlocks) {
+		return (long) numBlocks.getWidth() * (long) numBlocks.getHeight()
+				* (long) numBlocks.getDepth();
+	}
+	
+	private static long getBrickCount(Dimension3 numBlocks) {
+		return (long) SparseLattice.getBrickCount((int) numBlocks.getWidth())
+				* SparseLattice.getBrickCount((int) numBlocks.getHeight())
+				* SparseLattice.getBrickCount((int) numBlocks.getDepth());
+	}
+	
+	private static long getPaddedSiteCount(Dimension3 numBlocks) {
+		return MortonLattice.getPaddedSiteCount((int) numBlocks.getWidth(),
+				(int) numBlocks.getHeight(), (int) numBlocks.getDepth());
+	}
+	
+	private static boolean fitsAxes(Dimension3 numBlocks) {
+		return numBlocks.getWidth() <= PercolationLattice.MAX_AXIS_LENGTH
+				&& numBlocks.getHeight() <= PercolationLattice.MAX_AXIS_LENGTH
+				&& numBlocks.getDepth() <= PercolationLattice.MAX_AXIS_LENGTH;
+	}
+	
+	private static long estimateFrontierFootprint(Dimension3 numBlocks) {
+		final long w = (long) numBlocks.getWidth();
+		final long h = (long) numBlocks.getHeight();
+		final long d = (long) numBlocks.getDepth();
+		return Math.max(w * d, Math.max(w * h, h * d)) * BYTES_PER_FRONTIER_SITE;
+	}
+	
+}
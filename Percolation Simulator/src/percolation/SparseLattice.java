@@ -0,0 +1,287 @@
+package percolation;
+
+import java.util.Arrays;
+
+import percolation.PercolationBlock.BLOCK_TYPE;
+
+import utils.Progress;
+
+import static percolation.PercolationBlock.BLOCK_TYPE.*;
+
+/**
+ * A {@link PercolationLattice} made of bricks of 16 x 16 x 16 sites that
+ * only take memory once they hold something that can't be computed. Bricks
+ * that are all closed, or all open without water, share one array of each.
+ * A randomized brick that nobody changed has no array at all: its sites are
+ * computed from the seed and p (see
+ * {@link PercolationLattice#isOpen(long, float, int, int, int)}). A brick
+ * gets its own array when water flows into it or one of its sites is set.
+ * <p>
+ * Water only reaches a small part of a large lattice when p is low, so the
+ * memory taken grows with the wetted region rather than with the lattice.
+ */
+public class SparseLattice implements PercolationLattice {
+	
+	public static final int BRICK_BITS = 4;
+	/** The number of sites on each axis of a brick */
+	public static final int BRICK_SIZE = 1 << BRICK_BITS;
+	public static final int SITES_PER_BRICK = BRICK_SIZE * BRICK_SIZE * BRICK_SIZE;
+	/** The most bricks the brick table can hold */
+	public static final long MAX_BRICKS = Integer.MAX_VALUE - 8;
+	
+	private static final int LOCAL_MASK = BRICK_SIZE - 1;
+	private static final BLOCK_TYPE[] TYPES = BLOCK_TYPE.values();
+	private static final byte OPEN_BYTE = (byte) OPEN.ordinal();
+	private static final byte CLOSED_BYTE = (byte) CLOSED.ordinal();
+	private static final byte WATER_BYTE = (byte) WATER.ordinal();
+	
+	// The shared uniform bricks, never written to
+	private static final byte[] CLOSED_BRICK = newUniformBrick(CLOSED_BYTE);
+	private static final byte[] OPEN_BRICK = newUniformBrick(OPEN_BYTE);
+	
+	private final int width, height, depth;
+	private final int bricksY, bricksZ;
+	/**
+	 * The sites of each brick: one of the shared uniform bricks, an array of
+	 * its own, or null if it is computed from the seed and p
+	 */
+	private final byte[][] bricks;
+	/** Bricks whose sites were set, so they no longer match the seed */
+	private final boolean[] edited;
+	private int ownBricks;
+	
+	private long seed;
+	private float p;
+	
+	/**
+	 * Makes a lattice of closed sites.
+	 */
+	public SparseLattice(int width, int height, int depth) {
+		final long numBricks = (long) getBrickCount(width)
+				* getBrickCount(height) * getBrickCount(depth);
+		if (numBricks > MAX_BRICKS) {
+			throw new IllegalArgumentException(width + " x " + height + " x "
+					+ depth + " is too many sites for a SparseLattice");
+		}
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		bricksY = getBrickCount(height);
+		bricksZ = getBrickCount(depth);
+		bricks = new byte[(int) numBricks][];
+		edited = new boolean[bricks.length];
+		Arrays.fill(bricks, CLOSED_BRICK);
+	}
+	
+	private static byte[] newUniformBrick(byte type) {
+		final byte[] brick = new byte[SITES_PER_BRICK];
+		Arrays.fill(brick, type);
+		return brick;
+	}
+	
+	/** The number of bricks it takes to cover the given number of sites */
+	public static int getBrickCount(int sites) {
+		return (sites + LOCAL_MASK) >>> BRICK_BITS;
+	}
+	
+	private int brickIndex(int x, int y, int z) {
+		return ((x >>> BRICK_BITS) * bricksY + (y >>> BRICK_BITS)) * bricksZ
+				+ (z >>> BRICK_BITS);
+	}
+	
+	private static int localIndex(int x, int y, int z) {
+		return (x & LOCAL_MASK) << (2 * BRICK_BITS) | (y & LOCAL_MASK) << BRICK_BITS
+				| (z & LOCAL_MASK);
+	}
+	
+	@Override
+	public BLOCK_TYPE getType(int x, int y, int z) {
+		final byte[] brick = bricks[brickIndex(x, y, z)];
+		if (brick == null) {
+			return PercolationLattice.isOpen(seed, p, x, y, z) ? OPEN : CLOSED;
+		}
+		return TYPES[brick[localIndex(x, y, z)]];
+	}
+	
+	@Override
+	public void setType(int x, int y, int z, BLOCK_TYPE type) {
+		final int b = brickIndex(x, y, z);
+		final byte value = (byte) type.ordinal();
+		byte[] brick = bricks[b];
+		if (brick != null && brick[localIndex(x, y, z)] == value) {
+			return;
+		}
+		if (!isOwn(brick)) {
+			brick = materialize(b);
+		}
+		brick[localIndex(x, y, z)] = value;
+		edited[b] = true;
+	}
+	
+	@Override
+	public boolean flood(int x, int y, int z) {
+		final int b = brickIndex(x, y, z);
+		final int local = localIndex(x, y, z);
+		byte[] brick = bricks[b];
+		if (brick == null) {
+			if (!PercolationLattice.isOpen(seed, p, x, y, z)) {
+				return false;
+			}
+			brick = materialize(b);
+		} else if (brick[local] != OPEN_BYTE) {
+			return false;
+		} else if (brick == OPEN_BRICK) {
+			brick = materialize(b);
+		}
+		brick[local] = WATER_BYTE;
+		return true;
+	}
+	
+	private static boolean isOwn(byte[] brick) {
+		return brick != null && brick != CLOSED_BRICK && brick != OPEN_BRICK;
+	}
+	
+	/**
+	 * Gives the brick at the given index an array of its own, with the
+	 * sites it had.
+	 */
+	private byte[] materialize(int b) {
+		final byte[] shared = bricks[b];
+		final byte[] brick;
+		if (shared != null) {
+			brick = shared.clone();
+		} else {
+			brick = new byte[SITES_PER_BRICK];
+			Arrays.fill(brick, CLOSED_BYTE);
+			// Only the sites inside of the lattice
+			final int bz = b % bricksZ;
+			final int by = b / bricksZ % bricksY;
+			final int bx = b / bricksZ / bricksY;
+			final int x0 = bx << BRICK_BITS, y0 = by << BRICK_BITS, z0 = bz << BRICK_BITS;
+			final int x1 = Math.min(x0 + BRICK_SIZE, width);
+			final int y1 = Math.min(y0 + BRICK_SIZE, height);
+			final int z1 = Math.min(z0 + BRICK_SIZE, depth);
+			for (int x = x0; x < x1; x++) {
+				for (int y = y0; y < y1; y++) {
+					for (int z = z0; z < z1; z++) {
+						if (PercolationLattice.isOpen(seed, p, x, y, z)) {
+							brick[localIndex(x, y, z)] = OPEN_BYTE;
+						}
+					}
+				}
+			}
+		}
+		bricks[b] = brick;
+		ownBricks++;
+		return brick;
+	}
+	
+	/**
+	 * Only takes time and memory for the bricks that have arrays of their
+	 * own: the others are computed from the seed and p when they are read,
+	 * or are uniform if p is 0 or 1.
+	 */
+	@Override
+	public void randomize(float p, long seed, Progress progress) {
+		this.p = p;
+		this.seed = seed;
+		final byte[] uniform = p <= 0f ? CLOSED_BRICK : p >= 1f ? OPEN_BRICK : null;
+		Arrays.fill(bricks, uniform);
+		Arrays.fill(edited, false);
+		ownBricks = 0;
+		progress.set(1f);
+	}
+	
+	/**
+	 * Bricks that only changed by being flooded go back to what they were
+	 * made from, the others go back to a shared brick if they are uniform.
+	 */
+	@Override
+	public void clearWater() {
+		final byte[] unedited = p <= 0f ? CLOSED_BRICK : p >= 1f ? OPEN_BRICK : null;
+		for (int b = 0; b < bricks.length; b++) {
+			final byte[] brick = bricks[b];
+			if (!isOwn(brick)) {
+				continue;
+			}
+			if (!edited[b]) {
+				bricks[b] = unedited;
+				ownBricks--;
+				continue;
+			}
+			for (int i = 0; i < brick.length; i++) {
+				if (brick[i] == WATER_BYTE) {
+					brick[i] = OPEN_BYTE;
+				}
+			}
+			compact(b);
+		}
+	}
+	
+	/**
+	 * Replaces the brick at the given index with a shared one if all of
+	 * its sites are closed, or all open.
+	 */
+	private void compact(int b) {
+		final byte[] brick = bricks[b];
+		final byte first = brick[0];
+		if (first == WATER_BYTE) {
+			return;
+		}
+		// The sites outside of the lattice are closed
+		final int bz = b % bricksZ;
+		final int by = b / bricksZ % bricksY;
+		final int bx = b / bricksZ / bricksY;
+		final boolean full = (bx + 1 << BRICK_BITS) <= width
+				&& (by + 1 << BRICK_BITS) <= height && (bz + 1 << BRICK_BITS) <= depth;
+		if (first == OPEN_BYTE && !full) {
+			return;
+		}
+		for (int i = 1; i < brick.length; i++) {
+			if (brick[i] != first) {
+				return;
+			}
+		}
+		bricks[b] = first == OPEN_BYTE ? OPEN_BRICK : CLOSED_BRICK;
+		ownBricks--;
+	}
+	
+	/** The number of bricks with an array of their own */
+	public int getOwnBrickCount() {
+		return ownBricks;
+	}
+	
+	public int getBrickCount() {
+		return bricks.length;
+	}
+	
+	@Override
+	public long getFootprint() {
+		return estimateFootprint(bricks.length, ownBricks);
+	}
+	
+	/**
+	 * Estimates the heap taken by a lattice with the given number of bricks,
+	 * of which the given number have arrays of their own.
+	 */
+	public static long estimateFootprint(long bricks, long ownBricks) {
+		// A reference and an edited flag per brick, and the arrays
+		return bricks * (Integer.BYTES + 1L) + ownBricks * (SITES_PER_BRICK + 16L);
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+	
+}
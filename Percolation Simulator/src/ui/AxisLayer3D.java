@@ -36,6 +36,9 @@ public class AxisLayer3D extends Layer3D {
 		
 		setTransparent(true);
 		
+		// Only changes when the parent layer rotates
+		setCached(true);
+		
 		Brush.Builder builder = new Brush.Builder();
 		builder.setStrokeWeight(2f);
 		builder.setFill(Brush.RED);
@@ -88,12 +91,15 @@ public class AxisLayer3D extends Layer3D {
 		yLabel.draw(this);
 		zLabel.draw(this);
 		getGraphics().popMatrix();
-
-		// Copy rotation of parent Layer3D
-		setRotation(parentLayer.getRotation());
 		
 		super.beforeObjectsDrawn();
 	}
+	
+	@Override
+	public void update() {
+		// Copy rotation of parent Layer3D
+		setRotation(parentLayer.getRotation());
+	}
 
 	public void setAxisColors(int x, int y, int z) {
 		xLine.getBrush().setStroke(x);
@@ -102,6 +108,7 @@ public class AxisLayer3D extends Layer3D {
 		yLabel.getBrush().setFill(y);
 		zLine.getBrush().setStroke(z);
 		zLabel.getBrush().setFill(z);
+		markDirty();
 	}
 
 	public Layer3D getParentLayer() {
@@ -0,0 +1,87 @@
+package ui;
+
+import javax.swing.JButton;
+import javax.swing.JProgressBar;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+
+import net.miginfocom.swing.MigLayout;
+
+import utils.Progress;
+
+
+/**
+ * Shows the progress of the job that is currently running on the
+ * simulation thread, and lets the user cancel it. Hidden while
+ * no job is running.
+ */
+@SuppressWarnings("serial")
+public class JobProgressPanel extends javax.swing.JPanel {
+	
+	private JTextArea jobTextArea;
+	private JProgressBar progressBar;
+	private JButton cancelButton;
+	
+	private Timer pollTimer;
+	private Progress progress;
+	
+	public JobProgressPanel() {
+		setBackground(StyleManager.PANEL_BACKGROUND);
+		
+		MigLayout lay = new MigLayout();
+		setLayout(lay);
+		lay.setColumnConstraints("[]5[]5[]");
+		
+		jobTextArea = StyleManager.newHeaderTextArea("");
+		jobTextArea.setColumns(8);
+		
+		progressBar = new JProgressBar(0, 1000);
+		
+		cancelButton = StyleManager.newButton("Cancel");
+		cancelButton.addActionListener(e -> {
+			if (progress != null) {
+				progress.cancel();
+				cancelButton.setEnabled(false);
+			}
+		});
+		
+		add(jobTextArea);
+		add(progressBar, "growx");
+		add(cancelButton);
+		
+		// Poll instead of being notified, so the job never waits for the UI
+		pollTimer = new Timer(50, e -> {
+			if (progress != null) {
+				progressBar.setValue((int) (progress.get() * 1000f));
+			}
+		});
+		
+		setVisible(false);
+	}
+	
+	/**
+	 * Shows the progress of the given job. Must be called on the UI thread.
+	 */
+	public void jobStarted(String name, Progress progress) {
+		this.progress = progress;
+		jobTextArea.setText(name);
+		progressBar.setValue(0);
+		cancelButton.setEnabled(true);
+		pollTimer.start();
+		setVisible(true);
+	}
+	
+	/**
+	 * Hides this panel if the given job is the one being shown. Must be
+	 * called on the UI thread.
+	 */
+	public void jobFinished(Progress progress) {
+		if (this.progress != progress) {
+			return;
+		}
+		this.progress = null;
+		pollTimer.stop();
+		setVisible(false);
+	}
+	
+}
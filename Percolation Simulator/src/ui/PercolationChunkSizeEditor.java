@@ -1,27 +1,55 @@
 package ui;
 
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
 import net.miginfocom.swing.MigLayout;
 
 import ui.PercolationEditorPanel.SubPanel;
 
+import percolation.LatticePercolation;
+import percolation.PercolationChunk;
+import percolation.PercolationChunkInfo;
+import percolation.PercolationLayer;
+import percolation.PercolationStorage;
+
 import utils.Dimension3;
+import utils.Progress;
+import utils.Utils;
+import utils.Vec3;
 
 
 @SuppressWarnings("serial")
 public class PercolationChunkSizeEditor extends SubPanel 
 implements NumberChangeListener {
+	
+	/** How long the blocks take to move when a gap changes smoothly */
+	private static final long GAP_ANIMATION_MILLIS = 250;
+	/** The editor draws the chunk and steps it back */
+	private static final Set<PercolationStorage.Feature> FEATURES =
+			EnumSet.allOf(PercolationStorage.Feature.class);
+	/** A percolation that is neither drawn nor stepped back */
+	private static final Set<PercolationStorage.Feature> HEADLESS_FEATURES =
+			EnumSet.noneOf(PercolationStorage.Feature.class);
+	/** Chunks that would take more of the available heap than this are confirmed */
+	private static final double WARNING_HEAP_FRACTION = 0.5;
 
 	private NumberOnlyTextField sizeWidthField;
 	private NumberOnlyTextField sizeHeightField;
@@ -37,10 +65,20 @@ implements NumberChangeListener {
 	private JTextArea gapWidthTextArea;
 	private JTextArea gapHeightTextArea;
 	private JTextArea gapDepthTextArea;
+	private JCheckBox smoothGapsCheckBox;
+	
+	private JSlider clipWidthSlider;
+	private JSlider clipHeightSlider;
+	private JSlider clipDepthSlider;
+	private JTextArea clipWidthTextArea;
+	private JTextArea clipHeightTextArea;
+	private JTextArea clipDepthTextArea;
 	
 	private JButton updateButton;
 	private boolean chunkGapsChanged;
 	
+	private Dimension3 shownNumBlocks;
+	
 	public PercolationChunkSizeEditor(PercolationEditorPanel editorPanel) {
 		super(editorPanel);
 		
@@ -66,6 +104,8 @@ implements NumberChangeListener {
 		add(makeUpdateButtonPanel(), "span, wrap");
 
 		add(makeGapsPanel(), "span, center, wrap");
+		
+		add(makeClipPanel(), "span, center, wrap");
 	}
 	
 	private JPanel makeUpdateButtonPanel() {
@@ -122,6 +162,9 @@ implements NumberChangeListener {
 		gapWidthSlider = newSlider();
 		gapHeightSlider = newSlider();
 		gapDepthSlider = newSlider();
+		
+		// Animate the blocks to their new places
+		smoothGapsCheckBox = StyleManager.newCheckBox("Smooth", true);
 				
 		MigLayout lay = new MigLayout();
 		lay.setRowConstraints("[]0[]");
@@ -137,6 +180,36 @@ implements NumberChangeListener {
 		panel.add(StyleManager.newHeaderTextArea("Depth:"));
 		panel.add(gapDepthTextArea);
 		panel.add(gapDepthSlider, "span, wrap");
+		panel.add(smoothGapsCheckBox, "span, center, wrap");
+		
+		return panel;
+	}
+	
+	private JPanel makeClipPanel() {
+		// LABELS
+		clipWidthTextArea = StyleManager.newTextArea("100%");
+		clipHeightTextArea = StyleManager.newTextArea("100%");
+		clipDepthTextArea = StyleManager.newTextArea("100%");
+		
+		// CLIP: width, height, depth sliders (percent of the chunk shown)
+		clipWidthSlider = newClipSlider();
+		clipHeightSlider = newClipSlider();
+		clipDepthSlider = newClipSlider();
+		
+		MigLayout lay = new MigLayout();
+		lay.setRowConstraints("[]0[]");
+		lay.setColumnConstraints("[]7[]0[]");
+		JPanel panel = StyleManager.newPanel(lay);
+		panel.add(StyleManager.newHeaderTextArea("Clip"), "span, center, wrap");
+		panel.add(StyleManager.newHeaderTextArea("Width:"));
+		panel.add(clipWidthTextArea);
+		panel.add(clipWidthSlider, "span, wrap");
+		panel.add(StyleManager.newHeaderTextArea("Height:"));
+		panel.add(clipHeightTextArea);
+		panel.add(clipHeightSlider, "span, wrap");
+		panel.add(StyleManager.newHeaderTextArea("Depth:"));
+		panel.add(clipDepthTextArea);
+		panel.add(clipDepthSlider, "span, wrap");
 		
 		return panel;
 	}
@@ -174,6 +247,15 @@ implements NumberChangeListener {
 		return slider;
 	}
 	
+	/**
+	 * A JSlider for the clip panel (convenience)
+	 */
+	private JSlider newClipSlider() {
+		JSlider slider = StyleManager.newSlider(0, 100, 100);
+		slider.addChangeListener(e -> { resetClip(); });
+		return slider;
+	}
+	
 	/**
 	 * Returns true if one of the given {@link JTextField}s are empty.
 	 */
@@ -217,27 +299,178 @@ implements NumberChangeListener {
 	}
 	
 	private void resizeChunk() {
-		pchunk.reset();
-		
 		final int sx = sizeWidthField.getNumberInt();
 		final int sy = sizeHeightField.getNumberInt();
 		final int sz = sizeDepthField.getNumberInt();
+		if (!checkFootprint(new Dimension3(sx, sy, sz))) {
+			// Show the size the chunk still has
+			update();
+			return;
+		}
 		
-		pchunk.setNumBlocks(new Dimension3(sx, sy, sz));
-		pchunk.init();
-		pchunk.randomizeBlockTypes();
-		pchunk.populateTopRowWithWater();
+		editorPanel.runJob("Resizing", progress -> {
+			final PercolationChunk.State saved = pchunk.saveState();
+			try {
+				// Reuses the blocks that are already there
+				pchunk.resize(new Dimension3(sx, sy, sz));
+				pchunk.randomizeBlockTypes(progress.phase(0f, 0.3f));
+				pchunk.populateTopRowWithWater();
+				
+				// Update info
+				editorPanel.updatePercolationChunkInfo(progress.phase(0.3f, 1f));
+			} catch (CancellationException ex) {
+				// Go back to the old chunk
+				pchunk.resize(saved.getNumBlocks());
+				pchunk.restoreState(saved);
+				throw ex;
+			}
+			
+			// Enable/disable sliders
+			SwingUtilities.invokeLater(() -> {
+				gapWidthSlider.setEnabled(sx > 1);
+				gapHeightSlider.setEnabled(sy > 1);
+				gapDepthSlider.setEnabled(sz > 1);
+			});
+		});
+	}
+	
+	/**
+	 * Checks that a chunk of the given size fits in the heap before it is
+	 * made, refusing if it won't and asking first if it would take most of
+	 * what is left. When it is refused, percolating it without drawing it is
+	 * offered instead, if that fits.
+	 * @return true if the chunk should be made
+	 */
+	private boolean checkFootprint(Dimension3 numBlocks) {
+		final float p = pchunk.getP();
+		final PercolationStorage storage =
+				PercolationStorage.cheapest(numBlocks, p, FEATURES);
+		final long sites = (long) numBlocks.getWidth()
+				* (long) numBlocks.getHeight() * (long) numBlocks.getDepth();
+		final String size = String.format(Locale.ROOT, "A %d x %d x %d chunk "
+				+ "(%,d sites)", (int) numBlocks.getWidth(),
+				(int) numBlocks.getHeight(), (int) numBlocks.getDepth(), sites);
 		
-		// Update info
-		editorPanel.updatePercolationChunkInfo();
+		if (storage == null) {
+			refuse(size + " has too many sites to be drawn.", numBlocks, p);
+			return false;
+		}
 		
-		// Update
-		editorPanel.updateAll();
+		final long needed = storage.estimateFootprint(numBlocks, p);
+		// The blocks of the current chunk are reused
+		final long available = PercolationStorage.getAvailableHeap()
+				+ pchunk.getEstimatedFootprint();
+		if (needed > available) {
+			refuse(size + " would need about " + Utils.formatBytes(needed)
+					+ ", but only " + Utils.formatBytes(available)
+					+ " of memory is available.", numBlocks, p);
+			return false;
+		}
+		if (needed > available * WARNING_HEAP_FRACTION) {
+			final int answer = JOptionPane.showConfirmDialog(this, size
+					+ " would use about " + Utils.formatBytes(needed) + " of the "
+					+ Utils.formatBytes(available) + " of memory available,\n"
+					+ "which may make the program slow. Make it anyway?",
+					"Large Chunk", JOptionPane.YES_NO_OPTION,
+					JOptionPane.WARNING_MESSAGE);
+			return answer == JOptionPane.YES_OPTION;
+		}
+		return true;
+	}
+	
+	/**
+	 * Tells why a chunk of the given size can't be made, and offers to
+	 * percolate it without drawing it, on the cheapest lattice, if that fits
+	 * in the heap that is left.
+	 */
+	private void refuse(String reason, Dimension3 numBlocks, float p) {
+		final String message = reason + "\n" + describeHeadlessStorage(numBlocks, p);
+		final PercolationStorage headless =
+				PercolationStorage.cheapest(numBlocks, p, HEADLESS_FEATURES);
+		if (headless == null || headless.estimateFootprint(numBlocks, p)
+				> PercolationStorage.getAvailableHeap()) {
+			JOptionPane.showMessageDialog(this, message, "Chunk Too Large",
+					JOptionPane.ERROR_MESSAGE);
+			return;
+		}
 		
-		// Enable/disable sliders
-		gapWidthSlider.setEnabled(sx > 1);
-		gapHeightSlider.setEnabled(sy > 1);
-		gapDepthSlider.setEnabled(sz > 1);
+		final String run = "Percolate without drawing";
+		final Object[] options = { run, "Cancel" };
+		final int answer = JOptionPane.showOptionDialog(this, message,
+				"Chunk Too Large", JOptionPane.DEFAULT_OPTION,
+				JOptionPane.ERROR_MESSAGE, null, options, options[1]);
+		if (answer == 0) {
+			percolateHeadless(numBlocks, p, headless);
+		}
+	}
+	
+	/**
+	 * Randomizes and percolates a lattice of the given size stored as the
+	 * given storage, in the background, and shows the result. The chunk
+	 * being edited is left as it is.
+	 */
+	private void percolateHeadless(Dimension3 numBlocks, float p,
+			PercolationStorage storage) {
+		editorPanel.runJob("Percolating without drawing", progress -> {
+			final long start = System.nanoTime();
+			final LatticePercolation perc;
+			try {
+				perc = new LatticePercolation(storage.newLattice(numBlocks), p);
+				perc.setFlowRule(pchunk.getFlowRule());
+				perc.randomize(ThreadLocalRandom.current().nextLong(),
+						progress.phase(0f, 0.5f));
+				perc.populateTopRowWithWater();
+				
+				// The number of steps isn't known ahead of time
+				final Progress stepping = progress.phase(0.5f, 1f);
+				while (perc.stepForward() > 0) {
+					stepping.checkCancelled();
+					stepping.set(1f - 1f / (perc.getCurrentStep() + 1));
+				}
+			} catch (OutOfMemoryError e) {
+				SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+						this, "Ran out of memory percolating the "
+						+ storage.toString().toLowerCase(Locale.ROOT) + " lattice.",
+						"Chunk Too Large", JOptionPane.ERROR_MESSAGE));
+				return;
+			}
+			final double seconds = (System.nanoTime() - start) / 1e9;
+			
+			final String result = String.format(Locale.ROOT,
+					"%d x %d x %d, p = %.4f, as %s (%s):%n"
+					+ "%s after %,d steps, with %,d water sites (%.3f s).",
+					(int) numBlocks.getWidth(), (int) numBlocks.getHeight(),
+					(int) numBlocks.getDepth(), p,
+					storage.toString().toLowerCase(Locale.ROOT),
+					Utils.formatBytes(perc.getFootprint()),
+					perc.percolates() ? "Percolates" : "Does not percolate",
+					perc.getCurrentStep(), perc.getWaterSites(), seconds);
+			SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+					this, result, "Percolation Result",
+					JOptionPane.INFORMATION_MESSAGE));
+		});
+	}
+	
+	/**
+	 * Describes what a lattice of the given size would take without
+	 * drawing it, as the benchmarks run it.
+	 */
+	private static String describeHeadlessStorage(Dimension3 numBlocks, float p) {
+		final StringBuilder sb = new StringBuilder("Without drawing it, it would take");
+		boolean first = true;
+		for (PercolationStorage storage : PercolationStorage.values()) {
+			if (storage.supports(FEATURES) || !storage.canStore(numBlocks)) {
+				continue;
+			}
+			sb.append(first ? " about " : ", or ")
+				.append(Utils.formatBytes(storage.estimateFootprint(numBlocks, p)))
+				.append(" as ").append(storage.toString().toLowerCase(Locale.ROOT));
+			first = false;
+		}
+		if (first) {
+			return "It is too large to percolate in any way.";
+		}
+		return sb.append('.').toString();
 	}
 	
 	private void resetGaps() {
@@ -247,22 +480,58 @@ implements NumberChangeListener {
 		gapDepthTextArea.setText("" + gapDepthSlider.getValue());
 					
 		// Update chunk
-		pchunk.setSpacing(new Dimension3(
+		Dimension3 spacing = new Dimension3(
 			gapWidthSlider.getValue(),
 			gapHeightSlider.getValue(),
 			gapDepthSlider.getValue()
+		);
+		final boolean smooth = smoothGapsCheckBox.isSelected();
+		editorPanel.getPercolationSimulation().execute(() -> {
+			if (smooth) {
+				pchunk.animateSpacing(spacing, GAP_ANIMATION_MILLIS);
+			} else {
+				pchunk.setSpacing(spacing);
+			}
+		});
+	}
+	
+	private void resetClip() {
+		// Update labels
+		clipWidthTextArea.setText(clipWidthSlider.getValue() + "%");
+		clipHeightTextArea.setText(clipHeightSlider.getValue() + "%");
+		clipDepthTextArea.setText(clipDepthSlider.getValue() + "%");
+		
+		PercolationLayer layer = editorPanel.getPercolationLayer();
+		if (layer == null)
+			return;
+		
+		// Update layer
+		layer.setClipFractions(new Vec3(
+			clipWidthSlider.getValue() / 100f,
+			clipHeightSlider.getValue() / 100f,
+			clipDepthSlider.getValue() / 100f
 		));
 	}
 	
+	@Override
+	protected boolean needsUpdate(PercolationChunkInfo previous,
+			PercolationChunkInfo current) {
+		// Doesn't show anything that changes while stepping. The gaps are
+		// only ever changed from this panel, so they're already shown.
+		return !pchunk.getNumBlocks().equals(shownNumBlocks);
+	}
+	
 	@Override
 	public void update() {
 		Dimension3 size = pchunk.getNumBlocks();
+		// Not the spacing that is on its way there
+		Dimension3 gap = pchunk.getTargetSpacing();
+		shownNumBlocks = new Dimension3(size);
 				
 		sizeWidthField.setText("" + (int) size.getWidth());
 		sizeHeightField.setText("" + (int) size.getHeight());
 		sizeDepthField.setText("" + (int) size.getDepth());
-		
-		Dimension3 gap = pchunk.getSpacing();
+
 
 		gapWidthSlider.setValue((int) gap.getWidth());
 		gapWidthTextArea.setText("" + (int) gap.getWidth());
@@ -9,10 +9,10 @@ import javax.swing.JTextArea;
 import net.miginfocom.swing.MigLayout;
 
 import percolation.PercolationBlock.BLOCK_TYPE;
+import percolation.PercolationChunkUtils;
 
 import ui.PercolationEditorPanel.SubPanel;
 
-import utils.Dimension3;
 import utils.Utils;
 
 import static utils.Utils.round;
@@ -87,8 +87,7 @@ implements NumberChangeListener {
 		pTextField.setText("" + p);
 		
 		// Update percolation label
-		Dimension3 psize = pchunk.getNumBlocks();
-		final int faceArea = (int) (psize.getWidth() * psize.getDepth());
+		final int faceArea = (int) PercolationChunkUtils.getOutflowArea(pchunk);
 		final float numPercedBlocks = getPercolatedWaterBlocks(pchunk).size();
 		final float percentPerced = numPercedBlocks / faceArea * 100f;
 		final float roundedPercent =  Utils.round(percentPerced, 1);
@@ -7,8 +7,12 @@ import static utils.Utils.round;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.event.ActionListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -21,12 +25,14 @@ import javax.swing.table.TableColumnModel;
 
 import net.miginfocom.swing.MigLayout;
 
+import percolation.FlowRule;
 import percolation.PercolationBlock.BLOCK_TYPE;
+import percolation.PercolationChunk;
 import percolation.PercolationChunkInfo.PROPERTY;
 import percolation.PercolationChunkInfo;
+import percolation.PercolationChunkUtils;
 
 import ui.PercolationEditorPanel.SubPanel;
-import utils.Dimension3;
 import utils.Utils;
 
 
@@ -38,6 +44,11 @@ implements NumberChangeListener {
 	private JButton updateButton;
 	private JButton randomizeButton;
 	
+	private JComboBox<String> flowBox;
+	private Map<String, FlowRule> flowBoxValues;
+	/** Set while update() selects the chunk's rule, which isn't a change */
+	private boolean updatingFlowBox;
+	
 	private JTable dataTable;
 	private CustomTableModel tableModel;
 
@@ -53,6 +64,7 @@ implements NumberChangeListener {
 		add(makePPanel());
 		add(makeUpdateButton());
 		add(makeRandomizeButton(), "wrap");
+		add(makeFlowPanel(), "span, wrap");
 		add(new JScrollPane(makeDataTable()), "span");
 	}
 	
@@ -62,10 +74,19 @@ implements NumberChangeListener {
 		final float p = pchunk.getP();
 		pTextField.setText("" + p);
 		
+		// Select the chunk's flow rule, if it is one of ours
+		for (Map.Entry<String, FlowRule> entry : flowBoxValues.entrySet()) {
+			if (entry.getValue() == pchunk.getFlowRule()) {
+				updatingFlowBox = true;
+				flowBox.setSelectedItem(entry.getKey());
+				updatingFlowBox = false;
+			}
+		}
+		
 		// UPDATE TABLE COLUMNS
 				
 		// Update the "Current" column
-		PercolationChunkInfo currentInfo = new PercolationChunkInfo(pchunk);
+		PercolationChunkInfo currentInfo = editorPanel.getCurrentPercolationChunkInfo();
 		updateColumn(1, currentInfo);
 		
 		// Update "Initial" column
@@ -99,6 +120,62 @@ implements NumberChangeListener {
 		return pPanel;
 	}
 	
+	private JPanel makeFlowPanel() {
+		JTextArea flowTextArea = newHeaderTextArea("Flow:");
+		flowTextArea.setColumns(3);
+		
+		// Where water flows to. The gravity rules also move the faces water
+		// comes in through and percolates to.
+		flowBoxValues = new LinkedHashMap<>();
+		flowBoxValues.put("Sideways and down", FlowRule.SIDEWAYS_AND_DOWN);
+		flowBoxValues.put("6 neighbours", FlowRule.ISOTROPIC_6);
+		flowBoxValues.put("18 neighbours", FlowRule.NEIGHBOURS_18);
+		flowBoxValues.put("26 neighbours", FlowRule.NEIGHBOURS_26);
+		flowBoxValues.put("Gravity +x", FlowRule.withGravity(1f, 0f, 0f));
+		flowBoxValues.put("Gravity -x", FlowRule.withGravity(-1f, 0f, 0f));
+		flowBoxValues.put("Gravity +y (up)", FlowRule.withGravity(0f, 1f, 0f));
+		flowBoxValues.put("Gravity +z", FlowRule.withGravity(0f, 0f, 1f));
+		flowBoxValues.put("Gravity -z", FlowRule.withGravity(0f, 0f, -1f));
+		
+		flowBox = StyleManager.newComboBox();
+		for (String key : flowBoxValues.keySet())
+			flowBox.addItem(key);
+		
+		flowBox.addActionListener(e -> {
+			if (updatingFlowBox) {
+				return;
+			}
+			final FlowRule rule = flowBoxValues.get(flowBox.getSelectedItem());
+			if (rule == pchunk.getFlowRule()) {
+				return;
+			}
+			editorPanel.runJob("Changing the flow", progress -> {
+				final PercolationChunk.State saved = pchunk.saveState();
+				final FlowRule oldRule = pchunk.getFlowRule();
+				try {
+					// Start over, from the new top row
+					pchunk.setFlowRule(rule);
+					pchunk.clearWater();
+					pchunk.populateTopRowWithWater();
+					editorPanel.updatePercolationChunkInfo(progress);
+				} catch (CancellationException ex) {
+					pchunk.setFlowRule(oldRule);
+					pchunk.restoreState(saved);
+					throw ex;
+				}
+			});
+		});
+		
+		MigLayout lay = new MigLayout();
+		lay.setColumnConstraints("[]10[]");
+		
+		JPanel flowPanel = StyleManager.newPanel(lay);
+		flowPanel.add(flowTextArea, "west");
+		flowPanel.add(flowBox, "east");
+		
+		return flowPanel;
+	}
+	
 	private NumberOnlyTextField makePTextField() {
 		
 		pTextField = StyleManager.newNumberOnlyTextField();
@@ -124,11 +201,18 @@ implements NumberChangeListener {
 		randomizeButton = StyleManager.newButton("Randomize");
 		
 		randomizeButton.addActionListener(e -> {
-			pchunk.randomizeBlockTypes();
-			pchunk.populateTopRowWithWater();
-			// Update
-			editorPanel.updatePercolationChunkInfo();
-			editorPanel.updateAll();
+			editorPanel.runJob("Randomizing", progress -> {
+				final PercolationChunk.State saved = pchunk.saveState();
+				try {
+					pchunk.randomizeBlockTypes(progress.phase(0f, 0.3f));
+					pchunk.populateTopRowWithWater();
+					// Update
+					editorPanel.updatePercolationChunkInfo(progress.phase(0.3f, 1f));
+				} catch (CancellationException ex) {
+					pchunk.restoreState(saved);
+					throw ex;
+				}
+			});
 		});
 		
 		return randomizeButton;
@@ -144,9 +228,9 @@ implements NumberChangeListener {
 			}
 			
 			final float newP = pTextField.getNumberFloat();
-			pchunk.setP(newP);
+			editorPanel.getPercolationSimulation().execute(() -> pchunk.setP(newP));
 			
-			// Randomize
+			// Randomize (after P is set)
 			randomizeButton.doClick(0);
 			
 			// Disable update button
@@ -179,8 +263,7 @@ implements NumberChangeListener {
 	 */
 	private String formatPercolation(PercolationChunkInfo info) {
 		
-		Dimension3 totalBlocks = pchunk.getNumBlocks();
-		final int faceArea = (int) (totalBlocks.getWidth() * totalBlocks.getDepth());
+		final int faceArea = (int) PercolationChunkUtils.getOutflowArea(pchunk);
 		final float numPerced = info.getProperty(PROPERTY.PERCOLATED_BLOCKS);
 		final float percentPerced = numPerced / faceArea * 100f;
 		final float roundedPercent =  Utils.round(percentPerced, 1);
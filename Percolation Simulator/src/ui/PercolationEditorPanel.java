@@ -1,29 +1,52 @@
 package ui;
 
 import java.awt.Dimension;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import percolation.PercolationChunk;
 import percolation.PercolationChunkInfo;
+import percolation.PercolationLayer;
+import percolation.PercolationSimulation;
+
+import utils.Progress;
 
 @SuppressWarnings("serial")
 public class PercolationEditorPanel extends JPanel {
 
 	private PercolationChunk pchunk;
+	private PercolationLayer percLayer;
+	private PercolationSimulation simulation;
 	
 	private PercolationChunkSizeEditor sizeEditorPanel;
 //	private PercolationChunkStatsPanel statsPanel;
 	private PercolationChunkStatsPanel2 statsPanel2;
 	private PercolationPlayerPanel playerPanel;
+	private JobProgressPanel jobPanel;
+	
+	// Computed on the simulation thread, read on the UI thread
+	private volatile PercolationChunkInfo currentInfo, initialInfo, finalInfo;
+	// Incremented every time initialInfo and finalInfo are recomputed
+	private volatile int summaryVersion;
+	// Listens to the chunk, used on the simulation thread
+	private volatile PercolationChunkInfo.Tracker infoTracker;
 	
-	private PercolationChunkInfo initialInfo, finalInfo;
+	private UpdateScheduler updateScheduler;
+	// Filled in on the simulation thread, then swapped with currentInfo.
+	// Only one update is in flight at a time, so they're never shared.
+	private PercolationChunkInfo pendingInfo;
+	private int shownSummaryVersion = -1;
 	
 	public PercolationEditorPanel(Dimension parentSize, PercolationChunk pc) {
 		pchunk = pc;
 		
+		currentInfo = new PercolationChunkInfo();
+		pendingInfo = new PercolationChunkInfo();
 		initialInfo = new PercolationChunkInfo();
 		finalInfo = new PercolationChunkInfo();
 	
@@ -63,9 +86,16 @@ public class PercolationEditorPanel extends JPanel {
 				BorderFactory.createLoweredSoftBevelBorder()
 		));
 		
+		// JobProgressPanel
+		
+		jobPanel = new JobProgressPanel();
+		
 		add(sizeEditorPanel);		
 		add(playerPanel);
 		add(statsPanel2);
+		add(jobPanel);
+		
+		updateScheduler = new UpdateScheduler(this::startUpdate);
 		
 		// Initial update
 		updateAll();
@@ -76,45 +106,201 @@ public class PercolationEditorPanel extends JPanel {
 		return pchunk;
 	}
 	
-	public void setPercolationChunk(PercolationChunk chunk) {
-		pchunk = chunk;
+	public PercolationSimulation getPercolationSimulation() {
+		return simulation;
+	}
+	
+	/**
+	 * Sets the {@link PercolationSimulation} whose {@link PercolationChunk}
+	 * this panel edits.
+	 */
+	public void setPercolationSimulation(PercolationSimulation sim) {
+		simulation = sim;
+		pchunk = sim.getPercolationChunk();
+		
+		// Count the blocks as the chunk changes, not on every update
+		if (infoTracker != null) {
+			infoTracker.getChunk().removeChangeListener(infoTracker);
+		}
+		infoTracker = new PercolationChunkInfo.Tracker(pchunk);
+		pchunk.addChangeListener(infoTracker);
 		
 		sizeEditorPanel.setPercolationChunk(pchunk);
 		playerPanel.setPercolationChunk(pchunk);
 		statsPanel2.setPercolationChunk(pchunk);
 		
 		// Update info
-		updatePercolationChunkInfo();
-		
-		updateAll();
+		runOnSimulation(this::updatePercolationChunkInfo);
+	}
+	
+	/**
+	 * Runs the given action on the simulation thread, and then
+	 * updates all of the panels.
+	 */
+	public void runOnSimulation(Runnable action) {
+		simulation.execute(() -> {
+			action.run();
+			updateAll();
+		});
+	}
+	
+	public PercolationLayer getPercolationLayer() {
+		return percLayer;
+	}
+	
+	public void setPercolationLayer(PercolationLayer layer) {
+		percLayer = layer;
+	}
+	
+	/**
+	 * Runs the given job on the simulation thread while showing its
+	 * progress, and then updates all of the panels once. The user can
+	 * cancel the job, in which case it should throw a
+	 * {@link CancellationException} (see {@link Progress#checkCancelled()})
+	 * or return, after leaving the chunk in a valid state.
+	 */
+	public void runJob(String name, Consumer<Progress> job) {
+		final Progress progress = new Progress();
+		simulation.execute(() -> {
+			SwingUtilities.invokeLater(() -> jobPanel.jobStarted(name, progress));
+			try {
+				job.accept(progress);
+			} catch (CancellationException e) {
+				// The job cleaned up after itself
+			} finally {
+				SwingUtilities.invokeLater(() -> jobPanel.jobFinished(progress));
+				updateAll();
+			}
+		});
 	}
 	
+	/**
+	 * Updates all of the panels with the current state of the chunk.
+	 * Can be called from any thread, as often as needed: requests are
+	 * coalesced, and the panels are updated at most
+	 * {@link #getUpdatesPerSecond()} times per second.
+	 */
 	public void updateAll() {
-		if (pchunk != null && pchunk.isInitialized()) {
-			sizeEditorPanel.update();
-//			statsPanel.update();
-			playerPanel.update();
-			statsPanel2.update();
+		updateScheduler.requestUpdate();
+	}
+	
+	/**
+	 * Sets the maximum number of times per second that the panels are updated.
+	 */
+	public void setUpdatesPerSecond(int updatesPerSecond) {
+		updateScheduler.setUpdatesPerSecond(updatesPerSecond);
+	}
+	
+	public int getUpdatesPerSecond() {
+		return updateScheduler.getUpdatesPerSecond();
+	}
+	
+	// Called by the UpdateScheduler on the UI thread
+	private void startUpdate() {
+		if (simulation == null) {
+			updateScheduler.updateFinished();
+			return;
 		}
+		final PercolationChunkInfo info = pendingInfo;
+		final PercolationChunkInfo.Tracker tracker = infoTracker;
+		simulation.execute(() -> {
+			// Read the chunk here, on the simulation thread, and
+			// update the panels on the UI thread
+			final boolean read = tracker.getChunk().isInitialized();
+			if (read) {
+				tracker.get(info);
+			}
+			SwingUtilities.invokeLater(() -> finishUpdate(read ? info : null));
+		});
 	}
 	
+	private void finishUpdate(PercolationChunkInfo info) {
+		try {
+			if (info == null) {
+				return;
+			}
+			PercolationChunkInfo previous = currentInfo;
+			currentInfo = info;
+			pendingInfo = previous;
+			
+			// Everything depends on the initial and final info
+			final int summary = summaryVersion;
+			final boolean all = summary != shownSummaryVersion;
+			shownSummaryVersion = summary;
+			
+			update(sizeEditorPanel, all, previous, info);
+//			update(statsPanel, all, previous, info);
+			update(playerPanel, all, previous, info);
+			update(statsPanel2, all, previous, info);
+		} finally {
+			updateScheduler.updateFinished();
+		}
+	}
+	
+	private static void update(SubPanel panel, boolean force,
+			PercolationChunkInfo previous, PercolationChunkInfo current) {
+		if (force || panel.needsUpdate(previous, current)) {
+			panel.update();
+		}
+	}
+	
+	/**
+	 * Records the initial and final state of the chunk's percolation.
+	 * Must be called on the simulation thread.
+	 */
 	public void updatePercolationChunkInfo() {
+		updatePercolationChunkInfo(Progress.NONE);
+	}
+	
+	/**
+	 * Same as {@link #updatePercolationChunkInfo()}, but can be cancelled
+	 * through the given {@link Progress}, in which case the chunk is returned
+	 * to its current step, the recorded info is left as it was, and a
+	 * {@link CancellationException} is thrown.
+	 */
+	public void updatePercolationChunkInfo(Progress progress) {
+		if (!simulation.isSimulationThread())
+			throw new IllegalStateException("Not on the simulation thread");
 		if (!pchunk.isInitialized())
 			throw new IllegalStateException("PercolationChunk not initialized");
 		
 		// INITIAL INFO
-		initialInfo.set(pchunk);
+		PercolationChunkInfo initial = new PercolationChunkInfo();
+		infoTracker.get(initial);
 
 		// FINAL INFO
 		
 		// Fast forward until the end of the percolation process, record it,
-		// and then go back to the current step
+		// and then go back to the current step. Nobody sees these steps, so
+		// they aren't recorded as steps of the simulation.
 		final int currStep = pchunk.getCurrentStep();
-		while (pchunk.stepForward() > 0);
-		finalInfo.set(pchunk);
-		while (pchunk.getCurrentStep() > currStep) {
-			pchunk.stepBack();
+		PercolationChunkInfo fin;
+		pchunk.setLookingAhead(true);
+		try {
+			while (pchunk.stepForward() > 0) {
+				// The number of steps is not known in advance
+				progress.set(1f - 1f / (pchunk.getCurrentStep() - currStep + 1));
+				progress.checkCancelled();
+			}
+			fin = new PercolationChunkInfo(pchunk);
+		} finally {
+			while (pchunk.getCurrentStep() > currStep) {
+				pchunk.stepBack();
+			}
+			pchunk.setLookingAhead(false);
 		}
+		
+		initialInfo = initial;
+		finalInfo = fin;
+		summaryVersion++;
+		progress.set(1f);
+	}
+	
+	/**
+	 * Returns the state of the chunk as of the last update of the panels.
+	 */
+	public PercolationChunkInfo getCurrentPercolationChunkInfo() {
+		return currentInfo;
 	}
 	
 	public PercolationChunkInfo getInitialPercolationChunkInfo() {
@@ -138,6 +324,16 @@ public class PercolationEditorPanel extends JPanel {
 		
 		public abstract void update();
 		
+		/**
+		 * Returns true if this panel shows something that changed between
+		 * the two given infos. By default, any change in the current info
+		 * updates the panel.
+		 */
+		protected boolean needsUpdate(PercolationChunkInfo previous,
+				PercolationChunkInfo current) {
+			return !previous.hasSameProperties(current);
+		}
+		
 		public void setPercolationChunk(PercolationChunk chunk) {
 			pchunk = chunk;
 		}
@@ -11,12 +11,12 @@ import javax.swing.JButton;
 import javax.swing.JPanel;
 import javax.swing.JTextArea;
 import javax.swing.JToggleButton;
-import javax.swing.Timer;
 
 import net.miginfocom.swing.MigLayout;
 
 import percolation.PercolationChunkInfo;
 import percolation.PercolationChunkInfo.PROPERTY;
+import percolation.PercolationSimulation;
 
 import ui.PercolationEditorPanel.SubPanel;
 
@@ -29,7 +29,7 @@ implements NumberChangeListener {
 	private JButton stepBackButton, stepForwardButton, restartButton, 
 					finishButton;
 	private JButton timerPauseButton;
-	private JToggleButton timerBackButton, timerForwardButton;
+	private JToggleButton timerBackButton, timerForwardButton, turboButton;
 	private JTextArea delayTextArea;
 	private NumberOnlyTextField delayField;
 	
@@ -37,11 +37,16 @@ implements NumberChangeListener {
 	
 	private JPanel timerPanel;
 	
-	private Timer timer;
+	/** Delay between steps while playing, in milliseconds */
+	private int timerDelay;
+	/** Time spent stepping per frame while playing in turbo, in milliseconds */
+	private int frameBudget;
 	private boolean timerIsPaused;
+	/** Read on the simulation thread while playing */
+	private volatile boolean timerForward;
 	
 	/** How many blocks were added in the last step. */
-	private int blocksAddedLast;
+	private volatile int blocksAddedLast;
 	
 	public PercolationPlayerPanel(PercolationEditorPanel editorPanel) {
 		super(editorPanel);
@@ -61,7 +66,9 @@ implements NumberChangeListener {
 		restartIcon = new ImageIcon(restartURL);
 				
 		timerIsPaused = true;
-		makeTimer();
+		timerForward = true;
+		timerDelay = 1000;
+		frameBudget = (int) PercolationSimulation.DEFAULT_FRAME_BUDGET_MILLIS;
 				
 		MigLayout lay = new MigLayout();
 		setLayout(lay);
@@ -87,7 +94,7 @@ implements NumberChangeListener {
 
 		// Update step label
 		final int totalSteps = (int) finalInfo.getProperty(PROPERTY.CURRENT_STEP);
-		final int currStep = pchunk.getCurrentStep();
+		final int currStep = getCurrentStep();
 		stepValueLabel.setText(currStep + " / " + totalSteps);
 		
 		// Update blocks added label
@@ -101,10 +108,10 @@ implements NumberChangeListener {
 		
 		// Update buttons
 		stepForwardButton.setEnabled(!finishedPercolation());
-		stepBackButton.setEnabled(pchunk.getCurrentStep() > 0);
+		stepBackButton.setEnabled(currStep > 0);
 
 		// Update restart button
-		restartButton.setEnabled(pchunk.getCurrentStep() > 0);
+		restartButton.setEnabled(currStep > 0);
 		
 		handleTimerPauseButtonState();
 				
@@ -113,7 +120,7 @@ implements NumberChangeListener {
 		if (!timerPauseButton.isEnabled()) {
 			// Stop the timer
 			timerIsPaused = true;
-			timer.stop();
+			getSimulation().stopPlayback();
 			// Reset image of pause button
 			timerPauseButton.setIcon(playIcon);
 			// Enable delay field
@@ -121,40 +128,89 @@ implements NumberChangeListener {
 		}
 	}
 	
+	@Override
+	protected boolean needsUpdate(PercolationChunkInfo previous,
+			PercolationChunkInfo current) {
+		return previous.getProperty(PROPERTY.CURRENT_STEP)
+				!= current.getProperty(PROPERTY.CURRENT_STEP);
+	}
+	
 	@Override
 	public void numberChanged(NumberOnlyTextField field, float oldNum, float newNum) {
 		// When delay field changes
-		timer.setDelay(field.getNumberInt());
+		if (turboButton.isSelected()) {
+			// Less than 1 ms would be no steps at all
+			frameBudget = Math.max(1, field.getNumberInt());
+		} else {
+			timerDelay = field.getNumberInt();
+		}
+	}
+	
+	private PercolationSimulation getSimulation() {
+		return editorPanel.getPercolationSimulation();
+	}
+	
+	/**
+	 * The current step as of the last update
+	 */
+	private int getCurrentStep() {
+		PercolationChunkInfo info = editorPanel.getCurrentPercolationChunkInfo();
+		return (int) info.getProperty(PROPERTY.CURRENT_STEP);
 	}
 	
 	private boolean finishedPercolation() {
 		PercolationChunkInfo finalInfo = editorPanel.getFinalPercolationChunkInfo();
 		final int totalSteps = (int) finalInfo.getProperty(PROPERTY.CURRENT_STEP);
-		final int currStep = pchunk.getCurrentStep();
+		final int currStep = getCurrentStep();
 		
 		return currStep == totalSteps;
 	}
 	
+	/*
+	 * The following methods must be called on the simulation thread
+	 */
+	
 	private int stepForward() {
 		blocksAddedLast = pchunk.stepForward();
-
-		// Update other panels
-		editorPanel.updateAll();
 		return blocksAddedLast;
 	}
 	
 	private int stepBack() {
 		final int numRemoved = pchunk.stepBack();
 		blocksAddedLast = -numRemoved; // Negate
+		return numRemoved;
+	}
+	
+	private void timerStep() {
+		if (timerForward) {
+			stepForward();
+		} else {
+			stepBack();
+		}
 		// Update other panels
 		editorPanel.updateAll();
-		return numRemoved;
+	}
+	
+	private boolean turboStep() {
+		final int num = timerForward ? stepForward() : stepBack();
+		// Update other panels
+		editorPanel.updateAll();
+		return num > 0;
+	}
+	
+	private void startPlayback() {
+		if (turboButton.isSelected()) {
+			getSimulation().setFrameBudgetMillis(frameBudget);
+			getSimulation().startFramePlayback(this::turboStep);
+		} else {
+			getSimulation().startPlayback(this::timerStep, timerDelay);
+		}
 	}
 	
 	private void handleTimerPauseButtonState() {
 		timerPauseButton.setEnabled(
 			// If timer is going backward
-			(timerBackButton.isSelected() && pchunk.getCurrentStep() > 0) 
+			(timerBackButton.isSelected() && getCurrentStep() > 0) 
 			||
 			// If timer is going forward
 			(timerForwardButton.isSelected() && !finishedPercolation())
@@ -165,18 +221,6 @@ implements NumberChangeListener {
 		finishButton.setEnabled(timerPauseButton.isEnabled());
 	}
 	
-	private void makeTimer() {
-		timer = new Timer(1000, null);
-		timer.setInitialDelay(0);
-		timer.addActionListener(e -> {
-			if (timerForwardButton.isSelected()) {
-				stepForward();
-			} else {
-				stepBack();
-			}
-		});
-	}
-	
 	private JPanel makeStepButtonPanel() {
 		JPanel buttonPanel = StyleManager.newPanel();
 		stepBackButton = StyleManager.newButton("Step Back");
@@ -191,17 +235,18 @@ implements NumberChangeListener {
 		buttonPanel.add(restartButton);
 		
 		stepForwardButton.addActionListener(e -> {
-			stepForward();
+			editorPanel.runOnSimulation(this::stepForward);
 		});
 		
 		stepBackButton.addActionListener(e -> {
-			stepBack();
+			editorPanel.runOnSimulation(this::stepBack);
 		});
 		
 		restartButton.addActionListener(e -> {
-			pchunk.clearWater();
-			pchunk.populateTopRowWithWater();
-			editorPanel.updateAll();
+			editorPanel.runOnSimulation(() -> {
+				pchunk.clearWater();
+				pchunk.populateTopRowWithWater();
+			});
 		});
 		
 		return buttonPanel;
@@ -219,30 +264,55 @@ implements NumberChangeListener {
 		delayField = StyleManager.newNumberOnlyTextField();
 		delayField.setAllowNegatives(false); // No such thing as negative time (yet)
 		delayField.setAllowDecimals(false);
-		delayField.setText("" + timer.getDelay());
+		delayField.setText("" + timerDelay);
 		delayField.getNumberChangeListeners().add(this);
 		
 		// Timer back and forward buttons
 		timerBackButton = StyleManager.newToggleButton("Backward", false);
 		timerBackButton.addActionListener(e -> {
+			timerForward = false;
 			handleTimerPauseButtonState();
 		});
 		
 		timerForwardButton = StyleManager.newToggleButton("Forward", true);
 		timerForwardButton.addActionListener(e -> {
+			timerForward = true;
 			handleTimerPauseButtonState();
 		});
 		
 		ButtonGroup group = new ButtonGroup();
 		group.add(timerBackButton);
 		group.add(timerForwardButton);
+		
+		// Turbo steps as much as fits in every frame instead of waiting
+		turboButton = StyleManager.newToggleButton("Turbo", false);
+		turboButton.setToolTipText("Step as fast as the frame rate allows");
+		turboButton.addActionListener(e -> {
+			final boolean turbo = turboButton.isSelected();
+			delayTextArea.setText(turbo ? "Budget (ms):" : "Delay (ms):");
+			delayField.setText("" + (turbo ? frameBudget : timerDelay));
+			if (!timerIsPaused) {
+				startPlayback();
+			}
+		});
 
 		finishButton = StyleManager.newButton("Finish");
 		finishButton.addActionListener(e -> {
-			if (timerForwardButton.isSelected())
-				while (stepForward() > 0);
-			else
-				while (stepBack() > 0);
+			final boolean forward = timerForwardButton.isSelected();
+			final int totalSteps = (int) editorPanel.getFinalPercolationChunkInfo()
+					.getProperty(PROPERTY.CURRENT_STEP);
+			// Every step is a valid state, so cancelling just stops here
+			editorPanel.runJob("Finishing", progress -> {
+				final int start = pchunk.getCurrentStep();
+				final int target = forward ? totalSteps : 0;
+				while (!progress.isCancelled()
+						&& (forward ? stepForward() : stepBack()) > 0) {
+					if (target != start) {
+						progress.set((float) (pchunk.getCurrentStep() - start)
+								/ (target - start));
+					}
+				}
+			});
 		});
 		
 		// Timer pause button
@@ -255,7 +325,7 @@ implements NumberChangeListener {
 				// Update icon
 				timerPauseButton.setIcon(playIcon);
 				// Update timer
-				timer.stop();
+				getSimulation().stopPlayback();
 				// Enable delay textfield
 				delayField.setEnabled(true);
 			} else {
@@ -263,7 +333,7 @@ implements NumberChangeListener {
 				// Update pause button icon
 				timerPauseButton.setIcon(pauseIcon);
 				// Update timer
-				timer.start();
+				startPlayback();
 				// Disable delay textfield
 				delayField.setEnabled(false);
 			}
@@ -274,7 +344,8 @@ implements NumberChangeListener {
 		timerPanel.add(timerBackButton);
 		timerPanel.add(timerPauseButton);
 		timerPanel.add(timerForwardButton, "wrap");
-		timerPanel.add(finishButton, "cell 0 2, center, span");
+		timerPanel.add(turboButton, "cell 0 2");
+		timerPanel.add(finishButton, "cell 1 2, center, span");
 				
 		return timerPanel;
 	}
@@ -0,0 +1,234 @@
+package ui;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+
+import graphics.Brush;
+import graphics.Canvas;
+import graphics.Layer;
+import graphics.Layer2D;
+
+import percolation.PercolationChunk;
+import percolation.PercolationLayer;
+
+import processing.core.PGraphics;
+
+import utils.Dimension;
+import utils.Vec2;
+
+/**
+ * Shows how the time of each frame is spent: the frame rate, how long
+ * each {@link Layer} takes to draw, how fast the simulation steps, and how
+ * much memory is used and allocated, with a sparkline of the recent frame
+ * times. The numbers are averaged over a quarter of a second.
+ */
+public class PerformanceOverlay extends Layer2D {
+
+	public static final Dimension SIZE = new Dimension(230f, 190f);
+
+	private static final long SAMPLE_INTERVAL_NANOS = 250_000_000L;
+	private static final int HISTORY_LENGTH = 120;
+	/** The frame time the sparkline is scaled to at least (60 fps) */
+	private static final float FRAME_BUDGET_MILLIS = 1000f / 60f;
+	private static final float TEXT_SIZE = 12f;
+	private static final float LINE_HEIGHT = 14f;
+	private static final float MARGIN = 8f;
+	private static final float SPARKLINE_HEIGHT = 30f;
+
+	private final PercolationLayer percLayer;
+	private final com.sun.management.ThreadMXBean threadBean;
+
+	// Sums over the current sample interval
+	private long[] layerNanos;
+	private int framesSampled;
+	private int lastDrawnFrame;
+
+	// Totals at the start of the current sample interval
+	private long sampleStartNanos;
+	private long steps, visitedSites, allocatedBytes, gcMillis;
+
+	/** Total draw time of the layers in the recent frames, in milliseconds */
+	private final float[] history;
+	private int historyIndex;
+
+	private String[] lines;
+
+	public PerformanceOverlay(Canvas parent, PercolationLayer percLayer, Vec2 loc) {
+		super(parent, loc, SIZE);
+		this.percLayer = percLayer;
+
+		threadBean = (com.sun.management.ThreadMXBean)
+				ManagementFactory.getThreadMXBean();
+		layerNanos = new long[0];
+		history = new float[HISTORY_LENGTH];
+		lines = new String[0];
+	}
+
+	@Override
+	public void init() {
+		super.init();
+		setBackground(20, 20, 20, 190f);
+
+		sampleStartNanos = System.nanoTime();
+		lastDrawnFrame = getParentCanvas().getDrawnFrameCount();
+		steps = getChunk().getStepCount();
+		visitedSites = getChunk().getVisitedSiteCount();
+		allocatedBytes = getAllocatedBytes();
+		gcMillis = getGcMillis();
+	}
+
+	@Override
+	public void update() {
+		// The layers were drawn in the last frame: collect their times
+		final Canvas canvas = getParentCanvas();
+		if (canvas.getDrawnFrameCount() != lastDrawnFrame) {
+			lastDrawnFrame = canvas.getDrawnFrameCount();
+			sampleFrame(canvas.getLayers());
+		}
+
+		final long now = System.nanoTime();
+		if (now - sampleStartNanos >= SAMPLE_INTERVAL_NANOS) {
+			updateLines(now);
+			// Show the new numbers
+			markDirty();
+		}
+	}
+
+	private void sampleFrame(List<Layer> layers) {
+		if (layerNanos.length != layers.size()) {
+			layerNanos = new long[layers.size()];
+			framesSampled = 0;
+		}
+		long total = 0;
+		for (int i = 0; i < layers.size(); i++) {
+			final long nanos = layers.get(i).getDrawNanos();
+			layerNanos[i] += nanos;
+			total += nanos;
+		}
+		framesSampled++;
+
+		history[historyIndex] = total / 1e6f;
+		historyIndex = (historyIndex + 1) % HISTORY_LENGTH;
+	}
+
+	private void updateLines(long now) {
+		final float seconds = (now - sampleStartNanos) / 1e9f;
+		final PercolationChunk chunk = getChunk();
+		final List<Layer> layers = getParentCanvas().getLayers();
+
+		final long newSteps = chunk.getStepCount();
+		final long newVisitedSites = chunk.getVisitedSiteCount();
+		final long newAllocatedBytes = getAllocatedBytes();
+		final long newGcMillis = getGcMillis();
+		final long stepsTaken = newSteps - steps;
+
+		final Runtime rt = Runtime.getRuntime();
+		final float usedMb = (rt.totalMemory() - rt.freeMemory()) / 1048576f;
+		final float maxMb = rt.maxMemory() / 1048576f;
+
+		final int numLayerLines = Math.min(layerNanos.length, layers.size());
+		final String[] newLines = new String[5 + numLayerLines];
+		int i = 0;
+		newLines[i++] = format("FPS %.1f  (drawn %.0f/s)",
+				getParentCanvas().frameRate, framesSampled / seconds);
+		for (int j = 0; j < numLayerLines; j++) {
+			newLines[i++] = format("  %s %.2f ms",
+					layers.get(j).getClass().getSimpleName(),
+					framesSampled == 0 ? 0f : layerNanos[j] / 1e6f / framesSampled);
+		}
+		newLines[i++] = format("Steps %.0f/s", stepsTaken / seconds);
+		newLines[i++] = format("Sites/step %.0f", stepsTaken == 0 ? 0f
+				: (float) (newVisitedSites - visitedSites) / stepsTaken);
+		newLines[i++] = format("Heap %.0f / %.0f MB", usedMb, maxMb);
+		newLines[i++] = format("Alloc %.1f MB/s  GC %.0f ms/s",
+				// Threads that ended since take their allocations with them
+				Math.max(0L, newAllocatedBytes - allocatedBytes) / 1048576f / seconds,
+				(newGcMillis - gcMillis) / seconds);
+		lines = newLines;
+
+		sampleStartNanos = now;
+		steps = newSteps;
+		visitedSites = newVisitedSites;
+		allocatedBytes = newAllocatedBytes;
+		gcMillis = newGcMillis;
+		framesSampled = 0;
+		for (int j = 0; j < layerNanos.length; j++) {
+			layerNanos[j] = 0;
+		}
+	}
+
+	@Override
+	public void beforeObjectsDrawn() {
+		super.beforeObjectsDrawn();
+
+		final PGraphics g = getGraphics();
+		// From the center to the top left corner
+		g.translate(getSize().getWidth() / -2f, getSize().getHeight() / -2f);
+
+		g.fill(Brush.WHITE);
+		g.textSize(TEXT_SIZE);
+		for (int i = 0; i < lines.length; i++) {
+			g.text(lines[i], MARGIN, MARGIN + LINE_HEIGHT * (i + 1));
+		}
+
+		drawSparkline(g);
+	}
+
+	private void drawSparkline(PGraphics g) {
+		final float left = MARGIN;
+		final float bottom = getSize().getHeight() - MARGIN;
+		final float width = getSize().getWidth() - 2f * MARGIN;
+
+		float max = FRAME_BUDGET_MILLIS;
+		for (float millis : history) {
+			max = Math.max(max, millis);
+		}
+		final float yScale = SPARKLINE_HEIGHT / max;
+		final float xStep = width / (HISTORY_LENGTH - 1);
+
+		// The frame budget
+		g.stroke(Brush.GREEN);
+		final float budgetY = bottom - FRAME_BUDGET_MILLIS * yScale;
+		g.line(left, budgetY, left + width, budgetY);
+
+		// Oldest to newest
+		g.stroke(Brush.YELLOW);
+		float prevY = bottom - history[historyIndex] * yScale;
+		for (int i = 1; i < HISTORY_LENGTH; i++) {
+			final float y = bottom - history[(historyIndex + i) % HISTORY_LENGTH] * yScale;
+			g.line(left + (i - 1) * xStep, prevY, left + i * xStep, y);
+			prevY = y;
+		}
+		g.noStroke();
+	}
+
+	private PercolationChunk getChunk() {
+		return percLayer.getPercolationChunk();
+	}
+
+	/** Bytes allocated by all live threads since they started */
+	private long getAllocatedBytes() {
+		long total = 0;
+		for (long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+
+	private static long getGcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0L, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	private static String format(String format, Object... args) {
+		return String.format(Locale.ROOT, format, args);
+	}
+
+}
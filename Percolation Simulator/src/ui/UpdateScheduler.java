@@ -0,0 +1,84 @@
+package ui;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.Timer;
+
+
+/**
+ * Coalesces update requests, which can come from any thread at any rate,
+ * into at most one update per tick of a Swing {@link Timer}. By default
+ * it ticks about once per display frame.
+ * <p>
+ * The update itself is asynchronous: it is started on the UI thread, and
+ * must call {@link #updateFinished()} once it's done (usually after having
+ * gone to another thread and back). No new update is started before then,
+ * so that slow updates can't pile up.
+ */
+public class UpdateScheduler {
+	
+	public static final int DEFAULT_UPDATES_PER_SECOND = 60;
+	
+	private final Runnable update;
+	private final Timer timer;
+	
+	private final AtomicBoolean requested;
+	private boolean updating;
+	
+	public UpdateScheduler(Runnable update) {
+		this.update = update;
+		requested = new AtomicBoolean();
+		
+		timer = new Timer(1000 / DEFAULT_UPDATES_PER_SECOND, e -> tick());
+		timer.setCoalesce(true);
+	}
+	
+	/**
+	 * Asks for an update. Can be called from any thread.
+	 */
+	public void requestUpdate() {
+		if (!requested.getAndSet(true) && !timer.isRunning()) {
+			timer.start();
+		}
+	}
+	
+	/**
+	 * Must be called on the UI thread when the update that
+	 * was started has finished.
+	 */
+	public void updateFinished() {
+		updating = false;
+	}
+	
+	private void tick() {
+		if (updating) {
+			return;
+		}
+		if (!requested.getAndSet(false)) {
+			// Nothing is happening, so don't keep waking up
+			timer.stop();
+			// A request could have come in between the check and stopping
+			if (requested.get()) {
+				timer.start();
+			}
+			return;
+		}
+		updating = true;
+		update.run();
+	}
+	
+	/**
+	 * Sets the maximum number of updates per second.
+	 */
+	public void setUpdatesPerSecond(int updatesPerSecond) {
+		if (updatesPerSecond <= 0) {
+			throw new IllegalArgumentException("updatesPerSecond must be positive");
+		}
+		timer.setDelay(Math.max(1, 1000 / updatesPerSecond));
+	}
+	
+	public int getUpdatesPerSecond() {
+		return 1000 / timer.getDelay();
+	}
+	
+}
@@ -92,6 +92,36 @@ public class Dimension implements Serializable {
 		return new Dimension(a.width / f, a.height / f);
 	}
 	
+	/*
+	 * Performing mathematical operations into an existing Dimension (static).
+	 * These don't allocate, and return out. out may be one of the operands.
+	 */
+	
+	public static Mutable add(Dimension a, Dimension b, Mutable out) {
+		return out.set(a.width + b.width, a.height + b.height);
+	}
+	public static Mutable add(Dimension a, float f, Mutable out) {
+		return out.set(a.width + f, a.height + f);
+	}
+	public static Mutable sub(Dimension a, Dimension b, Mutable out) {
+		return out.set(a.width - b.width, a.height - b.height);
+	}
+	public static Mutable sub(Dimension a, float f, Mutable out) {
+		return out.set(a.width - f, a.height - f);
+	}
+	public static Mutable mult(Dimension a, Dimension b, Mutable out) {
+		return out.set(a.width * b.width, a.height * b.height);
+	}
+	public static Mutable mult(Dimension a, float f, Mutable out) {
+		return out.set(a.width * f, a.height * f);
+	}
+	public static Mutable div(Dimension a, Dimension b, Mutable out) {
+		return out.set(a.width / b.width, a.height / b.height);
+	}
+	public static Mutable div(Dimension a, float f, Mutable out) {
+		return out.set(a.width / f, a.height / f);
+	}
+	
 	/*
 	 * Getters
 	 */
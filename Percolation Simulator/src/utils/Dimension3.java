@@ -98,6 +98,43 @@ public class Dimension3 implements Serializable {
 		return new Dimension3(a.width / f, a.height / f, a.depth / f);
 	}
 	
+	/*
+	 * Performing mathematical operations into an existing Dimension3 (static).
+	 * These don't allocate, and return out. out may be one of the operands.
+	 */
+	
+	public static Mutable add(Dimension3 a, Dimension3 b, Mutable out) {
+		return out.set(a.width + b.width, a.height + b.height, a.depth + b.depth);
+	}
+	
+	public static Mutable add(Dimension3 a, float f, Mutable out) {
+		return out.set(a.width + f, a.height + f, a.depth + f);
+	}
+	
+	public static Mutable sub(Dimension3 a, Dimension3 b, Mutable out) {
+		return out.set(a.width - b.width, a.height - b.height, a.depth - b.depth);
+	}
+	
+	public static Mutable sub(Dimension3 a, float f, Mutable out) {
+		return out.set(a.width - f, a.height - f, a.depth - f);
+	}
+	
+	public static Mutable mult(Dimension3 a, Dimension3 b, Mutable out) {
+		return out.set(a.width * b.width, a.height * b.height, a.depth * b.depth);
+	}
+	
+	public static Mutable mult(Dimension3 a, float f, Mutable out) {
+		return out.set(a.width * f, a.height * f, a.depth * f);
+	}
+	
+	public static Mutable div(Dimension3 a, Dimension3 b, Mutable out) {
+		return out.set(a.width / b.width, a.height / b.height, a.depth / b.depth);
+	}
+	
+	public static Mutable div(Dimension3 a, float f, Mutable out) {
+		return out.set(a.width / f, a.height / f, a.depth / f);
+	}
+	
 	/*
 	 * Getters
 	 */
@@ -0,0 +1,88 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints, so that lists of many numbers don't
+ * take an object per number. Clearing keeps the array, so a list that is
+ * refilled over and over stops allocating once it has grown to its largest.
+ * @see LongList
+ */
+public class IntList {
+	
+	private int[] values;
+	private int size;
+	
+	public IntList() {
+		this(16);
+	}
+	
+	public IntList(int capacity) {
+		values = new int[Math.max(capacity, 1)];
+	}
+	
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		values[size++] = value;
+	}
+	
+	/** Adds the given values, in order */
+	public void addAll(int[] values) {
+		if (size + values.length > this.values.length) {
+			this.values = Arrays.copyOf(this.values,
+					Math.max(size + values.length, this.values.length * 2));
+		}
+		System.arraycopy(values, 0, this.values, size, values.length);
+		size += values.length;
+	}
+	
+	public int get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException(index + " >= " + size);
+		}
+		return values[index];
+	}
+	
+	/** Returns the last value */
+	public int last() {
+		return get(size - 1);
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Removes the values from the given index on.
+	 */
+	public void truncate(int size) {
+		if (size < 0 || size > this.size) {
+			throw new IndexOutOfBoundsException(size + " > " + this.size);
+		}
+		this.size = size;
+	}
+	
+	/** Copies the values into a new array */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+	
+	/**
+	 * Returns the array the values are stored in, which is only valid up to
+	 * {@link #size()}, and only until the next value is added.
+	 */
+	public int[] array() {
+		return values;
+	}
+	
+}
@@ -0,0 +1,271 @@
+package utils;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds with fixed, log-linear buckets:
+ * every power of two is split into {@link #SUB_BUCKETS} equal buckets, so a
+ * value is known to within 1/{@link #SUB_BUCKETS} of itself from a few
+ * hundred buckets, from nanoseconds up to {@link #MAX_VALUE}. Larger
+ * values are counted in the last bucket.
+ * <p>
+ * Recording is lock-free and does not allocate, so any number of threads
+ * can record into the same histogram. Readers take {@link Snapshot}s, and
+ * the difference of two snapshots gives the histogram of an interval.
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 4;
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_MAGNITUDE = 40;
+	/** The largest value with a bucket of its own (about 18 minutes) */
+	public static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+	private static final int NUM_BUCKETS =
+			(MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+	
+	private final String name;
+	private final AtomicLongArray counts;
+	private final LongAdder count, sum;
+	private final AtomicLong max;
+	
+	public LatencyHistogram(String name) {
+		this.name = name;
+		counts = new AtomicLongArray(NUM_BUCKETS);
+		count = new LongAdder();
+		sum = new LongAdder();
+		max = new AtomicLong();
+	}
+	
+	/**
+	 * Records one duration. Negative durations are recorded as 0.
+	 */
+	public void record(long nanos) {
+		final long value = Math.max(nanos, 0L);
+		counts.incrementAndGet(getBucket(value));
+		count.increment();
+		sum.add(value);
+		if (value > max.get()) {
+			max.accumulateAndGet(value, Math::max);
+		}
+	}
+	
+	/**
+	 * Returns the bucket of the given (non-negative) value: values below
+	 * 2 * SUB_BUCKETS have a bucket each, above that every power of two
+	 * has SUB_BUCKETS buckets.
+	 */
+	static int getBucket(long value) {
+		if (value > MAX_VALUE) {
+			return NUM_BUCKETS - 1;
+		}
+		final int magnitude = 63 - Long.numberOfLeadingZeros(value | 1L);
+		if (magnitude < SUB_BUCKET_BITS) {
+			return (int) value;
+		}
+		final int shift = magnitude - SUB_BUCKET_BITS;
+		final int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	/** The smallest value of the given bucket */
+	static long getBucketLowerBound(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		final int shift = bucket / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+	}
+	
+	/** The largest value of the given bucket */
+	static long getBucketUpperBound(int bucket) {
+		return bucket == NUM_BUCKETS - 1 ? Long.MAX_VALUE
+				: getBucketLowerBound(bucket + 1) - 1;
+	}
+	
+	/**
+	 * Copies the counts of this histogram. The copy is not atomic: values
+	 * recorded while it is taken may or may not be in it.
+	 */
+	public Snapshot snapshot() {
+		final long[] copy = new long[NUM_BUCKETS];
+		long count = 0;
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = counts.get(i);
+			count += copy[i];
+		}
+		return new Snapshot(name, System.currentTimeMillis(), copy, count,
+				sum.sum(), max.get());
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/** The number of values recorded */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/** The sum of the values recorded */
+	public long getSum() {
+		return sum.sum();
+	}
+	
+	/**
+	 * The counts of a {@link LatencyHistogram} at one point in time, or
+	 * over an interval (see {@link #since(Snapshot)}). Immutable.
+	 */
+	public static final class Snapshot {
+		
+		/** The header of the CSV written by {@link #appendCsv(Appendable)} */
+		public static final String CSV_HEADER = "histogram,time_ms,lower_ns,upper_ns,count";
+		
+		private final String name;
+		private final long timeMillis;
+		private final long[] counts;
+		private final long count, sum;
+		/** The exact maximum, or -1 if only the bucket of the maximum is known */
+		private final long max;
+		
+		private Snapshot(String name, long timeMillis, long[] counts,
+				long count, long sum, long max) {
+			this.name = name;
+			this.timeMillis = timeMillis;
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+		
+		/**
+		 * Returns the histogram of the values recorded between the given
+		 * (earlier) snapshot of the same histogram and this one.
+		 */
+		public Snapshot since(Snapshot earlier) {
+			final long[] diff = new long[counts.length];
+			long diffCount = 0;
+			for (int i = 0; i < diff.length; i++) {
+				diff[i] = Math.max(counts[i] - earlier.counts[i], 0L);
+				diffCount += diff[i];
+			}
+			return new Snapshot(name, timeMillis, diff, diffCount,
+					sum - earlier.sum, -1L);
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		/** When this snapshot was taken, in milliseconds since the epoch */
+		public long getTimeMillis() {
+			return timeMillis;
+		}
+		
+		public long getCount() {
+			return count;
+		}
+		
+		public double getMean() {
+			return count == 0 ? 0.0 : (double) sum / count;
+		}
+		
+		/**
+		 * Returns the largest value, or, for an interval, the upper bound of
+		 * the largest value's bucket. 0 if nothing was recorded.
+		 */
+		public long getMax() {
+			if (max >= 0L) {
+				return max;
+			}
+			for (int i = counts.length - 1; i >= 0; i--) {
+				if (counts[i] != 0L) {
+					return getBucketUpperBound(i);
+				}
+			}
+			return 0L;
+		}
+		
+		/**
+		 * Returns a value that at least the given percentage (0 to 100) of
+		 * the recorded values are less than or equal to: the upper bound of
+		 * the bucket the percentile falls in, which is at most
+		 * 1/{@link LatencyHistogram#SUB_BUCKETS} above the exact value.
+		 * 0 if nothing was recorded.
+		 */
+		public long getPercentile(double percentile) {
+			if (count == 0) {
+				return 0L;
+			}
+			final long rank = Math.max(1L,
+					(long) Math.ceil(percentile / 100.0 * count));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(getBucketUpperBound(i), getMax());
+				}
+			}
+			return getMax();
+		}
+		
+		/**
+		 * Appends the non-empty buckets of this snapshot as CSV rows, under
+		 * {@link #CSV_HEADER}. The rows of several snapshots can share
+		 * one header.
+		 */
+		public void appendCsv(Appendable out) throws IOException {
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] != 0L) {
+					out.append(name).append(',')
+						.append(Long.toString(timeMillis)).append(',')
+						.append(Long.toString(getBucketLowerBound(i))).append(',')
+						.append(Long.toString(getBucketUpperBound(i))).append(',')
+						.append(Long.toString(counts[i])).append('\n');
+				}
+			}
+		}
+		
+		/**
+		 * Appends this snapshot as a single line of JSON: its summary
+		 * (count, mean, percentiles and max, in nanoseconds) and its
+		 * non-empty buckets as [lower, upper, count] arrays.
+		 */
+		public void appendJson(Appendable out) throws IOException {
+			out.append(String.format(Locale.ROOT,
+					"{\"histogram\":\"%s\",\"time_ms\":%d,\"count\":%d,"
+					+ "\"mean_ns\":%.1f,\"p50_ns\":%d,\"p90_ns\":%d,"
+					+ "\"p99_ns\":%d,\"p999_ns\":%d,\"max_ns\":%d,\"buckets\":[",
+					name, timeMillis, count, getMean(), getPercentile(50.0),
+					getPercentile(90.0), getPercentile(99.0),
+					getPercentile(99.9), getMax()));
+			boolean first = true;
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] != 0L) {
+					if (!first) {
+						out.append(',');
+					}
+					first = false;
+					out.append('[').append(Long.toString(getBucketLowerBound(i)))
+						.append(',').append(Long.toString(getBucketUpperBound(i)))
+						.append(',').append(Long.toString(counts[i])).append(']');
+				}
+			}
+			out.append("]}\n");
+		}
+		
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT,
+					"%s: count=%d mean=%.3fms p50=%.3fms p99=%.3fms "
+					+ "p99.9=%.3fms max=%.3fms", name, count, getMean() / 1e6,
+					getPercentile(50.0) / 1e6, getPercentile(99.0) / 1e6,
+					getPercentile(99.9) / 1e6, getMax() / 1e6);
+		}
+		
+	}
+	
+}
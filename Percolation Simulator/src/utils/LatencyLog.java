@@ -0,0 +1,149 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes what a set of {@link LatencyHistogram}s recorded
+ * during the last interval to a file, as CSV buckets or one line of JSON
+ * per histogram and interval (chosen by the extension of the file, .json
+ * or anything else for CSV).
+ */
+public class LatencyLog {
+	
+	/** System property naming the file to log to */
+	public static final String FILE_PROPERTY = "percolation.latency.out";
+	/** System property with the length of the intervals, in milliseconds */
+	public static final String INTERVAL_PROPERTY = "percolation.latency.interval";
+	public static final long DEFAULT_INTERVAL_MILLIS = 10_000L;
+	
+	private final Path file;
+	private final boolean json;
+	private final List<LatencyHistogram> histograms;
+	private final LatencyHistogram.Snapshot[] previous;
+	private final ScheduledExecutorService executor;
+	private final BufferedWriter out;
+	/** Whether the last interval couldn't be written, so it was reported */
+	private boolean failing;
+	
+	public LatencyLog(Path file, List<LatencyHistogram> histograms) throws IOException {
+		this.file = file;
+		this.histograms = histograms;
+		json = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json");
+		
+		previous = new LatencyHistogram.Snapshot[histograms.size()];
+		for (int i = 0; i < previous.length; i++) {
+			previous[i] = histograms.get(i).snapshot();
+		}
+		
+		out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+		if (!json) {
+			out.append(LatencyHistogram.Snapshot.CSV_HEADER).append('\n');
+			out.flush();
+		}
+		
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "Latency Log");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+	
+	/**
+	 * Starts logging the given histograms to the file named by the
+	 * {@link #FILE_PROPERTY} system property, every
+	 * {@link #INTERVAL_PROPERTY} milliseconds. The last interval is written
+	 * when the JVM shuts down.
+	 * @return the log, or null if the property is not set
+	 */
+	public static LatencyLog startFromSystemProperties(List<LatencyHistogram> histograms) {
+		final String file = System.getProperty(FILE_PROPERTY);
+		if (file == null) {
+			return null;
+		}
+		try {
+			LatencyLog log = new LatencyLog(Paths.get(file), histograms);
+			log.start(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MILLIS));
+			Runtime.getRuntime().addShutdownHook(new Thread(log::stop));
+			return log;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not open " + file, e);
+		}
+	}
+	
+	public void start(long intervalMillis) {
+		// An exception would cancel the next intervals without a word
+		executor.scheduleAtFixedRate(this::tryWriteInterval,
+				intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Writes the last interval and closes the file. Errors are reported on
+	 * the standard error stream, since this runs when the JVM shuts down.
+	 */
+	public void stop() {
+		executor.shutdownNow();
+		tryWriteInterval();
+		try {
+			synchronized (this) {
+				out.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Could not close " + file + ": " + e);
+		}
+	}
+	
+	/**
+	 * Writes what every histogram recorded since the last time this
+	 * was called.
+	 */
+	public synchronized void writeInterval() {
+		try {
+			for (int i = 0; i < previous.length; i++) {
+				final LatencyHistogram.Snapshot now = histograms.get(i).snapshot();
+				final LatencyHistogram.Snapshot interval = now.since(previous[i]);
+				previous[i] = now;
+				if (json) {
+					interval.appendJson(out);
+				} else {
+					interval.appendCsv(out);
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write to " + file, e);
+		}
+	}
+	
+	/**
+	 * Same as {@link #writeInterval()}, but reports errors on the standard
+	 * error stream instead of throwing them, the first time in a row they
+	 * happen, and tries again at the next interval.
+	 */
+	private synchronized void tryWriteInterval() {
+		try {
+			writeInterval();
+			failing = false;
+		} catch (UncheckedIOException e) {
+			if (!failing) {
+				System.err.println(e.getMessage() + ": " + e.getCause());
+			}
+			failing = true;
+		}
+	}
+	
+	public Path getFile() {
+		return file;
+	}
+	
+}
@@ -0,0 +1,62 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive longs, so that lists of many numbers don't
+ * take an object per number. Clearing keeps the array, so a list that is
+ * refilled over and over stops allocating once it has grown to its largest.
+ */
+public class LongList {
+	
+	private long[] values;
+	private int size;
+	
+	public LongList() {
+		this(16);
+	}
+	
+	public LongList(int capacity) {
+		values = new long[Math.max(capacity, 1)];
+	}
+	
+	public void add(long value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		values[size++] = value;
+	}
+	
+	public long get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException(index + " >= " + size);
+		}
+		return values[index];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Returns the array the values are stored in, which is only valid up to
+	 * {@link #size()}, and only until the next value is added.
+	 */
+	public long[] array() {
+		return values;
+	}
+	
+	/** The capacity of the list */
+	public int capacity() {
+		return values.length;
+	}
+	
+}
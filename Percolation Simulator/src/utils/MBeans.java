@@ -0,0 +1,38 @@
+package utils;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public final class MBeans {
+	
+	/** The domain of the names of every MBean of the program */
+	public static final String DOMAIN = "percolation";
+	
+	private MBeans() { throw new AssertionError(); }
+	
+	/**
+	 * Registers the given MBean with the platform MBean server under
+	 * "percolation:type=&lt;type&gt;", replacing any MBean already
+	 * registered under that name.
+	 * @throws IllegalStateException if the MBean could not be registered
+	 */
+	public static void register(String type, Object mbean) {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			final ObjectName name = new ObjectName(DOMAIN + ":type=" + type);
+			synchronized (MBeans.class) {
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+				server.registerMBean(mbean, name);
+			}
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not register the " 
+					+ type + " MBean", e);
+		}
+	}
+	
+}
@@ -0,0 +1,85 @@
+package utils;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tracks the progress of a long-running task and lets another thread
+ * cancel it. The task reports how far along it is with
+ * {@link #set(float)} and regularly calls {@link #checkCancelled()}.
+ * A task made of several parts can hand each part its own {@link Progress}
+ * with {@link #phase(float, float)}.
+ */
+public class Progress {
+	
+	/** A {@link Progress} for tasks that nobody is watching */
+	public static final Progress NONE = new Progress();
+	
+	private final Progress parent;
+	private final float from, to;
+	
+	private volatile float fraction;
+	private volatile boolean cancelled;
+	
+	public Progress() {
+		this(null, 0f, 1f);
+	}
+	
+	private Progress(Progress parent, float from, float to) {
+		this.parent = parent;
+		this.from = from;
+		this.to = to;
+	}
+	
+	/**
+	 * Returns a {@link Progress} for a part of this task, which maps its own
+	 * 0 to 1 onto the given range of this progress. Cancelling either
+	 * cancels both.
+	 */
+	public Progress phase(float from, float to) {
+		return new Progress(this, from, to);
+	}
+	
+	/**
+	 * Sets how far along the task is, from 0 to 1.
+	 */
+	public void set(float fraction) {
+		fraction = Utils.constrain(fraction, 0f, 1f);
+		if (parent != null) {
+			parent.set(from + (to - from) * fraction);
+		} else if (this != NONE) {
+			this.fraction = fraction;
+		}
+	}
+	
+	/**
+	 * Returns how far along the task is, from 0 to 1.
+	 */
+	public float get() {
+		return parent != null ? parent.get() : fraction;
+	}
+	
+	/**
+	 * Asks the task to stop as soon as possible.
+	 */
+	public void cancel() {
+		if (parent != null) {
+			parent.cancel();
+		} else if (this != NONE) {
+			cancelled = true;
+		}
+	}
+	
+	public boolean isCancelled() {
+		return parent != null ? parent.isCancelled() : cancelled;
+	}
+	
+	/**
+	 * Throws a {@link CancellationException} if the task was cancelled.
+	 */
+	public void checkCancelled() {
+		if (isCancelled()) {
+			throw new CancellationException();
+		}
+	}
+	
+}
@@ -1,5 +1,8 @@
 package utils;
 
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
 import processing.core.PApplet;
 
 public final class Utils {
@@ -7,8 +10,6 @@ public final class Utils {
 	public static final float PI = (float) Math.PI;
 	public static final float TWO_PI = (float) (Math.PI * 2D);
 	
-	private static final PApplet applet = new PApplet();
-	
 	private Utils() { throw new AssertionError(); }
 	
 	public static float map(float val, float min0, float max0, float min1, float max1) {
@@ -27,20 +28,32 @@ public final class Utils {
 		return radians * (180.0f/PI);
 	}
 	
+	// Same results as PApplet.random(), without needing a PApplet
+	
 	public static float random(float max) {
-		return applet.random(max);
+		if (max == 0f || max != max) {
+			return 0f;
+		}
+		float val;
+		do {
+			val = ThreadLocalRandom.current().nextFloat() * max;
+		} while (val == max);
+		return val;
 	}
 	
 	public static float random(float min, float max) {
-		return applet.random(min, max);
+		if (min >= max) {
+			return min;
+		}
+		return min + random(max - min);
 	}
 	
 	public static int random(int max) {
-		return (int)applet.random(max);
+		return (int)random((float)max);
 	}
 	
 	public static int random(int min, int max) {
-		return (int)applet.random(min, max);
+		return (int)random((float)min, (float)max);
 	}
 	
 	public static float dist(Vec2 p1, Vec2 p2) {
@@ -65,4 +78,21 @@ public final class Utils {
 		
 	}
 	
+	/**
+	 * Formats a number of bytes for people, e.g. "1.5 GB" (in powers of 1024)
+	 */
+	public static String formatBytes(long bytes) {
+		if (bytes < 1024L) {
+			return bytes + " B";
+		}
+		final String[] units = { "KB", "MB", "GB", "TB", "PB", "EB" };
+		double value = bytes / 1024.0;
+		int unit = 0;
+		while (value >= 1024.0 && unit < units.length - 1) {
+			value /= 1024.0;
+			unit++;
+		}
+		return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+	}
+	
 }
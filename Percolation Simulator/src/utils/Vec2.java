@@ -142,6 +142,43 @@ public class Vec2 implements Serializable {
 		return new Vec2(v1.x / n, v1.y / n);
 	}
 
+	/*
+	 * Static add/sub/div/mult operations into an existing vector. These
+	 * don't allocate, and return out. out may be one of the operands.
+	 */
+
+	public static Mutable add(Vec2 v1, Vec2 v2, Mutable out) {
+		return out.set(v1.x + v2.x, v1.y + v2.y);
+	}
+
+	public static Mutable add(Vec2 v1, float n, Mutable out) {
+		return out.set(v1.x + n, v1.y + n);
+	}
+
+	public static Mutable sub(Vec2 v1, Vec2 v2, Mutable out) {
+		return out.set(v1.x - v2.x, v1.y - v2.y);
+	}
+
+	public static Mutable sub(Vec2 v1, float n, Mutable out) {
+		return out.set(v1.x - n, v1.y - n);
+	}
+
+	public static Mutable mult(Vec2 v1, Vec2 v2, Mutable out) {
+		return out.set(v1.x * v2.x, v1.y * v2.y);
+	}
+
+	public static Mutable mult(Vec2 v1, float n, Mutable out) {
+		return out.set(v1.x * n, v1.y * n);
+	}
+
+	public static Mutable div(Vec2 v1, Vec2 v2, Mutable out) {
+		return out.set(v1.x / v2.x, v1.y / v2.y);
+	}
+
+	public static Mutable div(Vec2 v1, float n, Mutable out) {
+		return out.set(v1.x / n, v1.y / n);
+	}
+
 	/*
 	 * DISTANCE
 	 */
@@ -215,6 +252,15 @@ public class Vec2 implements Serializable {
 		return new Vec2(x, y);
 	}
 
+	/**
+	 * Same as {@link #lerp(Vec2, Vec2, float)}, but stores the
+	 * result in out instead of allocating a new vector.
+	 * @return out
+	 */
+	public static Mutable lerp(Vec2 start, Vec2 stop, float amt, Mutable out) {
+		return out.set(lerp(start.x, stop.x, amt), lerp(start.y, stop.y, amt));
+	}
+
 	/**
 	 * Calculates and returns the angle (in radians) between two vectors.
 	 *
@@ -350,7 +396,7 @@ public class Vec2 implements Serializable {
 		 * @return this vector after being negated
 		 */
 		public Vec2 negate() {
-			return set(negated());
+			return set(-x, -y);
 		}
 
 		/**
@@ -371,7 +417,7 @@ public class Vec2 implements Serializable {
 		 * this class is <i>mutable,</i> the x and y values are modified.
 		 */
 		public Mutable lerp(Vec2 to, float amount) {
-			return set(Vec2.lerp(this, to, amount));
+			return Vec2.lerp(this, to, amount, this);
 		}
 
 		/**
@@ -382,7 +428,9 @@ public class Vec2 implements Serializable {
 		 * @return this mutable vector.
 		 */
 		public Mutable rotate(float theta) {
-			return set(super.valueAtRotation(theta));
+			final float cos = (float) Math.cos(theta);
+			final float sin = (float) Math.sin(theta);
+			return set(x * cos - y * sin, x * sin + y * cos);
 		}
 
 		/**
@@ -141,10 +141,43 @@ public class Vec3 implements Serializable {
 	}
 	
 	public static Vec3 div(Vec3 v1, Vec3 v2) {
-		return new Vec3(v1.x/v2.x, v1.y/v2.y, v1.y/v2.y);
+		return new Vec3(v1.x/v2.x, v1.y/v2.y, v1.z/v2.z);
 	}
 	public static Vec3 div(Vec3 v1, float n) {
-		return new Vec3(v1.x/n, v1.y/n, v1.y/n);
+		return new Vec3(v1.x/n, v1.y/n, v1.z/n);
+	}
+	
+	/*
+	 * Static add/sub/div/mult operations into an existing vector. These
+	 * don't allocate, and return out. out may be one of the operands.
+	 */
+	
+	public static Mutable add(Vec3 v1, Vec3 v2, Mutable out) {
+		return out.set(v1.x + v2.x, v1.y + v2.y, v1.z + v2.z);
+	}
+	public static Mutable add(Vec3 v1, float n, Mutable out) {
+		return out.set(v1.x+n, v1.y+n, v1.z+n);
+	}
+	
+	public static Mutable sub(Vec3 v1, Vec3 v2, Mutable out) {
+		return out.set(v1.x - v2.x, v1.y - v2.y, v1.z - v2.z);
+	}
+	public static Mutable sub(Vec3 v1, float n, Mutable out) {
+		return out.set(v1.x-n, v1.y-n, v1.z-n);
+	}
+	
+	public static Mutable mult(Vec3 v1, Vec3 v2, Mutable out) {
+		return out.set(v1.x*v2.x, v1.y*v2.y, v1.z*v2.z);
+	}
+	public static Mutable mult(Vec3 v1, float n, Mutable out) {
+		return out.set(v1.x*n, v1.y*n, v1.z*n);
+	}
+	
+	public static Mutable div(Vec3 v1, Vec3 v2, Mutable out) {
+		return out.set(v1.x/v2.x, v1.y/v2.y, v1.z/v2.z);
+	}
+	public static Mutable div(Vec3 v1, float n, Mutable out) {
+		return out.set(v1.x/n, v1.y/n, v1.z/n);
 	}
 	
 	/*
@@ -161,6 +194,16 @@ public class Vec3 implements Serializable {
 		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
 	}
 	
+	/**
+	 * Get the squared Euclidean distance between two {@link Vec3}s.
+	 */
+	public static float distSq(Vec3 v1, Vec3 v2) {
+		final float dx = v1.x - v2.x;
+		final float dy = v1.y - v2.y;
+		final float dz = v1.z - v2.z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+	
 	/*
 	 * DOT
 	 */
@@ -225,6 +268,16 @@ public class Vec3 implements Serializable {
 		return new Vec3(x, y, z);
 	}
 	
+	/**
+	 * Same as {@link #lerp(Vec3, Vec3, float)}, but stores the
+	 * result in out instead of allocating a new vector.
+	 * @return out
+	 */
+	public static Mutable lerp(Vec3 start, Vec3 stop, float amt, Mutable out) {
+		return out.set(lerp(start.x, stop.x, amt), lerp(start.y, stop.y, amt),
+				lerp(start.z, stop.z, amt));
+	}
+	
 	/**
 	 * Calculates and returns the angle (in radians) between two vectors.
 	 *
@@ -367,7 +420,7 @@ public class Vec3 implements Serializable {
 		 * @return this vector after being negated
 		 */
 		public Vec3 negate() {
-			return set(negated());
+			return set(-x, -y, -z);
 		}
 		
 		/**
@@ -387,7 +440,7 @@ public class Vec3 implements Serializable {
 		 * As this class is <i>mutable,</i> the x, y, and z values are modified.
 		 */
 		public Mutable lerp(Vec3 to, float amount) {
-			return set(Vec3.lerp(this, to, amount));
+			return Vec3.lerp(this, to, amount, this);
 		}
 		
 		/**
@@ -469,7 +522,9 @@ public class Vec3 implements Serializable {
 		 * of this vector are affected.
 		 */
 		public Mutable rotateX(float theta) {
-			return set(getValueAtRotationX(theta));
+			final float cos = (float) Math.cos(theta);
+			final float sin = (float) Math.sin(theta);
+			return set(x, y * cos - z * sin, y * sin + z * cos);
 		}
 		
 		/**
@@ -479,7 +534,9 @@ public class Vec3 implements Serializable {
 		 * of this vector are affected.
 		 */
 		public Mutable rotateY(float theta) {
-			return set(getValueAtRotationY(theta));
+			final float cos = (float) Math.cos(theta);
+			final float sin = (float) Math.sin(theta);
+			return set(x * cos + z * sin, y, -x * sin + z * cos);
 		}
 		
 		/**
@@ -489,7 +546,9 @@ public class Vec3 implements Serializable {
 		 * of this vector are affected.
 		 */
 		public Mutable rotateZ(float theta) {
-			return set(getValueAtRotationZ(theta));
+			final float cos = (float) Math.cos(theta);
+			final float sin = (float) Math.sin(theta);
+			return set(x * cos - y * sin, x * sin + y * cos, z);
 		}
 		
 	}